@@ -0,0 +1,85 @@
+package com.example.bookblog.cache;
+
+// Intrusive LRU list; callers must hold the cache eviction lock
+class AccessOrderDeque<K, V> {
+    private CacheEntry<K, V> head;
+    private CacheEntry<K, V> tail;
+    private int size;
+    // Read without the lock by stats
+    private volatile long weight;
+
+    void addLast(CacheEntry<K, V> entry) {
+        if (entry.linked) {
+            return;
+        }
+        entry.prev = tail;
+        entry.next = null;
+        if (tail == null) {
+            head = entry;
+        } else {
+            tail.next = entry;
+        }
+        tail = entry;
+        entry.linked = true;
+        size++;
+        weight += entry.weight;
+    }
+
+    void moveToEnd(CacheEntry<K, V> entry) {
+        if (!entry.linked || entry == tail) {
+            return;
+        }
+        unlink(entry);
+        addLast(entry);
+    }
+
+    void unlink(CacheEntry<K, V> entry) {
+        if (!entry.linked) {
+            return;
+        }
+        CacheEntry<K, V> prev = entry.prev;
+        CacheEntry<K, V> next = entry.next;
+        if (prev == null) {
+            head = next;
+        } else {
+            prev.next = next;
+        }
+        if (next == null) {
+            tail = prev;
+        } else {
+            next.prev = prev;
+        }
+        entry.prev = null;
+        entry.next = null;
+        entry.linked = false;
+        size--;
+        weight -= entry.weight;
+    }
+
+    CacheEntry<K, V> peekFirst() {
+        return head;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long weight() {
+        return weight;
+    }
+
+    void clear() {
+        CacheEntry<K, V> entry = head;
+        while (entry != null) {
+            CacheEntry<K, V> next = entry.next;
+            entry.prev = null;
+            entry.next = null;
+            entry.linked = false;
+            entry = next;
+        }
+        head = null;
+        tail = null;
+        size = 0;
+        weight = 0;
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.bookblog.cache;
+
+public enum AdmissionPolicy {
+    // Always admit new entries and evict the least recently used one
+    LRU,
+    // Admit a new entry only if it is used more often than the LRU victim it would replace
+    TINY_LFU
+}
@@ -0,0 +1,56 @@
+package com.example.bookblog.cache;
+
+class CacheEntry<K, V> {
+    final K key;
+    final V value;
+    final long writeTime;
+    final long expiresAt;
+    final int weight;
+    // Dependency tags, or null when the region has no tagger
+    final String[] tags;
+
+    // Access-order and timer links, guarded by the cache eviction lock
+    CacheEntry<K, V> prev;
+    CacheEntry<K, V> next;
+    boolean linked;
+    // Tag invalidations seen when the entry was queued for demotion
+    int tagEpoch;
+    CacheEntry<K, V> timerPrev;
+    CacheEntry<K, V> timerNext;
+
+    private volatile boolean retired;
+
+    CacheEntry(K key, V value, long writeTime, long expiresAt) {
+        this(key, value, writeTime, expiresAt, 0);
+    }
+
+    CacheEntry(K key, V value, long writeTime, long expiresAt, int weight) {
+        this(key, value, writeTime, expiresAt, weight, null);
+    }
+
+    CacheEntry(K key, V value, long writeTime, long expiresAt, int weight, String[] tags) {
+        this.key = key;
+        this.value = value;
+        this.writeTime = writeTime;
+        this.expiresAt = expiresAt;
+        this.weight = weight;
+        this.tags = tags;
+    }
+
+    // A cached "not found" result
+    boolean isTombstone() {
+        return value == null;
+    }
+
+    boolean isExpired(long now) {
+        return now - expiresAt >= 0;
+    }
+
+    boolean isRetired() {
+        return retired;
+    }
+
+    void retire() {
+        retired = true;
+    }
+}
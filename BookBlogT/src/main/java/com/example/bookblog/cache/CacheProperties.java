@@ -0,0 +1,267 @@
+package com.example.bookblog.cache;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+@ConfigurationProperties(prefix = "cache")
+public class CacheProperties {
+    private Region defaults = new Region();
+    private Map<String, Region> regions = new LinkedHashMap<>();
+    private int refreshThreads = 2;
+    private int refreshQueueCapacity = 64;
+    private Invalidation invalidation = new Invalidation();
+    private Snapshot snapshot = new Snapshot();
+
+    public Region getDefaults() {
+        return defaults;
+    }
+
+    public void setDefaults(Region defaults) {
+        this.defaults = defaults;
+    }
+
+    public Map<String, Region> getRegions() {
+        return regions;
+    }
+
+    public void setRegions(Map<String, Region> regions) {
+        this.regions = regions;
+    }
+
+    public int getRefreshThreads() {
+        return refreshThreads;
+    }
+
+    public void setRefreshThreads(int refreshThreads) {
+        this.refreshThreads = refreshThreads;
+    }
+
+    public int getRefreshQueueCapacity() {
+        return refreshQueueCapacity;
+    }
+
+    public void setRefreshQueueCapacity(int refreshQueueCapacity) {
+        this.refreshQueueCapacity = refreshQueueCapacity;
+    }
+
+    public Invalidation getInvalidation() {
+        return invalidation;
+    }
+
+    public void setInvalidation(Invalidation invalidation) {
+        this.invalidation = invalidation;
+    }
+
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public void setSnapshot(Snapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    // A region's own settings, over the defaults, over the built-in values
+    public Region region(String name) {
+        Region base = defaults.mergedOnto(Region.builtIn());
+        Region own = regions.get(name);
+        return own == null ? base : own.mergedOnto(base);
+    }
+
+    // Fields left unset are null, so a region only overrides what it configures
+    public static class Region {
+        private Integer maxEntries;
+        private DataSize maxWeight;
+        private Duration ttl;
+        private Duration refreshAfterWrite;
+        private Duration maxStale;
+        private Duration negativeTtl;
+        private AdmissionPolicy admission;
+        private DataSize offHeapCapacity;
+        private Boolean snapshot;
+        // Writes inside a transaction are applied after commit and dropped on rollback
+        private Boolean transactional;
+
+        static Region builtIn() {
+            Region region = new Region();
+            region.maxEntries = 100;
+            region.ttl = Duration.ofMinutes(10);
+            region.maxStale = Duration.ZERO;
+            region.negativeTtl = Duration.ZERO;
+            region.admission = AdmissionPolicy.LRU;
+            region.snapshot = false;
+            region.transactional = true;
+            return region;
+        }
+
+        Region mergedOnto(Region base) {
+            Region merged = new Region();
+            merged.maxEntries = maxEntries != null ? maxEntries : base.maxEntries;
+            merged.maxWeight = maxWeight != null ? maxWeight : base.maxWeight;
+            merged.ttl = ttl != null ? ttl : base.ttl;
+            merged.refreshAfterWrite =
+                    refreshAfterWrite != null ? refreshAfterWrite : base.refreshAfterWrite;
+            merged.maxStale = maxStale != null ? maxStale : base.maxStale;
+            merged.negativeTtl = negativeTtl != null ? negativeTtl : base.negativeTtl;
+            merged.admission = admission != null ? admission : base.admission;
+            merged.offHeapCapacity =
+                    offHeapCapacity != null ? offHeapCapacity : base.offHeapCapacity;
+            merged.snapshot = snapshot != null ? snapshot : base.snapshot;
+            merged.transactional = transactional != null ? transactional : base.transactional;
+            return merged;
+        }
+
+        public Integer getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(Integer maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public DataSize getMaxWeight() {
+            return maxWeight;
+        }
+
+        public void setMaxWeight(DataSize maxWeight) {
+            this.maxWeight = maxWeight;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public Duration getRefreshAfterWrite() {
+            return refreshAfterWrite;
+        }
+
+        public void setRefreshAfterWrite(Duration refreshAfterWrite) {
+            this.refreshAfterWrite = refreshAfterWrite;
+        }
+
+        public Duration getMaxStale() {
+            return maxStale;
+        }
+
+        public void setMaxStale(Duration maxStale) {
+            this.maxStale = maxStale;
+        }
+
+        public Duration getNegativeTtl() {
+            return negativeTtl;
+        }
+
+        public void setNegativeTtl(Duration negativeTtl) {
+            this.negativeTtl = negativeTtl;
+        }
+
+        public AdmissionPolicy getAdmission() {
+            return admission;
+        }
+
+        public void setAdmission(AdmissionPolicy admission) {
+            this.admission = admission;
+        }
+
+        public DataSize getOffHeapCapacity() {
+            return offHeapCapacity;
+        }
+
+        public void setOffHeapCapacity(DataSize offHeapCapacity) {
+            this.offHeapCapacity = offHeapCapacity;
+        }
+
+        public Boolean getSnapshot() {
+            return snapshot;
+        }
+
+        public void setSnapshot(Boolean snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        public Boolean getTransactional() {
+            return transactional;
+        }
+
+        public void setTransactional(Boolean transactional) {
+            this.transactional = transactional;
+        }
+    }
+
+    public static class Invalidation {
+        private Duration pollInterval = Duration.ofSeconds(1);
+        private int batchSize = 500;
+        // How long a skipped id is re-checked before it is treated as a rolled back insert
+        private Duration gapTimeout = Duration.ofMinutes(1);
+        private Duration retention = Duration.ofHours(1);
+
+        public Duration getPollInterval() {
+            return pollInterval;
+        }
+
+        public void setPollInterval(Duration pollInterval) {
+            this.pollInterval = pollInterval;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public Duration getGapTimeout() {
+            return gapTimeout;
+        }
+
+        public void setGapTimeout(Duration gapTimeout) {
+            this.gapTimeout = gapTimeout;
+        }
+
+        public Duration getRetention() {
+            return retention;
+        }
+
+        public void setRetention(Duration retention) {
+            this.retention = retention;
+        }
+    }
+
+    public static class Snapshot {
+        private String directory = "cache-snapshots";
+        private Duration interval = Duration.ofMinutes(5);
+        // Bump when a cached class changes shape, so old snapshot files are discarded
+        private String version = "1";
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public Duration getInterval() {
+            return interval;
+        }
+
+        public void setInterval(Duration interval) {
+            this.interval = interval;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public void setVersion(String version) {
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.bookblog.cache;
+
+import jakarta.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+@Component
+public class CacheRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(CacheRegistry.class);
+
+    private final CacheProperties properties;
+    private final Map<String, InMemoryCache<?, ?>> regions = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor refreshExecutor;
+
+    public CacheRegistry(CacheProperties properties) {
+        this.properties = properties;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.refreshExecutor = new ThreadPoolExecutor(
+                properties.getRefreshThreads(), properties.getRefreshThreads(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.getRefreshQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable,
+                            "cache-refresh-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public <K, V> InMemoryCache<K, V> region(String name) {
+        return region(name, null);
+    }
+
+    // The tagger only applies when this call creates the region
+    @SuppressWarnings("unchecked")
+    public <K, V> InMemoryCache<K, V> region(String name, Tagger<? super K, ? super V> tagger) {
+        return (InMemoryCache<K, V>) regions.computeIfAbsent(name,
+                ignored -> createRegion(name, tagger));
+    }
+
+    public Map<String, InMemoryCache<?, ?>> getRegions() {
+        return Collections.unmodifiableMap(regions);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    private <K, V> InMemoryCache<K, V> createRegion(String name,
+                                                    Tagger<? super K, ? super V> tagger) {
+        CacheProperties.Region settings = properties.region(name);
+        logger.info("Creating cache region '{}' with max {} entries, max weight {}, TTL {}, "
+                        + "refresh after {}, max stale {}, negative TTL {}, {} admission, "
+                        + "off-heap {}, transactional {}", name, settings.getMaxEntries(),
+                settings.getMaxWeight(), settings.getTtl(), settings.getRefreshAfterWrite(),
+                settings.getMaxStale(), settings.getNegativeTtl(), settings.getAdmission(),
+                settings.getOffHeapCapacity(), settings.getTransactional());
+        return InMemoryCache.<K, V>builder()
+                .maximumSize(settings.getMaxEntries())
+                .maximumWeight(settings.getMaxWeight() == null
+                        ? 0 : settings.getMaxWeight().toBytes())
+                .expireAfterWrite(settings.getTtl())
+                .refreshAfterWrite(settings.getRefreshAfterWrite())
+                .maxStale(settings.getMaxStale())
+                .negativeTtl(settings.getNegativeTtl())
+                .refreshExecutor(refreshExecutor)
+                .admissionPolicy(settings.getAdmission())
+                .offHeapCapacity(settings.getOffHeapCapacity() == null
+                        ? 0 : settings.getOffHeapCapacity().toBytes())
+                .transactional(settings.getTransactional())
+                .tagger(tagger)
+                .build();
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.bookblog.cache;
+
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Periodically writes regions marked with `snapshot` to <directory>/<region>.snapshot and reloads
+// them on startup, before the web server accepts requests.
+//
+// File layout: magic, format version, version tag, region name, snapshot time in epoch millis,
+// then records of [1, age nanos, expires-in nanos, key length, key, value length, value]
+// closed by a 0 byte. Keys and values are Java-serialized.
+@Component
+public class CacheSnapshotter implements SmartInitializingSingleton {
+    private static final Logger logger = LoggerFactory.getLogger(CacheSnapshotter.class);
+    private static final int MAGIC = 0x42424353;
+    private static final int FORMAT_VERSION = 1;
+    private static final String SUFFIX = ".snapshot";
+    private static final byte RECORD = 1;
+    private static final byte END = 0;
+
+    private final CacheRegistry cacheRegistry;
+    private final CacheProperties properties;
+    private final ValueCodec<Object> codec = new JavaSerializationCodec<>();
+
+    public CacheSnapshotter(CacheRegistry cacheRegistry, CacheProperties properties) {
+        this.cacheRegistry = cacheRegistry;
+        this.properties = properties;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        properties.getRegions().keySet().forEach(region -> {
+            if (properties.region(region).getSnapshot()) {
+                load(region);
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${cache.snapshot.interval:5m}",
+            initialDelayString = "${cache.snapshot.interval:5m}")
+    public void snapshotAll() {
+        properties.getRegions().keySet().forEach(region -> {
+            if (properties.region(region).getSnapshot()) {
+                write(region);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        snapshotAll();
+    }
+
+    public int write(String region) {
+        InMemoryCache<Object, Object> cache = cacheRegistry.region(region);
+        Path directory = Path.of(properties.getSnapshot().getDirectory());
+        Path target = directory.resolve(region + SUFFIX);
+        Path temp = directory.resolve(region + SUFFIX + ".tmp");
+        int[] written = {0};
+        try {
+            Files.createDirectories(directory);
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                writeString(out, properties.getSnapshot().getVersion());
+                writeString(out, region);
+                out.writeLong(System.currentTimeMillis());
+                cache.forEachEntry((key, value, ageNanos, expiresInNanos) -> {
+                    try {
+                        out.writeByte(RECORD);
+                        out.writeLong(ageNanos);
+                        out.writeLong(expiresInNanos);
+                        writeBytes(out, codec.encode(key));
+                        writeBytes(out, codec.encode(value));
+                        written[0]++;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                out.writeByte(END);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            logger.debug("Wrote {} entries of cache region '{}' to {}", written[0], region, target);
+            return written[0];
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Cannot write snapshot of cache region '{}'", region, e);
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // Overwritten by the next attempt
+            }
+            return 0;
+        }
+    }
+
+    public int load(String region) {
+        Path file = Path.of(properties.getSnapshot().getDirectory()).resolve(region + SUFFIX);
+        if (!Files.isRegularFile(file)) {
+            return 0;
+        }
+        InMemoryCache<Object, Object> cache = cacheRegistry.region(region);
+        long start = System.nanoTime();
+        int restored = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION
+                    || !properties.getSnapshot().getVersion().equals(readString(buffer))
+                    || !region.equals(readString(buffer))) {
+                logger.info("Discarding incompatible snapshot {}", file);
+                Files.deleteIfExists(file);
+                return 0;
+            }
+            long elapsedNanos = Math.max(0, System.currentTimeMillis() - buffer.getLong())
+                    * 1_000_000L;
+            while (buffer.get() == RECORD) {
+                long ageNanos = buffer.getLong() + elapsedNanos;
+                long expiresInNanos = buffer.getLong() - elapsedNanos;
+                byte[] key = readBytes(buffer);
+                byte[] value = readBytes(buffer);
+                if (expiresInNanos > 0
+                        && cache.restore(codec.decode(key), codec.decode(value),
+                                ageNanos, expiresInNanos)) {
+                    restored++;
+                }
+            }
+        } catch (IOException | BufferUnderflowException | IllegalStateException e) {
+            logger.warn("Snapshot {} is unreadable or from an incompatible build, "
+                    + "kept {} entries read before the error", file, restored, e);
+        } catch (UncheckedIOException e) {
+            logger.warn("Snapshot {} holds classes that no longer deserialize, "
+                    + "kept {} entries read before the error", file, restored, e);
+        }
+        logger.info("Restored {} entries into cache region '{}' from {} in {} ms", restored,
+                region, file, (System.nanoTime() - start) / 1_000_000);
+        return restored;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(MappedByteBuffer buffer) {
+        return new String(readBytes(buffer), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBytes(MappedByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.bookblog.cache;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Striped counters, so recording from many request threads does not contend on one cache line
+public class CacheStats {
+    private static final long[] LOAD_TIME_BOUNDS_MILLIS = {1, 5, 10, 50, 100, 500, 1000};
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder offHeapHits = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder loadSuccesses = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder totalLoadTimeNanos = new LongAdder();
+    private final LongAdder[] loadTimeBuckets = newAdders(LOAD_TIME_BOUNDS_MILLIS.length + 1);
+    private final LongAdder[] evictions = newAdders(RemovalCause.values().length);
+
+    void recordHit() {
+        hits.increment();
+    }
+
+    void recordOffHeapHit() {
+        offHeapHits.increment();
+    }
+
+    void recordNegativeHit() {
+        negativeHits.increment();
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    void recordLoad(long nanos, boolean success) {
+        if (success) {
+            loadSuccesses.increment();
+        } else {
+            loadFailures.increment();
+        }
+        totalLoadTimeNanos.add(nanos);
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int bucket = 0;
+        while (bucket < LOAD_TIME_BOUNDS_MILLIS.length && millis >= LOAD_TIME_BOUNDS_MILLIS[bucket]) {
+            bucket++;
+        }
+        loadTimeBuckets[bucket].increment();
+    }
+
+    void recordEviction(RemovalCause cause) {
+        evictions[cause.ordinal()].increment();
+    }
+
+    void recordEvictions(RemovalCause cause, long count) {
+        evictions[cause.ordinal()].add(count);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    // Hits that had to be deserialized from the off-heap tier; included in getHits
+    public long getOffHeapHits() {
+        return offHeapHits.sum();
+    }
+
+    // Hits on cached "not found" results; included in getHits
+    public long getNegativeHits() {
+        return negativeHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getLoadCount() {
+        return loadSuccesses.sum() + loadFailures.sum();
+    }
+
+    public long getLoadFailures() {
+        return loadFailures.sum();
+    }
+
+    public long getTotalLoadTimeNanos() {
+        return totalLoadTimeNanos.sum();
+    }
+
+    public double getHitRate() {
+        long hitCount = getHits();
+        long requests = hitCount + getMisses();
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    public Map<String, Long> getLoadTimeHistogram() {
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < LOAD_TIME_BOUNDS_MILLIS.length; i++) {
+            histogram.put("<" + LOAD_TIME_BOUNDS_MILLIS[i] + "ms", loadTimeBuckets[i].sum());
+        }
+        histogram.put(">=" + LOAD_TIME_BOUNDS_MILLIS[LOAD_TIME_BOUNDS_MILLIS.length - 1] + "ms",
+                loadTimeBuckets[LOAD_TIME_BOUNDS_MILLIS.length].sum());
+        return histogram;
+    }
+
+    public Map<RemovalCause, Long> getEvictions() {
+        Map<RemovalCause, Long> counts = new EnumMap<>(RemovalCause.class);
+        for (RemovalCause cause : RemovalCause.values()) {
+            counts.put(cause, evictions[cause.ordinal()].sum());
+        }
+        return counts;
+    }
+
+    public void reset() {
+        hits.reset();
+        misses.reset();
+        offHeapHits.reset();
+        negativeHits.reset();
+        loadSuccesses.reset();
+        loadFailures.reset();
+        totalLoadTimeNanos.reset();
+        for (LongAdder bucket : loadTimeBuckets) {
+            bucket.reset();
+        }
+        for (LongAdder eviction : evictions) {
+            eviction.reset();
+        }
+    }
+
+    private static LongAdder[] newAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.bookblog.cache;
+
+// Kinds of entities whose changes are broadcast to the other nodes' caches
+public enum CachedEntityType {
+    BOOK,
+    CATEGORY,
+    USER,
+    // Keyed by the id of the user who wrote the responses
+    USER_RESPONSES,
+    // Carries a dependency tag of the category-search region instead of an id
+    CATEGORY_SEARCH
+}
@@ -1,85 +1,814 @@
 package com.example.bookblog.cache;
 
 import java.time.Duration;
-import java.time.Instant;
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.stereotype.Component;
 
-@Component
 public class InMemoryCache<K, V> {
     private static final Logger logger = LoggerFactory.getLogger(InMemoryCache.class);
-    private static final int MAX_SIZE = 2;
-    private static final Duration TTL = Duration.ofMinutes(10);
+    private static final int EXPIRATION_BATCH = 16;
 
-    private final Map<K, CacheEntry<V>> cache = new LinkedHashMap<>(MAX_SIZE, 0.75f, true) {
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
-            boolean shouldRemove = size() > MAX_SIZE || eldest.getValue().isExpired();
-            if (size() > MAX_SIZE) {
-                logger.warn("Cache size exceeded max limit of {}."
-                        + " Removing eldest entry.", MAX_SIZE);
-            }
-            return shouldRemove;
+    private final int maxSize;
+    private final long maxWeight;
+    private final Weigher<? super K, ? super V> weigher;
+    private final long ttlNanos;
+    private final long refreshAfterNanos;
+    private final long maxStaleNanos;
+    private final long negativeTtlNanos;
+    private final Ticker ticker;
+    private final Executor refreshExecutor;
+    private final ConcurrentHashMap<K, CacheEntry<K, V>> cache = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<K, CompletableFuture<V>> loads = new ConcurrentHashMap<>();
+    private final ReadBuffer<CacheEntry<K, V>> readBuffer = new ReadBuffer<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final AccessOrderDeque<K, V> accessOrder = new AccessOrderDeque<>();
+    private final TimerWheel<K, V> timerWheel;
+    private final CacheStats stats = new CacheStats();
+    private final FrequencySketch sketch;
+    private final OffHeapStore<K> offHeap;
+    private final ValueCodec<V> codec;
+    private final ConcurrentLinkedQueue<CacheEntry<K, V>> demotions = new ConcurrentLinkedQueue<>();
+    private final boolean transactional;
+    private final Tagger<? super K, ? super V> tagger;
+    // Linked entries by dependency tag, guarded by the eviction lock
+    private final Map<String, Set<CacheEntry<K, V>>> tagIndex = new HashMap<>();
+    // Written under the eviction lock
+    private volatile int tagInvalidations;
+
+    public InMemoryCache(int maxSize, Duration ttl) {
+        this(maxSize, ttl, Ticker.SYSTEM);
+    }
+
+    public InMemoryCache(int maxSize, Duration ttl, Ticker ticker) {
+        this(new Builder<K, V>().maximumSize(maxSize).expireAfterWrite(ttl).ticker(ticker));
+    }
+
+    private InMemoryCache(Builder<K, V> builder) {
+        if (builder.maximumSize <= 0) {
+            throw new IllegalArgumentException("Cache max size must be positive");
         }
-    };
+        this.maxSize = builder.maximumSize;
+        this.maxWeight = builder.maximumWeight;
+        this.weigher = builder.weigher;
+        this.ttlNanos = builder.expireAfterWrite.toNanos();
+        this.refreshAfterNanos = builder.refreshAfterWrite == null
+                ? 0 : builder.refreshAfterWrite.toNanos();
+        this.maxStaleNanos = builder.maxStale.toNanos();
+        this.negativeTtlNanos = builder.negativeTtl.toNanos();
+        this.ticker = builder.ticker;
+        this.refreshExecutor = builder.refreshExecutor;
+        this.timerWheel = new TimerWheel<>(ticker.read());
+        this.sketch = builder.admissionPolicy == AdmissionPolicy.TINY_LFU
+                ? new FrequencySketch(maxSize) : null;
+        this.offHeap = builder.offHeapCapacity > 0
+                ? new OffHeapStore<>(builder.offHeapCapacity, stats) : null;
+        this.codec = builder.valueCodec;
+        this.transactional = builder.transactional;
+        this.tagger = builder.tagger;
+    }
+
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<>();
+    }
 
     public Optional<V> get(K key) {
-        cleanUp();
-        CacheEntry<V> entry = cache.get(key);
-        if (entry == null || entry.isExpired()) {
-            cache.remove(key);
+        CacheEntry<K, V> entry = getFresh(key);
+        if (entry == null) {
+            stats.recordMiss();
             return Optional.empty();
         }
-        return Optional.of(entry.value);
+        stats.recordHit();
+        recordRead(entry);
+        if (entry.isTombstone()) {
+            stats.recordNegativeHit();
+        }
+        return Optional.ofNullable(entry.value);
     }
 
+    // A loader returning null reports a missing key: with a negative TTL the absence is cached
+    // as a tombstone, and null is returned until the tombstone expires or the key is written
     public V getOrCompute(K key, Supplier<V> supplier) {
-        return get(key).orElseGet(() -> {
-            V value = supplier.get();
-            put(key, value);
-            return value;
-        });
+        CacheEntry<K, V> entry = lookup(key);
+        if (entry != null && entry.isTombstone()) {
+            if (!entry.isExpired(ticker.read())) {
+                stats.recordHit();
+                stats.recordNegativeHit();
+                recordRead(entry);
+                return null;
+            }
+        } else if (entry != null) {
+            long age = ticker.read() - entry.writeTime;
+            boolean fresh = age < ttlNanos;
+            if (fresh || age < ttlNanos + maxStaleNanos) {
+                stats.recordHit();
+                recordRead(entry);
+                if (!fresh || (refreshAfterNanos > 0 && age >= refreshAfterNanos)) {
+                    refreshAsync(key, supplier);
+                }
+                return entry.value;
+            }
+        }
+        stats.recordMiss();
+        return load(key, supplier);
+    }
+
+    public Optional<V> findOrCompute(K key, Supplier<Optional<V>> loader) {
+        return Optional.ofNullable(getOrCompute(key, () -> loader.get().orElse(null)));
+    }
+
+    // Caches that the key does not exist, for callers that do not cache the value itself
+    public void markAbsent(K key) {
+        if (negativeTtlNanos > 0 && !deferToCommit(() -> markAbsent(key))) {
+            loads.remove(key);
+            store(key, null);
+        }
+    }
+
+    public boolean isKnownAbsent(K key) {
+        CacheEntry<K, V> entry = getFresh(key);
+        if (entry == null || !entry.isTombstone()) {
+            return false;
+        }
+        stats.recordHit();
+        stats.recordNegativeHit();
+        recordRead(entry);
+        return true;
     }
 
     public void put(K key, V value) {
-        cleanUp();
-        cache.put(key, new CacheEntry<>(value, Instant.now().plus(TTL)));
+        if (deferToCommit(() -> put(key, value))) {
+            return;
+        }
+        loads.remove(key);
+        store(key, value);
     }
 
     public void update(K key, V newValue) {
-        if (cache.containsKey(key)) {
-            cache.put(key, new CacheEntry<>(newValue, Instant.now().plus(TTL)));
+        if (deferToCommit(() -> update(key, newValue))) {
+            return;
+        }
+        loads.remove(key);
+        CacheEntry<K, V> previous = cache.get(key);
+        while (previous != null) {
+            CacheEntry<K, V> entry = newEntry(key, newValue);
+            if (cache.replace(key, previous, entry)) {
+                previous.retire();
+                removeOffHeap(key);
+                afterWrite(entry, previous);
+                return;
+            }
+            previous = cache.get(key);
+        }
+        if (offHeap != null && offHeap.remove(key)) {
+            store(key, newValue);
         }
     }
 
     public void remove(K key) {
-        cache.remove(key);
+        if (deferToCommit(() -> remove(key))) {
+            return;
+        }
+        loads.remove(key);
+        CacheEntry<K, V> entry = cache.remove(key);
+        if (entry != null) {
+            entry.retire();
+            stats.recordEviction(RemovalCause.EXPLICIT);
+            scheduleUnlink(entry);
+        }
+        if (offHeap != null && offHeap.remove(key) && entry == null) {
+            stats.recordEviction(RemovalCause.EXPLICIT);
+        }
     }
 
     public void clear() {
-        cache.clear();
+        if (deferToCommit(this::clear)) {
+            return;
+        }
+        loads.clear();
+        evictionLock.lock();
+        try {
+            // Entry by entry, so one stored concurrently is either retired here or stays mapped;
+            // a bulk clear could drop it unretired, and its writer would then link a ghost
+            int cleared = 0;
+            for (CacheEntry<K, V> entry : cache.values()) {
+                if (cache.remove(entry.key, entry)) {
+                    entry.retire();
+                    cleared++;
+                }
+            }
+            stats.recordEvictions(RemovalCause.EXPLICIT, cleared);
+            readBuffer.drainTo(entry -> { });
+            for (CacheEntry<K, V> entry = accessOrder.peekFirst(); entry != null;
+                    entry = entry.next) {
+                timerWheel.deschedule(entry);
+            }
+            accessOrder.clear();
+            tagIndex.clear();
+            demotions.clear();
+            if (offHeap != null) {
+                stats.recordEvictions(RemovalCause.EXPLICIT, offHeap.clear());
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    // Removes every entry, on-heap or off-heap, whose value was tagged with the given tag.
+    // Loads in flight are detached, as they may have read what the write changed
+    public void invalidateTag(String tag) {
+        if (tagger == null) {
+            clear();
+            return;
+        }
+        if (deferToCommit(() -> invalidateTag(tag))) {
+            return;
+        }
+        loads.clear();
+        int invalidated = 0;
+        evictionLock.lock();
+        try {
+            tagInvalidations++;
+            Set<CacheEntry<K, V>> tagged = tagIndex.remove(tag);
+            if (tagged != null) {
+                for (CacheEntry<K, V> entry : tagged) {
+                    unlink(entry);
+                    if (cache.remove(entry.key, entry)) {
+                        entry.retire();
+                        invalidated++;
+                    }
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+        if (offHeap != null) {
+            // The off-heap index is not tagged, so it is scanned; it only holds slot metadata
+            int[] offHeapInvalidated = {0};
+            offHeap.forEach((key, slot) -> {
+                if (slot.hasTag(tag) && offHeap.remove(key, slot)) {
+                    offHeapInvalidated[0]++;
+                }
+            });
+            invalidated += offHeapInvalidated[0];
+        }
+        stats.recordEvictions(RemovalCause.EXPLICIT, invalidated);
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    // Estimated bytes held on-heap; only tracked when the region has a maximum weight
+    public long weight() {
+        return accessOrder.weight();
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public int offHeapSize() {
+        return offHeap == null ? 0 : offHeap.size();
+    }
+
+    public long offHeapUsedBytes() {
+        return offHeap == null ? 0 : offHeap.usedBytes();
+    }
+
+    public long offHeapCapacityBytes() {
+        return offHeap == null ? 0 : offHeap.capacityBytes();
+    }
+
+    public CacheStats stats() {
+        return stats;
+    }
+
+    // Visits live entries coldest first: the off-heap tier, then on-heap in LRU order
+    public void forEachEntry(EntryConsumer<K, V> consumer) {
+        List<CacheEntry<K, V>> entries = new ArrayList<>();
+        evictionLock.lock();
+        try {
+            for (CacheEntry<K, V> entry = accessOrder.peekFirst(); entry != null;
+                    entry = entry.next) {
+                entries.add(entry);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+        long now = ticker.read();
+        if (offHeap != null) {
+            offHeap.forEach((key, slot) -> {
+                byte[] bytes = offHeap.read(key, slot);
+                if (bytes != null && now - slot.expiresAt() < 0) {
+                    consumer.accept(key, codec.decode(bytes),
+                            now - slot.writeTime(), slot.expiresAt() - now);
+                }
+            });
+        }
+        for (CacheEntry<K, V> entry : entries) {
+            if (!entry.isRetired() && !entry.isExpired(now) && !entry.isTombstone()) {
+                consumer.accept(entry.key, entry.value,
+                        now - entry.writeTime, entry.expiresAt - now);
+            }
+        }
+    }
+
+    // Re-inserts an entry with its original age unless the key has been cached meanwhile
+    public boolean restore(K key, V value, long ageNanos, long expiresInNanos) {
+        if (expiresInNanos <= 0) {
+            return false;
+        }
+        long now = ticker.read();
+        CacheEntry<K, V> entry = new CacheEntry<>(key, value, now - ageNanos, now + expiresInNanos,
+                weigh(key, value), tag(key, value));
+        if (cache.putIfAbsent(key, entry) != null) {
+            return false;
+        }
+        afterWrite(entry, null);
+        return true;
+    }
+
+    public void cleanUp() {
+        evictionLock.lock();
+        try {
+            maintenance(null);
+        } finally {
+            evictionLock.unlock();
+        }
+        demoteEvicted();
+    }
+
+    private V load(K key, Supplier<V> supplier) {
+        CompletableFuture<V> loading = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = loads.putIfAbsent(key, loading);
+        if (inFlight != null) {
+            return await(inFlight);
+        }
+
+        CacheEntry<K, V> loaded = getFresh(key);
+        if (loaded != null) {
+            loads.remove(key, loading);
+            loading.complete(loaded.value);
+            return loaded.value;
+        }
+        long start = ticker.read();
+        try {
+            V value = supplier.get();
+            stats.recordLoad(ticker.read() - start, true);
+            // A write or removal during the load detaches it, so a stale value is not cached;
+            // neither is a value read by a transaction whose own writes are not committed yet
+            if (loads.remove(key, loading) && (value != null || negativeTtlNanos > 0)
+                    && !(transactional && TransactionalWrites.hasPending(this))) {
+                store(key, value);
+            }
+            loading.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            stats.recordLoad(ticker.read() - start, false);
+            loads.remove(key, loading);
+            loading.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private CacheEntry<K, V> getFresh(K key) {
+        CacheEntry<K, V> entry = lookup(key);
+        if (entry == null) {
+            return null;
+        }
+        long now = ticker.read();
+        if (entry.isExpired(now)) {
+            if (cache.remove(key, entry)) {
+                entry.retire();
+                stats.recordEviction(RemovalCause.EXPIRED);
+                scheduleUnlink(entry);
+            }
+            return null;
+        }
+        return entry.isTombstone() || now - entry.writeTime < ttlNanos ? entry : null;
+    }
+
+    private V await(CompletableFuture<V> inFlight) {
+        try {
+            return inFlight.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    private void store(K key, V value) {
+        CacheEntry<K, V> entry = newEntry(key, value);
+        CacheEntry<K, V> previous = cache.put(key, entry);
+        if (previous != null) {
+            previous.retire();
+        }
+        removeOffHeap(key);
+        afterWrite(entry, previous);
+    }
+
+    // Inside a transaction the write is buffered until commit and dropped on rollback. The buffered
+    // write calls back into the public method, which by then runs outside the buffering phase
+    private boolean deferToCommit(Runnable write) {
+        return transactional && TransactionalWrites.defer(this, write);
+    }
+
+    private CacheEntry<K, V> newEntry(K key, V value) {
+        long now = ticker.read();
+        long lifetime = value == null ? negativeTtlNanos : ttlNanos + maxStaleNanos;
+        return new CacheEntry<>(key, value, now, now + lifetime, weigh(key, value),
+                tag(key, value));
+    }
+
+    // Runs on the writing thread, outside the eviction lock
+    private int weigh(K key, V value) {
+        return maxWeight > 0 ? Math.max(0, weigher.weigh(key, value)) : 0;
+    }
+
+    private String[] tag(K key, V value) {
+        if (tagger == null || value == null) {
+            return null;
+        }
+        Collection<String> tags = tagger.tags(key, value);
+        return tags == null || tags.isEmpty() ? null : tags.toArray(new String[0]);
+    }
+
+    private void refreshAsync(K key, Supplier<V> supplier) {
+        CompletableFuture<V> refreshing = new CompletableFuture<>();
+        if (loads.putIfAbsent(key, refreshing) != null) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> refresh(key, supplier, refreshing));
+        } catch (RejectedExecutionException e) {
+            loads.remove(key, refreshing);
+            refreshing.completeExceptionally(e);
+            logger.debug("Refresh of key {} skipped, executor is saturated", key);
+        }
+    }
+
+    private void refresh(K key, Supplier<V> supplier, CompletableFuture<V> refreshing) {
+        long start = ticker.read();
+        try {
+            V value = supplier.get();
+            stats.recordLoad(ticker.read() - start, true);
+            if (loads.remove(key, refreshing) && (value != null || negativeTtlNanos > 0)) {
+                store(key, value);
+            }
+            refreshing.complete(value);
+        } catch (RuntimeException | Error e) {
+            stats.recordLoad(ticker.read() - start, false);
+            loads.remove(key, refreshing);
+            refreshing.completeExceptionally(e);
+            logger.warn("Refresh of key {} failed, keeping the cached value", key, e);
+        }
+    }
+
+    private void recordRead(CacheEntry<K, V> entry) {
+        if (readBuffer.offer(entry)) {
+            tryDrainReadBuffer();
+        }
+    }
+
+    private void afterWrite(CacheEntry<K, V> entry, CacheEntry<K, V> previous) {
+        evictionLock.lock();
+        try {
+            if (previous != null) {
+                unlink(previous);
+            }
+            CacheEntry<K, V> candidate = null;
+            if (!entry.isRetired() && !entry.linked) {
+                accessOrder.addLast(entry);
+                timerWheel.schedule(entry);
+                index(entry);
+                if (sketch != null) {
+                    sketch.increment(entry.key);
+                    candidate = previous == null ? entry : null;
+                }
+            }
+            maintenance(candidate);
+        } finally {
+            evictionLock.unlock();
+        }
+        demoteEvicted();
+    }
+
+    private void scheduleUnlink(CacheEntry<K, V> entry) {
+        evictionLock.lock();
+        try {
+            unlink(entry);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void tryDrainReadBuffer() {
+        if (evictionLock.tryLock()) {
+            try {
+                maintenance(null);
+            } finally {
+                evictionLock.unlock();
+            }
+            demoteEvicted();
+        }
+    }
+
+    private void maintenance(CacheEntry<K, V> candidate) {
+        readBuffer.drainTo(this::onAccess);
+        timerWheel.advance(ticker.read(), EXPIRATION_BATCH, this::expire);
+        evictEntries(candidate);
+    }
+
+    private void unlink(CacheEntry<K, V> entry) {
+        accessOrder.unlink(entry);
+        timerWheel.deschedule(entry);
+        unindex(entry);
+    }
+
+    private void index(CacheEntry<K, V> entry) {
+        if (entry.tags != null) {
+            for (String tag : entry.tags) {
+                tagIndex.computeIfAbsent(tag,
+                        ignored -> Collections.newSetFromMap(new IdentityHashMap<>())).add(entry);
+            }
+        }
+    }
+
+    private void unindex(CacheEntry<K, V> entry) {
+        if (entry.tags != null) {
+            for (String tag : entry.tags) {
+                Set<CacheEntry<K, V>> tagged = tagIndex.get(tag);
+                if (tagged != null && tagged.remove(entry) && tagged.isEmpty()) {
+                    tagIndex.remove(tag);
+                }
+            }
+        }
+    }
+
+    private void expire(CacheEntry<K, V> entry) {
+        accessOrder.unlink(entry);
+        unindex(entry);
+        if (cache.remove(entry.key, entry)) {
+            entry.retire();
+            stats.recordEviction(RemovalCause.EXPIRED);
+        }
+    }
+
+    private void onAccess(CacheEntry<K, V> entry) {
+        if (!entry.isRetired()) {
+            accessOrder.moveToEnd(entry);
+            if (sketch != null) {
+                sketch.increment(entry.key);
+            }
+        }
+    }
+
+    private void evictEntries(CacheEntry<K, V> candidate) {
+        while (accessOrder.size() > maxSize
+                || (maxWeight > 0 && accessOrder.weight() > maxWeight)) {
+            CacheEntry<K, V> victim = accessOrder.peekFirst();
+            if (candidate != null && candidate != victim && candidate.linked
+                    && sketch.frequency(candidate.key) <= sketch.frequency(victim.key)) {
+                // TinyLFU: the new entry is colder than the one it would push out
+                victim = candidate;
+            }
+            candidate = null;
+            unlink(victim);
+            if (cache.remove(victim.key, victim)) {
+                victim.retire();
+                if (offHeap != null && !victim.isTombstone()) {
+                    // Serialized outside the eviction lock by demoteEvicted
+                    victim.tagEpoch = tagInvalidations;
+                    demotions.add(victim);
+                } else {
+                    stats.recordEviction(RemovalCause.SIZE);
+                    logger.debug("Cache exceeded max size {} or weight {}. Evicted key {}",
+                            maxSize, maxWeight, victim.key);
+                }
+            }
+        }
+    }
+
+    private CacheEntry<K, V> lookup(K key) {
+        CacheEntry<K, V> entry = cache.get(key);
+        if (entry == null && offHeap != null) {
+            entry = promote(key);
+        }
+        return entry;
+    }
+
+    // Moves an off-heap entry back on-heap, keeping its original write time
+    private CacheEntry<K, V> promote(K key) {
+        OffHeapStore.Slot slot = offHeap.slot(key);
+        if (slot == null) {
+            return null;
+        }
+        if (ticker.read() - slot.expiresAt() >= 0) {
+            if (offHeap.remove(key, slot)) {
+                stats.recordEviction(RemovalCause.EXPIRED);
+            }
+            return null;
+        }
+        byte[] bytes = offHeap.read(key, slot);
+        if (bytes == null) {
+            return null;
+        }
+        V value;
+        try {
+            value = codec.decode(bytes);
+        } catch (RuntimeException e) {
+            offHeap.remove(key, slot);
+            logger.warn("Dropping off-heap value of key {} that cannot be decoded", key, e);
+            return null;
+        }
+        CacheEntry<K, V> entry = new CacheEntry<>(key, value, slot.writeTime(), slot.expiresAt(),
+                weigh(key, value), slot.tags());
+        CacheEntry<K, V> existing = cache.putIfAbsent(key, entry);
+        if (existing != null) {
+            return existing;
+        }
+        if (!offHeap.remove(key, slot)) {
+            // Removed or overwritten while we were decoding; do not resurrect the old value
+            if (cache.remove(key, entry)) {
+                entry.retire();
+            }
+            return null;
+        }
+        stats.recordOffHeapHit();
+        afterWrite(entry, null);
+        return entry;
+    }
+
+    private void demoteEvicted() {
+        CacheEntry<K, V> entry;
+        while ((entry = demotions.poll()) != null) {
+            demote(entry);
+        }
     }
 
-    private void cleanUp() {
-        cache.entrySet().removeIf(entry -> entry.getValue().isExpired());
+    private void demote(CacheEntry<K, V> entry) {
+        if (entry.isExpired(ticker.read())) {
+            stats.recordEviction(RemovalCause.EXPIRED);
+            return;
+        }
+        OffHeapStore.Slot slot = null;
+        try {
+            slot = offHeap.write(entry.key, codec.encode(entry.value),
+                    entry.writeTime, entry.expiresAt, entry.tags);
+        } catch (RuntimeException e) {
+            logger.warn("Cannot move key {} off-heap, dropping it", entry.key, e);
+        }
+        if (slot == null) {
+            stats.recordEviction(RemovalCause.SIZE);
+            return;
+        }
+        // A write that raced with the demotion wins over the evicted value, and a tag
+        // invalidation that may have missed the value in transit drops it
+        if (cache.containsKey(entry.key)
+                || (entry.tags != null && entry.tagEpoch != tagInvalidations)) {
+            offHeap.remove(entry.key, slot);
+        }
     }
 
-    private static class CacheEntry<V> {
-        private final V value;
-        private final Instant expiryTime;
+    private void removeOffHeap(K key) {
+        if (offHeap != null) {
+            offHeap.remove(key);
+        }
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer<K, V> {
+        void accept(K key, V value, long ageNanos, long expiresInNanos);
+    }
+
+    public static final class Builder<K, V> {
+        private int maximumSize = 100;
+        private long maximumWeight;
+        private Weigher<? super K, ? super V> weigher = new RetainedSizeWeigher();
+        private Duration expireAfterWrite = Duration.ofMinutes(10);
+        private Duration refreshAfterWrite;
+        private Duration maxStale = Duration.ZERO;
+        private Duration negativeTtl = Duration.ZERO;
+        private Ticker ticker = Ticker.SYSTEM;
+        private Executor refreshExecutor = ForkJoinPool.commonPool();
+        private AdmissionPolicy admissionPolicy = AdmissionPolicy.LRU;
+        private long offHeapCapacity;
+        private ValueCodec<V> valueCodec = new JavaSerializationCodec<>();
+        private boolean transactional;
+        private Tagger<? super K, ? super V> tagger;
+
+        private Builder() {
+        }
+
+        public Builder<K, V> maximumSize(int maximumSize) {
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        // Bounds the summed weight of on-heap entries, in addition to maximumSize; zero disables
+        public Builder<K, V> maximumWeight(long maximumWeight) {
+            this.maximumWeight = maximumWeight;
+            return this;
+        }
+
+        // Defaults to RetainedSizeWeigher, so the maximum weight is an estimate in bytes
+        public Builder<K, V> weigher(Weigher<? super K, ? super V> weigher) {
+            this.weigher = weigher;
+            return this;
+        }
+
+        public Builder<K, V> expireAfterWrite(Duration expireAfterWrite) {
+            this.expireAfterWrite = expireAfterWrite;
+            return this;
+        }
+
+        // Entries older than this are served as-is while a reload runs in the background
+        public Builder<K, V> refreshAfterWrite(Duration refreshAfterWrite) {
+            this.refreshAfterWrite = refreshAfterWrite;
+            return this;
+        }
+
+        // How long past its TTL getOrCompute may still serve an entry while it is reloaded
+        public Builder<K, V> maxStale(Duration maxStale) {
+            this.maxStale = maxStale == null ? Duration.ZERO : maxStale;
+            return this;
+        }
+
+        // How long a "not found" result is cached; zero disables tombstones
+        public Builder<K, V> negativeTtl(Duration negativeTtl) {
+            this.negativeTtl = negativeTtl == null ? Duration.ZERO : negativeTtl;
+            return this;
+        }
+
+        public Builder<K, V> ticker(Ticker ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
+        public Builder<K, V> refreshExecutor(Executor refreshExecutor) {
+            this.refreshExecutor = refreshExecutor;
+            return this;
+        }
+
+        public Builder<K, V> admissionPolicy(AdmissionPolicy admissionPolicy) {
+            this.admissionPolicy = admissionPolicy;
+            return this;
+        }
+
+        // Size-evicted entries are serialized into this many bytes of direct memory instead of
+        // being dropped; zero disables the off-heap tier
+        public Builder<K, V> offHeapCapacity(long offHeapCapacity) {
+            this.offHeapCapacity = offHeapCapacity;
+            return this;
+        }
+
+        public Builder<K, V> valueCodec(ValueCodec<V> valueCodec) {
+            this.valueCodec = valueCodec;
+            return this;
+        }
+
+        // Writes made inside a Spring-managed transaction take effect only after it commits
+        public Builder<K, V> transactional(boolean transactional) {
+            this.transactional = transactional;
+            return this;
+        }
 
-        CacheEntry(V value, Instant expiryTime) {
-            this.value = value;
-            this.expiryTime = expiryTime;
+        // Enables invalidateTag; without a tagger it falls back to clearing the region
+        public Builder<K, V> tagger(Tagger<? super K, ? super V> tagger) {
+            this.tagger = tagger;
+            return this;
         }
 
-        boolean isExpired() {
-            return Instant.now().isAfter(expiryTime);
+        public InMemoryCache<K, V> build() {
+            return new InMemoryCache<>(this);
         }
     }
 }
@@ -0,0 +1,34 @@
+package com.example.bookblog.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+
+public class JavaSerializationCodec<V> implements ValueCodec<V> {
+
+    @Override
+    public byte[] encode(V value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot serialize cached value", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V decode(byte[] bytes) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (V) in.readObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot deserialize cached value", e);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Cannot deserialize cached value", e);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.bookblog.cache;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+// Log-structured store of serialized values in direct ByteBuffer slabs. Writes append to the
+// current slab; when the log wraps, the oldest slab is recycled and whatever it held is dropped.
+// Only the small index of slots lives on the heap.
+class OffHeapStore<K> {
+    private static final int SLAB_COUNT = 8;
+
+    record Slot(int slab, int offset, int length, long writeTime, long expiresAt,
+                String[] tags) {
+        boolean hasTag(String tag) {
+            if (tags != null) {
+                for (String candidate : tags) {
+                    if (candidate.equals(tag)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    private final ByteBuffer[] slabs = new ByteBuffer[SLAB_COUNT];
+    private final int slabSize;
+    private final ConcurrentHashMap<K, Slot> index = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final CacheStats stats;
+    private int currentSlab;
+    private int writeOffset;
+
+    OffHeapStore(long capacityBytes, CacheStats stats) {
+        if (capacityBytes < SLAB_COUNT) {
+            throw new IllegalArgumentException("Off-heap capacity is too small");
+        }
+        this.slabSize = (int) Math.min(Integer.MAX_VALUE, capacityBytes / SLAB_COUNT);
+        this.stats = stats;
+    }
+
+    Slot slot(K key) {
+        return index.get(key);
+    }
+
+    // Returns null when the slot was dropped or replaced in the meantime
+    byte[] read(K key, Slot slot) {
+        lock.readLock().lock();
+        try {
+            if (index.get(key) != slot) {
+                return null;
+            }
+            byte[] bytes = new byte[slot.length()];
+            slabs[slot.slab()].get(slot.offset(), bytes);
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Returns the slot the value was written to, or null when it does not fit in a slab
+    Slot write(K key, byte[] bytes, long writeTime, long expiresAt, String[] tags) {
+        if (bytes.length > slabSize) {
+            remove(key);
+            return null;
+        }
+        lock.writeLock().lock();
+        try {
+            if (writeOffset + bytes.length > slabSize) {
+                currentSlab = (currentSlab + 1) % SLAB_COUNT;
+                writeOffset = 0;
+                stats.recordEvictions(RemovalCause.SIZE, dropSlab(currentSlab));
+            }
+            if (slabs[currentSlab] == null) {
+                slabs[currentSlab] = ByteBuffer.allocateDirect(slabSize);
+            }
+            slabs[currentSlab].put(writeOffset, bytes);
+            Slot slot = new Slot(currentSlab, writeOffset, bytes.length, writeTime, expiresAt,
+                    tags);
+            writeOffset += bytes.length;
+            Slot previous = index.put(key, slot);
+            usedBytes.addAndGet(bytes.length - (previous == null ? 0 : previous.length()));
+            return slot;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    boolean remove(K key) {
+        Slot slot = index.remove(key);
+        if (slot != null) {
+            usedBytes.addAndGet(-slot.length());
+        }
+        return slot != null;
+    }
+
+    boolean remove(K key, Slot slot) {
+        if (index.remove(key, slot)) {
+            usedBytes.addAndGet(-slot.length());
+            return true;
+        }
+        return false;
+    }
+
+    void forEach(BiConsumer<K, Slot> action) {
+        index.forEach(action);
+    }
+
+    int size() {
+        return index.size();
+    }
+
+    long usedBytes() {
+        return usedBytes.get();
+    }
+
+    long capacityBytes() {
+        return (long) slabSize * SLAB_COUNT;
+    }
+
+    int clear() {
+        lock.writeLock().lock();
+        try {
+            int removed = 0;
+            for (K key : index.keySet()) {
+                if (remove(key)) {
+                    removed++;
+                }
+            }
+            currentSlab = 0;
+            writeOffset = 0;
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int dropSlab(int slab) {
+        int dropped = 0;
+        for (Map.Entry<K, Slot> entry : index.entrySet()) {
+            if (entry.getValue().slab() == slab && remove(entry.getKey(), entry.getValue())) {
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.bookblog.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+// Striped, lossy ring buffers that record reads so LRU reordering can be replayed in batches
+class ReadBuffer<E> {
+    static final int BUFFER_SIZE = 16;
+    private static final int MASK = BUFFER_SIZE - 1;
+    private static final int DRAIN_THRESHOLD = BUFFER_SIZE / 2;
+
+    private final Stripe<E>[] stripes;
+    private final int stripeMask;
+
+    @SuppressWarnings("unchecked")
+    ReadBuffer() {
+        int count = Integer.highestOneBit(Math.max(1,
+                Runtime.getRuntime().availableProcessors() - 1) << 1);
+        stripes = (Stripe<E>[]) new Stripe<?>[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe<>();
+        }
+        stripeMask = count - 1;
+    }
+
+    // Returns true when the caller should drain; the record is dropped if the stripe is full
+    boolean offer(E element) {
+        Stripe<E> stripe = stripes[stripeIndex()];
+        long head = stripe.readCounter;
+        long tail = stripe.writeCounter.get();
+        long size = tail - head;
+        if (size >= BUFFER_SIZE) {
+            return true;
+        }
+        if (stripe.writeCounter.compareAndSet(tail, tail + 1)) {
+            stripe.buffer.lazySet((int) (tail & MASK), element);
+            return size + 1 >= DRAIN_THRESHOLD;
+        }
+        return false;
+    }
+
+    // Must be called by a single thread at a time (the eviction lock holder)
+    void drainTo(Consumer<E> consumer) {
+        for (Stripe<E> stripe : stripes) {
+            long head = stripe.readCounter;
+            long tail = stripe.writeCounter.get();
+            while (head < tail) {
+                int index = (int) (head & MASK);
+                E element = stripe.buffer.get(index);
+                if (element == null) {
+                    break;
+                }
+                stripe.buffer.lazySet(index, null);
+                consumer.accept(element);
+                head++;
+            }
+            stripe.readCounter = head;
+        }
+    }
+
+    private int stripeIndex() {
+        long id = Thread.currentThread().getId();
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & stripeMask;
+    }
+
+    private static final class Stripe<E> {
+        private final AtomicLong writeCounter = new AtomicLong();
+        private final AtomicReferenceArray<E> buffer = new AtomicReferenceArray<>(BUFFER_SIZE);
+        private volatile long readCounter;
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.bookblog.cache;
+
+public enum RemovalCause {
+    SIZE,
+    EXPIRED,
+    EXPLICIT
+}
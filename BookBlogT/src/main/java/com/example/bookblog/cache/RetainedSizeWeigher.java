@@ -0,0 +1,191 @@
+package com.example.bookblog.cache;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Estimates the bytes an entry retains on a 64-bit JVM with compressed oops. Walks the project's
+// own classes (the DTOs) field by field and JDK collections element by element; anything else,
+// including Hibernate's lazy collections, is counted shallowly and never initialized.
+public class RetainedSizeWeigher implements Weigher<Object, Object> {
+    private static final String PROJECT_PACKAGE = "com.example.bookblog.";
+    private static final int OBJECT_HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE = 4;
+    // CacheEntry plus its ConcurrentHashMap node
+    private static final int ENTRY_OVERHEAD = 96;
+    private static final int OPAQUE_OBJECT = 32;
+    private static final int HASH_NODE = 32;
+
+    private static final ClassValue<ClassLayout> LAYOUTS = new ClassValue<>() {
+        @Override
+        protected ClassLayout computeValue(Class<?> type) {
+            return ClassLayout.of(type);
+        }
+    };
+
+    @Override
+    public int weigh(Object key, Object value) {
+        long size = ENTRY_OVERHEAD + retainedSize(key) + retainedSize(value);
+        return (int) Math.min(Integer.MAX_VALUE, size);
+    }
+
+    public long retainedSize(Object root) {
+        if (root == null) {
+            return 0;
+        }
+        Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Object> pending = new ArrayDeque<>();
+        pending.push(root);
+        long size = 0;
+        while (!pending.isEmpty()) {
+            Object object = pending.pop();
+            if (visited.add(object)) {
+                size += shallowSize(object, pending);
+            }
+        }
+        return size;
+    }
+
+    // Returns the object's own size and queues what it references
+    private static long shallowSize(Object object, Deque<Object> pending) {
+        Class<?> type = object.getClass();
+        if (object instanceof String string) {
+            return align(OBJECT_HEADER + 12) + align(ARRAY_HEADER
+                    + (long) string.length() * (isLatin1(string) ? 1 : 2));
+        }
+        if (object instanceof Number || object instanceof Boolean
+                || object instanceof Character) {
+            return object instanceof Long || object instanceof Double ? 24 : 16;
+        }
+        if (type.isEnum() || object instanceof Class) {
+            return 0;
+        }
+        if (type.isArray()) {
+            return arraySize(object, type.getComponentType(), pending);
+        }
+        boolean jdkType = type.getName().startsWith("java.");
+        if (object instanceof Collection<?> collection) {
+            if (!jdkType) {
+                return OPAQUE_OBJECT;
+            }
+            collection.forEach(element -> queue(element, pending));
+            return object instanceof Set ? hashTableSize(collection.size())
+                    : align(OBJECT_HEADER + 12) + align(ARRAY_HEADER
+                    + (long) REFERENCE * collection.size());
+        }
+        if (object instanceof Map<?, ?> map) {
+            if (!jdkType) {
+                return OPAQUE_OBJECT;
+            }
+            map.forEach((key, value) -> {
+                queue(key, pending);
+                queue(value, pending);
+            });
+            return hashTableSize(map.size());
+        }
+        if (!type.getName().startsWith(PROJECT_PACKAGE)) {
+            return jdkType && type.getName().startsWith("java.time.") ? 72 : OPAQUE_OBJECT;
+        }
+        ClassLayout layout = LAYOUTS.get(type);
+        for (Field field : layout.references) {
+            try {
+                queue(field.get(object), pending);
+            } catch (IllegalAccessException e) {
+                // Counted as a reference only
+            }
+        }
+        return layout.shallowSize;
+    }
+
+    private static long arraySize(Object array, Class<?> component, Deque<Object> pending) {
+        int length = Array.getLength(array);
+        if (!component.isPrimitive()) {
+            for (Object element : (Object[]) array) {
+                queue(element, pending);
+            }
+            return align(ARRAY_HEADER + (long) REFERENCE * length);
+        }
+        return align(ARRAY_HEADER + (long) primitiveSize(component) * length);
+    }
+
+    private static long hashTableSize(int entries) {
+        int capacity = Integer.highestOneBit(Math.max(1, entries * 4 / 3) * 2 - 1);
+        return 48 + align(ARRAY_HEADER + (long) REFERENCE * capacity)
+                + (long) HASH_NODE * entries;
+    }
+
+    private static void queue(Object object, Deque<Object> pending) {
+        if (object != null) {
+            pending.push(object);
+        }
+    }
+
+    private static boolean isLatin1(String string) {
+        for (int i = 0; i < string.length(); i++) {
+            if (string.charAt(i) > 0xff) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int primitiveSize(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        }
+        if (type == int.class || type == float.class) {
+            return 4;
+        }
+        if (type == short.class || type == char.class) {
+            return 2;
+        }
+        return 1;
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    private static final class ClassLayout {
+        final long shallowSize;
+        final Field[] references;
+
+        private ClassLayout(long shallowSize, Field[] references) {
+            this.shallowSize = shallowSize;
+            this.references = references;
+        }
+
+        static ClassLayout of(Class<?> type) {
+            long size = OBJECT_HEADER;
+            List<Field> references = new ArrayList<>();
+            for (Class<?> current = type; current != null && current != Object.class;
+                    current = current.getSuperclass()) {
+                for (Field field : current.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    if (field.getType().isPrimitive()) {
+                        size += primitiveSize(field.getType());
+                    } else {
+                        size += REFERENCE;
+                        if (current.getName().startsWith(PROJECT_PACKAGE)
+                                && field.trySetAccessible()) {
+                            references.add(field);
+                        }
+                    }
+                }
+            }
+            return new ClassLayout(align(size), references.toArray(new Field[0]));
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.bookblog.cache;
+
+import java.util.Collection;
+
+// Names what a cached value depends on, so a write can invalidate only the entries it affects
+@FunctionalInterface
+public interface Tagger<K, V> {
+    Collection<String> tags(K key, V value);
+}
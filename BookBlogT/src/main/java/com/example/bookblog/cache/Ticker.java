@@ -0,0 +1,8 @@
+package com.example.bookblog.cache;
+
+@FunctionalInterface
+public interface Ticker {
+    Ticker SYSTEM = System::nanoTime;
+
+    long read();
+}
@@ -0,0 +1,123 @@
+package com.example.bookblog.cache;
+
+import java.util.function.Consumer;
+
+// Hierarchical timing wheel over CacheEntry expiration times; callers must hold the eviction lock
+class TimerWheel<K, V> {
+    // Bucket spans are powers of two nanoseconds: ~1.07s, ~1.14m, ~1.22h, ~1.63d, ~6.5d
+    private static final int[] BUCKETS = {64, 64, 32, 4, 1};
+    private static final long[] SPANS = {
+        1L << 30,
+        1L << 36,
+        1L << 42,
+        1L << 47,
+        1L << 49
+    };
+    private static final int[] SHIFT = {30, 36, 42, 47, 49};
+
+    private final CacheEntry<K, V>[][] wheel;
+    private long nanos;
+
+    @SuppressWarnings("unchecked")
+    TimerWheel(long now) {
+        nanos = now;
+        wheel = (CacheEntry<K, V>[][]) new CacheEntry<?, ?>[BUCKETS.length][];
+        for (int level = 0; level < BUCKETS.length; level++) {
+            wheel[level] = (CacheEntry<K, V>[]) new CacheEntry<?, ?>[BUCKETS[level]];
+            for (int bucket = 0; bucket < BUCKETS[level]; bucket++) {
+                CacheEntry<K, V> sentinel = new CacheEntry<>(null, null, 0L, 0L);
+                sentinel.timerPrev = sentinel;
+                sentinel.timerNext = sentinel;
+                wheel[level][bucket] = sentinel;
+            }
+        }
+    }
+
+    void schedule(CacheEntry<K, V> entry) {
+        CacheEntry<K, V> sentinel = findBucket(entry.expiresAt);
+        CacheEntry<K, V> last = sentinel.timerPrev;
+        entry.timerPrev = last;
+        entry.timerNext = sentinel;
+        last.timerNext = entry;
+        sentinel.timerPrev = entry;
+    }
+
+    void deschedule(CacheEntry<K, V> entry) {
+        if (entry.timerNext == null) {
+            return;
+        }
+        entry.timerPrev.timerNext = entry.timerNext;
+        entry.timerNext.timerPrev = entry.timerPrev;
+        entry.timerPrev = null;
+        entry.timerNext = null;
+    }
+
+    // Expires at most `budget` entries; the rest are picked up by the next advance
+    int advance(long now, int budget, Consumer<CacheEntry<K, V>> onExpired) {
+        int remaining = budget;
+        long previous = nanos;
+        for (int level = 0; level < BUCKETS.length && remaining > 0; level++) {
+            long previousTicks = previous >>> SHIFT[level];
+            long currentTicks = now >>> SHIFT[level];
+            if (currentTicks - previousTicks <= 0) {
+                break;
+            }
+            remaining = expireLevel(level, previousTicks, currentTicks, now, remaining, onExpired);
+        }
+        if (remaining > 0) {
+            nanos = now;
+        }
+        return budget - remaining;
+    }
+
+    private int expireLevel(int level, long previousTicks, long currentTicks, long now,
+                            int budget, Consumer<CacheEntry<K, V>> onExpired) {
+        CacheEntry<K, V>[] buckets = wheel[level];
+        int mask = buckets.length - 1;
+        long delta = Math.min(currentTicks - previousTicks + 1, buckets.length);
+        int start = (int) (previousTicks & mask);
+        int remaining = budget;
+        for (int i = 0; i < delta && remaining > 0; i++) {
+            remaining = expireBucket(buckets[(start + i) & mask], now, remaining, onExpired);
+        }
+        return remaining;
+    }
+
+    private int expireBucket(CacheEntry<K, V> sentinel, long now, int budget,
+                             Consumer<CacheEntry<K, V>> onExpired) {
+        CacheEntry<K, V> entry = sentinel.timerNext;
+        sentinel.timerPrev = sentinel;
+        sentinel.timerNext = sentinel;
+
+        int remaining = budget;
+        while (entry != sentinel) {
+            CacheEntry<K, V> next = entry.timerNext;
+            entry.timerPrev = null;
+            entry.timerNext = null;
+            if (entry.expiresAt - now <= 0) {
+                if (remaining == 0) {
+                    schedule(entry);
+                } else {
+                    remaining--;
+                    onExpired.accept(entry);
+                }
+            } else {
+                schedule(entry);
+            }
+            entry = next;
+        }
+        return remaining;
+    }
+
+    private CacheEntry<K, V> findBucket(long time) {
+        long duration = time - nanos;
+        int lastLevel = BUCKETS.length - 1;
+        for (int level = 0; level < lastLevel; level++) {
+            if (duration < SPANS[level + 1]) {
+                long ticks = time >>> SHIFT[level];
+                return wheel[level][(int) (ticks & (BUCKETS[level] - 1))];
+            }
+        }
+        return wheel[lastLevel][0];
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.bookblog.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Buffers cache writes made inside a Spring-managed transaction and applies them in order once it
+// commits; a rollback drops them. One buffer is bound per transaction and shared by all regions.
+final class TransactionalWrites implements TransactionSynchronization {
+    private static final Logger logger = LoggerFactory.getLogger(TransactionalWrites.class);
+    private static final Object RESOURCE_KEY = new Object();
+
+    private final List<Runnable> writes = new ArrayList<>();
+    private final Set<InMemoryCache<?, ?>> caches =
+            Collections.newSetFromMap(new IdentityHashMap<>());
+    private boolean completing;
+
+    private TransactionalWrites() {
+    }
+
+    // Returns false when there is no transaction to wait for and the caller should write directly
+    static boolean defer(InMemoryCache<?, ?> cache, Runnable write) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return false;
+        }
+        TransactionalWrites buffer = current();
+        if (buffer == null) {
+            buffer = new TransactionalWrites();
+            TransactionSynchronizationManager.bindResource(RESOURCE_KEY, buffer);
+            TransactionSynchronizationManager.registerSynchronization(buffer);
+        } else if (buffer.completing) {
+            // Written from another synchronization's afterCommit; the data is already committed
+            return false;
+        }
+        buffer.writes.add(write);
+        buffer.caches.add(cache);
+        return true;
+    }
+
+    // True when the current transaction has uncommitted writes for the cache, so values it reads
+    // may not be visible to anyone else yet
+    static boolean hasPending(InMemoryCache<?, ?> cache) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return false;
+        }
+        TransactionalWrites buffer = current();
+        return buffer != null && !buffer.completing && buffer.caches.contains(cache);
+    }
+
+    private static TransactionalWrites current() {
+        return (TransactionalWrites) TransactionSynchronizationManager.getResource(RESOURCE_KEY);
+    }
+
+    @Override
+    public void suspend() {
+        TransactionSynchronizationManager.unbindResource(RESOURCE_KEY);
+    }
+
+    @Override
+    public void resume() {
+        TransactionSynchronizationManager.bindResource(RESOURCE_KEY, this);
+    }
+
+    @Override
+    public void afterCommit() {
+        completing = true;
+        for (Runnable write : writes) {
+            try {
+                write.run();
+            } catch (RuntimeException e) {
+                logger.warn("Cannot apply cache write after commit", e);
+            }
+        }
+    }
+
+    @Override
+    public void afterCompletion(int status) {
+        if (status != STATUS_COMMITTED && !writes.isEmpty()) {
+            logger.debug("Transaction rolled back, discarding {} cache writes", writes.size());
+        }
+        writes.clear();
+        caches.clear();
+        TransactionSynchronizationManager.unbindResourceIfPossible(RESOURCE_KEY);
+    }
+}
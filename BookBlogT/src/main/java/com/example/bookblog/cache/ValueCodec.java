@@ -0,0 +1,8 @@
+package com.example.bookblog.cache;
+
+// Turns cached values into bytes for the off-heap tier and back
+public interface ValueCodec<V> {
+    byte[] encode(V value);
+
+    V decode(byte[] bytes);
+}
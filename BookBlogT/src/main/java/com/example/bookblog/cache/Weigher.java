@@ -0,0 +1,7 @@
+package com.example.bookblog.cache;
+
+// Estimates how much an entry costs against a region's maximum weight
+@FunctionalInterface
+public interface Weigher<K, V> {
+    int weigh(K key, V value);
+}
@@ -0,0 +1,59 @@
+package com.example.bookblog.config;
+
+import com.example.bookblog.cache.CacheProperties;
+import com.example.bookblog.cache.CacheRegistry;
+import com.example.bookblog.cache.InMemoryCache;
+import com.example.bookblog.dto.CategoryWithUsersDto;
+import com.example.bookblog.dto.UserWithResponsesAndCategoryDto;
+import com.example.bookblog.entity.Book;
+import com.example.bookblog.entity.Response;
+import com.example.bookblog.service.CategoryService;
+import java.util.List;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+@Configuration
+@EnableConfigurationProperties(CacheProperties.class)
+@EnableScheduling
+public class CacheConfig {
+    public static final String BOOKS = "books";
+    public static final String CATEGORIES = "categories";
+    public static final String CATEGORY_SEARCH = "category-search";
+    public static final String USERS = "users";
+    public static final String RESPONSES = "responses";
+    public static final String VISIT_URLS = "visit-urls";
+
+    @Bean
+    public InMemoryCache<Long, Book> bookCache(CacheRegistry registry) {
+        return registry.region(BOOKS);
+    }
+
+    @Bean
+    public InMemoryCache<Long, CategoryWithUsersDto> categoryCache(CacheRegistry registry) {
+        return registry.region(CATEGORIES);
+    }
+
+    @Bean
+    public InMemoryCache<String, List<CategoryWithUsersDto>> categorySearchCache(
+            CacheRegistry registry) {
+        return registry.region(CATEGORY_SEARCH, CategoryService::searchTags);
+    }
+
+    @Bean
+    public InMemoryCache<Long, UserWithResponsesAndCategoryDto> userCache(
+            CacheRegistry registry) {
+        return registry.region(USERS);
+    }
+
+    @Bean
+    public InMemoryCache<Long, List<Response>> responseCache(CacheRegistry registry) {
+        return registry.region(RESPONSES);
+    }
+
+    @Bean
+    public InMemoryCache<String, Long> visitUrlCache(CacheRegistry registry) {
+        return registry.region(VISIT_URLS);
+    }
+}
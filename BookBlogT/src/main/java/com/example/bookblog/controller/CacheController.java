@@ -0,0 +1,62 @@
+package com.example.bookblog.controller;
+
+import com.example.bookblog.dto.CacheStatsDto;
+import com.example.bookblog.service.CacheStatsService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import java.util.List;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/cache")
+@Tag(name = "Cache Controller", description = "Статистика регионов кэша")
+public class CacheController {
+    private final CacheStatsService cacheStatsService;
+
+    public CacheController(CacheStatsService cacheStatsService) {
+        this.cacheStatsService = cacheStatsService;
+    }
+
+    @Operation(summary = "Статистика кэша",
+            description = "Возвращает счетчики попаданий, промахов, загрузок и вытеснений "
+                    + "для всех регионов")
+    @GetMapping("/stats")
+    public List<CacheStatsDto> getAllStats() {
+        return cacheStatsService.getAllStats();
+    }
+
+    @Operation(summary = "Статистика региона кэша",
+            description = "Возвращает статистику одного региона по имени")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Регион найден"),
+        @ApiResponse(responseCode = "404", description = "Регион не найден")
+    })
+    @GetMapping("/stats/{region}")
+    public ResponseEntity<CacheStatsDto> getStats(@PathVariable String region) {
+        return cacheStatsService.getStats(region)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @Operation(summary = "Сброс статистики кэша",
+            description = "Обнуляет счетчики указанного региона или всех регионов")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "204", description = "Статистика сброшена"),
+        @ApiResponse(responseCode = "404", description = "Регион не найден")
+    })
+    @PostMapping("/stats/reset")
+    public ResponseEntity<Void> resetStats(@RequestParam(required = false) String region) {
+        if (!cacheStatsService.resetStats(region)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -1,15 +1,20 @@
 package com.example.bookblog.controller;
 
+import com.example.bookblog.exception.ValidationException;
+import com.example.bookblog.service.LogExportService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import java.io.IOException;
-import java.nio.file.*;
-import java.util.*;
-import java.util.concurrent.*;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
 
@@ -18,85 +23,100 @@ import org.springframework.web.bind.annotation.*;
 @Tag(name = "Log Controller", description = "Асинхронное создание и получение лог-файлов")
 public class Log {
 
-    private static final String LOG_FILE_PATH = "logs/application.log";
-    private static final String TEMP_DIR = System.getProperty("java.io.tmpdir");
-    private static final Map<String, String> taskStatusMap = new ConcurrentHashMap<>();
-    private static final Map<String, String> taskFileMap = new ConcurrentHashMap<>();
-    private static final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final LogExportService logExportService;
 
-    @Operation(summary = "Создать лог-файл", description = "Асинхронное создание лог-файла")
+    public Log(LogExportService logExportService) {
+        this.logExportService = logExportService;
+    }
+
+    @Operation(summary = "Создать лог-файл", description = "Асинхронное создание лог-файла; "
+            + "с параметрами from и to в файл попадают только строки за интервал [from, to)")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "202", description = "Задача на создание принята"),
+            @ApiResponse(responseCode = "429", description = "Очередь или хранилище выгрузок "
+                    + "заполнены"),
     })
     @PostMapping("/create")
-    public ResponseEntity<Map<String, String>> createLogFile() {
-        String taskId = UUID.randomUUID().toString();
-        taskStatusMap.put(taskId, "PENDING");
-
-        executor.submit(() -> {
-            try {
-                Thread.sleep(10000); // задержка 10 сек
-                taskStatusMap.put(taskId, "PROCESSING");
-
-                Path sourcePath = Paths.get(LOG_FILE_PATH);
-                if (!Files.exists(sourcePath)) {
-                    taskStatusMap.put(taskId, "ERROR: Source log file not found");
-                    return;
-                }
-
-                String tempFileName = "log_" + taskId + ".log";
-                Path tempFilePath = Paths.get(TEMP_DIR, tempFileName);
-                Files.copy(sourcePath, tempFilePath);
-
-                taskFileMap.put(taskId, tempFilePath.toString());
-                taskStatusMap.put(taskId, "COMPLETED");
-            } catch (Exception e) {
-                taskStatusMap.put(taskId, "ERROR: " + e.getMessage());
-            }
-        });
+    public ResponseEntity<Map<String, String>> createLogFile(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            LocalDateTime to) {
+        if ((from == null) != (to == null) || (from != null && !from.isBefore(to))) {
+            throw new ValidationException("'from' and 'to' must be given together, from before to");
+        }
+        LogExportService.ExportJob job;
+        try {
+            job = logExportService.submit(from, to);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(Map.of("error", "Слишком много выгрузок, повторите позже"));
+        }
 
         return ResponseEntity.accepted().body(Map.of(
-                "task_id", taskId,
-                "status", "PENDING"
+                "task_id", job.getId(),
+                "status", status(job)
         ));
     }
 
-    @Operation(summary = "Проверить статус", description = "Проверить статус создания лог-файла")
+    @Operation(summary = "Проверить статус", description = "Проверить статус и прогресс "
+            + "создания лог-файла")
     @GetMapping("/status/{taskId}")
     public ResponseEntity<Map<String, String>> getTaskStatus(@PathVariable String taskId) {
-        String status = taskStatusMap.get(taskId);
-        if (status == null) {
+        Optional<LogExportService.ExportJob> job = logExportService.find(taskId);
+        if (job.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(Map.of("task_id", taskId, "status", status(job.get()),
+                "progress", String.valueOf(job.get().getProgress())));
+    }
+
+    @Operation(summary = "Отменить создание", description = "Отменить задачу в очереди или "
+            + "в работе; её файл удаляется")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Задача отменена"),
+            @ApiResponse(responseCode = "404", description = "Задача не найдена"),
+            @ApiResponse(responseCode = "409", description = "Задача уже завершена"),
+    })
+    @DeleteMapping("/{taskId}")
+    public ResponseEntity<Map<String, String>> cancelTask(@PathVariable String taskId) {
+        if (logExportService.find(taskId).isEmpty()) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(Map.of("task_id", taskId, "status", status));
+        if (!logExportService.cancel(taskId)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "Задача уже завершена"));
+        }
+        return ResponseEntity.ok(Map.of("task_id", taskId, "status", "CANCELLED"));
     }
 
     @Operation(summary = "Скачать лог-файл", description = "Получить созданный лог-файл")
     @GetMapping("/download/{taskId}")
     public ResponseEntity<?> downloadLogFile(@PathVariable String taskId) throws IOException {
-        String status = taskStatusMap.get(taskId);
-        if (status == null) {
+        Optional<LogExportService.ExportJob> job = logExportService.find(taskId);
+        if (job.isEmpty()) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Задача с указанным ID не найдена"));
         }
 
-        if (!"COMPLETED".equals(status)) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", "Файл ещё не готов к загрузке. Текущий статус: " + status));
+        Optional<Path> path = job.get().getFile();
+        if (path.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", "Файл ещё не готов к загрузке. Текущий статус: " + status(job.get())));
         }
 
-        String filePath = taskFileMap.get(taskId);
-        if (filePath == null) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Файл не найден"));
-        }
-
-        Path path = Paths.get(filePath);
-        Resource resource = new UrlResource(path.toUri());
-        if (!resource.exists() || !resource.isReadable()) {
+        // Checked here, so a file removed after its TTL is a 404 rather than a broken download.
+        // As a Resource the file is written by the message converter, which also serves ranges
+        Resource file = new FileSystemResource(path.get());
+        if (!file.isReadable()) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Файл не существует или недоступен"));
         }
-
         return ResponseEntity.ok()
                 .contentType(MediaType.TEXT_PLAIN)
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + resource.getFilename() + "\"")
-                .body(resource);
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getFilename() + "\"")
+                .body(file);
+    }
+
+    private static String status(LogExportService.ExportJob job) {
+        return job.getStatus() == LogExportService.Status.FAILED
+                ? "ERROR: " + job.getError() : job.getStatus().name();
     }
 }
@@ -1,31 +1,26 @@
 package com.example.bookblog.controller;
 
+import com.example.bookblog.exception.ValidationException;
+import com.example.bookblog.service.LogSearchService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileReader;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
-import java.util.ArrayList;
-import java.util.List;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/logs")
@@ -33,77 +28,62 @@ import org.springframework.web.bind.annotation.RestController;
         "Позволяет получать логи на введенную дату")
 public class LogController {
 
-    private static final String LOG_FILE_PATH = "logs/application.log";
+    private static final int RESPONSE_BUFFER_SIZE = 64 * 1024;
+
+    private final LogSearchService logSearchService;
+
+    public LogController(LogSearchService logSearchService) {
+        this.logSearchService = logSearchService;
+    }
 
     @Operation(summary = "Получение информации о логах",
             description = "Возвращает информацию о логах по дате")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Логи найдены"),
+        @ApiResponse(responseCode = "404", description = "Логи за дату не найдены"),
     })
     @GetMapping("/{date}")
-    public ResponseEntity<Resource> getLogsByDate(@PathVariable String date) throws IOException {
-        File logFile = new File(LOG_FILE_PATH);
-        if (!logFile.exists()) {
-            return ResponseEntity.notFound().build();
-        }
-
-        List<String> logs = readLogsFromFile(logFile);
-
-        List<String> filteredLogs = filterLogsByDate(logs, date);
-
-        if (filteredLogs.isEmpty()) {
-            return ResponseEntity.notFound().build();
-        }
-
-        File tempLogFile = createTempLogFile(filteredLogs, date);
-
-        return createFileResponse(tempLogFile);
+    public ResponseEntity<StreamingResponseBody> getLogsByDate(@PathVariable String date)
+            throws IOException {
+        return stream(logSearchService.findByPrefix(date), sanitizeFilename(date));
     }
 
-    private List<String> readLogsFromFile(File logFile) throws IOException {
-        List<String> logs = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(logFile))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                logs.add(line);
-            }
-        }
-        return logs;
-    }
-
-    private List<String> filterLogsByDate(List<String> logs, String date) {
-        List<String> filteredLogs = new ArrayList<>();
-        for (String log : logs) {
-            if (log.matches("^" + date + ".*")
-                    && !log.contains("INFO - Вход в метод контроллера")) {
-                filteredLogs.add(log);
-            }
+    @Operation(summary = "Получение логов за период",
+            description = "Возвращает строки логов с временем в интервале [from, to)")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Логи найдены"),
+        @ApiResponse(responseCode = "400", description = "Некорректный интервал"),
+        @ApiResponse(responseCode = "404", description = "Логи за период не найдены"),
+    })
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> getLogsByTime(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to)
+            throws IOException {
+        if (!from.isBefore(to)) {
+            throw new ValidationException("'from' must be before 'to'");
         }
-        return filteredLogs;
+        return stream(logSearchService.findByTime(from, to),
+                sanitizeFilename(from + "_" + to));
     }
 
-    private File createTempLogFile(List<String> logs, String date) throws IOException {
-        String safeDate = sanitizeFilename(date);
-
-        Path tempDir = Paths.get(System.getProperty("java.io.tmpdir")).toAbsolutePath().normalize();
-
-        if (!Files.isDirectory(tempDir) || Files.isSymbolicLink(tempDir)) {
-            throw new IOException("Unsafe temporary directory: " + tempDir);
-        }
-
-        Path tempFile = Files.createTempFile(tempDir, "logs-" + safeDate + "-", ".log");
-
-        try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8,
-                StandardOpenOption.WRITE)) {
-            for (String log : logs) {
-                writer.write(log);
-                writer.newLine();
-            }
+    // Scanning has stopped at the first line, and the response resumes from there
+    private ResponseEntity<StreamingResponseBody> stream(
+            Optional<LogSearchService.Selection> selection, String name) {
+        if (selection.isEmpty()) {
+            return ResponseEntity.notFound().build();
         }
 
-        tempFile.toFile().deleteOnExit();
-
-        return tempFile.toFile();
+        StreamingResponseBody body = outputStream -> {
+            OutputStream out = new BufferedOutputStream(outputStream, RESPONSE_BUFFER_SIZE);
+            logSearchService.write(selection.get(), out);
+            out.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.TEXT_PLAIN)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"logs-"
+                        + name + ".log\"")
+                .body(body);
     }
 
     private String sanitizeFilename(String filename) {
@@ -114,15 +94,4 @@ public class LogController {
         return filename.replaceAll("[^a-zA-Z0-9.-]", "_");
     }
 
-    private ResponseEntity<Resource> createFileResponse(File file) throws MalformedURLException {
-        Path path = Paths.get(file.getAbsolutePath());
-        Resource resource = new UrlResource(path.toUri());
-
-        return ResponseEntity.ok()
-                .contentType(MediaType.TEXT_PLAIN)
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\""
-                        + resource.getFilename() + "\"")
-                .body(resource);
-    }
-
-}
\ No newline at end of file
+}
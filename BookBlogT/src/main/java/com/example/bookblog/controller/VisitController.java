@@ -1,11 +1,29 @@
 package com.example.bookblog.controller;
 
+import com.example.bookblog.dto.TopUrlDto;
+import com.example.bookblog.dto.VisitEventDto;
+import com.example.bookblog.dto.VisitSeriesDto;
 import com.example.bookblog.dto.VisitStatsDto;
+import com.example.bookblog.exception.ValidationException;
 import com.example.bookblog.repository.VisitService;
+import com.example.bookblog.service.UrlCanonicalizer;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -13,16 +31,54 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController
 @RequestMapping("/api/visits")
 public class VisitController {
+    private static final String NDJSON = "application/x-ndjson";
+
     private final VisitService visitService;
+    private final ObjectReader eventReader;
 
     @Autowired
-    public VisitController(VisitService visitService) {
+    public VisitController(VisitService visitService, ObjectMapper objectMapper) {
         this.visitService = visitService;
+        this.eventReader = objectMapper.readerFor(VisitEventDto.class);
     }
 
     @PostMapping("/track")
-    public ResponseEntity<Void> trackVisit(@RequestParam String url) {
-        visitService.recordVisit(url);
+    public ResponseEntity<Void> trackVisit(@RequestParam String url,
+                                           @RequestParam(required = false) String visitorId,
+                                           HttpServletRequest request) {
+        checkUrl(url);
+        // Without an id from the client, visitors are told apart by address
+        visitService.recordVisit(url, visitorId != null ? visitorId : request.getRemoteAddr());
+        return ResponseEntity.ok().build();
+    }
+
+    // A JSON array of urls or of {url, timestamp, visitorId} objects
+    @PostMapping(value = "/track/batch", consumes = "application/json")
+    public ResponseEntity<Void> trackVisits(@RequestBody List<VisitEventDto> visits,
+                                            HttpServletRequest request) {
+        checkUrls(visits);
+        visitService.recordVisits(visits, request.getRemoteAddr());
+        return ResponseEntity.ok().build();
+    }
+
+    // One url string or visit object per line, read as it streams in
+    @PostMapping(value = "/track/batch", consumes = NDJSON)
+    public ResponseEntity<Void> trackVisitsNdjson(InputStream body,
+                                                  HttpServletRequest request) throws IOException {
+        List<VisitEventDto> visits = new ArrayList<>();
+        try (MappingIterator<VisitEventDto> lines = eventReader.readValues(body)) {
+            while (lines.hasNextValue()) {
+                if (visits.size() == VisitService.MAX_BATCH_SIZE) {
+                    throw new ValidationException("Batch must not exceed "
+                            + VisitService.MAX_BATCH_SIZE + " visits");
+                }
+                visits.add(lines.nextValue());
+            }
+        } catch (JsonProcessingException e) {
+            throw new ValidationException("Malformed visit: " + e.getOriginalMessage());
+        }
+        checkUrls(visits);
+        visitService.recordVisits(visits, request.getRemoteAddr());
         return ResponseEntity.ok().build();
     }
 
@@ -30,4 +86,36 @@ public class VisitController {
     public ResponseEntity<VisitStatsDto> getVisitStats(@RequestParam String url) {
         return ResponseEntity.ok(visitService.getVisitStats(url));
     }
+
+    @GetMapping("/top")
+    public ResponseEntity<List<TopUrlDto>> getTopUrls(@RequestParam(defaultValue = "10") int k) {
+        return ResponseEntity.ok(visitService.getTopUrls(k));
+    }
+
+    @GetMapping("/series")
+    public ResponseEntity<VisitSeriesDto> getVisitSeries(
+            @RequestParam String url,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "hour") String step) {
+        return ResponseEntity.ok(visitService.getVisitSeries(url, from, to, step));
+    }
+
+    // Urls whose canonical form would not fit the visit_urls column are a 400 up front; the
+    // service checks the rest of the batch
+    private static void checkUrl(String url) {
+        if (url != null && UrlCanonicalizer.canonicalize(url).getBytes(StandardCharsets.UTF_8)
+                .length > VisitService.MAX_URL_BYTES) {
+            throw new ValidationException("URL must not exceed "
+                    + VisitService.MAX_URL_BYTES + " bytes");
+        }
+    }
+
+    private static void checkUrls(List<VisitEventDto> visits) {
+        for (VisitEventDto visit : visits) {
+            if (visit != null) {
+                checkUrl(visit.getUrl());
+            }
+        }
+    }
 }
\ No newline at end of file
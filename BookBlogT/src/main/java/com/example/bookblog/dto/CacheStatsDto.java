@@ -0,0 +1,196 @@
+package com.example.bookblog.dto;
+
+import com.example.bookblog.cache.CacheStats;
+import com.example.bookblog.cache.InMemoryCache;
+import com.example.bookblog.cache.RemovalCause;
+import java.util.Map;
+
+public class CacheStatsDto {
+    private String region;
+    private int size;
+    private int maxSize;
+    private long weight;
+    private long maxWeight;
+    private long hits;
+    private long misses;
+    private long negativeHits;
+    private long offHeapHits;
+    private int offHeapSize;
+    private long offHeapUsedBytes;
+    private long offHeapCapacityBytes;
+    private double hitRate;
+    private long loadCount;
+    private long loadFailures;
+    private double averageLoadMillis;
+    private Map<String, Long> loadTimeHistogram;
+    private Map<RemovalCause, Long> evictions;
+
+    public static CacheStatsDto toModel(String region, InMemoryCache<?, ?> cache) {
+        CacheStats stats = cache.stats();
+        CacheStatsDto model = new CacheStatsDto();
+        model.setRegion(region);
+        model.setSize(cache.size());
+        model.setMaxSize(cache.getMaxSize());
+        model.setWeight(cache.weight());
+        model.setMaxWeight(cache.getMaxWeight());
+        model.setHits(stats.getHits());
+        model.setMisses(stats.getMisses());
+        model.setNegativeHits(stats.getNegativeHits());
+        model.setOffHeapHits(stats.getOffHeapHits());
+        model.setOffHeapSize(cache.offHeapSize());
+        model.setOffHeapUsedBytes(cache.offHeapUsedBytes());
+        model.setOffHeapCapacityBytes(cache.offHeapCapacityBytes());
+        model.setHitRate(stats.getHitRate());
+        model.setLoadCount(stats.getLoadCount());
+        model.setLoadFailures(stats.getLoadFailures());
+        model.setAverageLoadMillis(stats.getLoadCount() == 0 ? 0.0
+                : stats.getTotalLoadTimeNanos() / 1_000_000.0 / stats.getLoadCount());
+        model.setLoadTimeHistogram(stats.getLoadTimeHistogram());
+        model.setEvictions(stats.getEvictions());
+        return model;
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    public void setRegion(String region) {
+        this.region = region;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public long getWeight() {
+        return weight;
+    }
+
+    public void setWeight(long weight) {
+        this.weight = weight;
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public void setMaxWeight(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public void setHits(long hits) {
+        this.hits = hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public void setMisses(long misses) {
+        this.misses = misses;
+    }
+
+    public long getNegativeHits() {
+        return negativeHits;
+    }
+
+    public void setNegativeHits(long negativeHits) {
+        this.negativeHits = negativeHits;
+    }
+
+    public long getOffHeapHits() {
+        return offHeapHits;
+    }
+
+    public void setOffHeapHits(long offHeapHits) {
+        this.offHeapHits = offHeapHits;
+    }
+
+    public int getOffHeapSize() {
+        return offHeapSize;
+    }
+
+    public void setOffHeapSize(int offHeapSize) {
+        this.offHeapSize = offHeapSize;
+    }
+
+    public long getOffHeapUsedBytes() {
+        return offHeapUsedBytes;
+    }
+
+    public void setOffHeapUsedBytes(long offHeapUsedBytes) {
+        this.offHeapUsedBytes = offHeapUsedBytes;
+    }
+
+    public long getOffHeapCapacityBytes() {
+        return offHeapCapacityBytes;
+    }
+
+    public void setOffHeapCapacityBytes(long offHeapCapacityBytes) {
+        this.offHeapCapacityBytes = offHeapCapacityBytes;
+    }
+
+    public double getHitRate() {
+        return hitRate;
+    }
+
+    public void setHitRate(double hitRate) {
+        this.hitRate = hitRate;
+    }
+
+    public long getLoadCount() {
+        return loadCount;
+    }
+
+    public void setLoadCount(long loadCount) {
+        this.loadCount = loadCount;
+    }
+
+    public long getLoadFailures() {
+        return loadFailures;
+    }
+
+    public void setLoadFailures(long loadFailures) {
+        this.loadFailures = loadFailures;
+    }
+
+    public double getAverageLoadMillis() {
+        return averageLoadMillis;
+    }
+
+    public void setAverageLoadMillis(double averageLoadMillis) {
+        this.averageLoadMillis = averageLoadMillis;
+    }
+
+    public Map<String, Long> getLoadTimeHistogram() {
+        return loadTimeHistogram;
+    }
+
+    public void setLoadTimeHistogram(Map<String, Long> loadTimeHistogram) {
+        this.loadTimeHistogram = loadTimeHistogram;
+    }
+
+    public Map<RemovalCause, Long> getEvictions() {
+        return evictions;
+    }
+
+    public void setEvictions(Map<RemovalCause, Long> evictions) {
+        this.evictions = evictions;
+    }
+}
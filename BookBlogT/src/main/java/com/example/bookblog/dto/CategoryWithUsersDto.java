@@ -1,9 +1,12 @@
 package com.example.bookblog.dto;
 
 import com.example.bookblog.entity.Category;
+import java.io.Serializable;
 import java.util.List;
 
-public class CategoryWithUsersDto {
+public class CategoryWithUsersDto implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private Long id;
     private String name;
 
@@ -0,0 +1,26 @@
+package com.example.bookblog.dto;
+
+public class TopUrlDto {
+    private String url;
+    private long count;
+    // The count may exceed the true number of visits by at most this much
+    private long error;
+
+    public TopUrlDto(String url, long count, long error) {
+        this.url = url;
+        this.count = count;
+        this.error = error;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getError() {
+        return error;
+    }
+}
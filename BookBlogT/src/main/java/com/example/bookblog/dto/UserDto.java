@@ -1,8 +1,11 @@
 package com.example.bookblog.dto;
 
 import com.example.bookblog.entity.User;
+import java.io.Serializable;
+
+public class UserDto implements Serializable {
+    private static final long serialVersionUID = 1L;
 
-public class UserDto {
     private Long id;
     private String username;
 
@@ -0,0 +1,49 @@
+package com.example.bookblog.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import java.time.LocalDateTime;
+
+public class VisitEventDto {
+    private String url;
+    // Client time of the view; missing or future times are replaced by the server time
+    private LocalDateTime timestamp;
+    private String visitorId;
+
+    public VisitEventDto() {}
+
+    public VisitEventDto(String url, LocalDateTime timestamp, String visitorId) {
+        this.url = url;
+        this.timestamp = timestamp;
+        this.visitorId = visitorId;
+    }
+
+    // Lets a batch list plain url strings instead of objects
+    @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+    public static VisitEventDto of(String url) {
+        return new VisitEventDto(url, null, null);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(LocalDateTime timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public String getVisitorId() {
+        return visitorId;
+    }
+
+    public void setVisitorId(String visitorId) {
+        this.visitorId = visitorId;
+    }
+}
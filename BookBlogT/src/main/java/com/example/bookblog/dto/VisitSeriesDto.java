@@ -0,0 +1,46 @@
+package com.example.bookblog.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class VisitSeriesDto {
+    private String url;
+    private String step;
+    private List<Point> points;
+
+    public VisitSeriesDto(String url, String step, List<Point> points) {
+        this.url = url;
+        this.step = step;
+        this.points = points;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getStep() {
+        return step;
+    }
+
+    public List<Point> getPoints() {
+        return points;
+    }
+
+    public static class Point {
+        private LocalDateTime start;
+        private long count;
+
+        public Point(LocalDateTime start, long count) {
+            this.start = start;
+            this.count = count;
+        }
+
+        public LocalDateTime getStart() {
+            return start;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    }
+}
@@ -6,11 +6,21 @@ public class VisitStatsDto {
     private String url;
     private Integer count;
     private LocalDateTime lastUpdated;
+    private long uniqueVisitors;
+    // About 95% of estimates are within this many visitors of the true count
+    private long uniqueVisitorsError;
 
     public VisitStatsDto(String url, Integer count, LocalDateTime lastUpdated) {
+        this(url, count, lastUpdated, 0, 0);
+    }
+
+    public VisitStatsDto(String url, Integer count, LocalDateTime lastUpdated,
+                         long uniqueVisitors, long uniqueVisitorsError) {
         this.url = url;
         this.count = count;
         this.lastUpdated = lastUpdated;
+        this.uniqueVisitors = uniqueVisitors;
+        this.uniqueVisitorsError = uniqueVisitorsError;
     }
 
     public String getUrl() {
@@ -24,4 +34,12 @@ public class VisitStatsDto {
     public LocalDateTime getLastUpdated() {
         return lastUpdated;
     }
+
+    public long getUniqueVisitors() {
+        return uniqueVisitors;
+    }
+
+    public long getUniqueVisitorsError() {
+        return uniqueVisitorsError;
+    }
 }
\ No newline at end of file
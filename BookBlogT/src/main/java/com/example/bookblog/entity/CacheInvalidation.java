@@ -0,0 +1,78 @@
+package com.example.bookblog.entity;
+
+import com.example.bookblog.cache.CachedEntityType;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "cache_invalidations",
+        indexes = @Index(name = "idx_cache_invalidations_created_at", columnList = "created_at"))
+public class CacheInvalidation {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "entity_type", nullable = false, length = 32)
+    private CachedEntityType entityType;
+
+    // Null invalidates every entry of the entity type
+    @Column(name = "entity_id")
+    private Long entityId;
+
+    @Column(length = 128)
+    private String tag;
+
+    @Column(nullable = false, length = 36)
+    private String origin;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public CacheInvalidation() {}
+
+    public CacheInvalidation(CachedEntityType entityType, Long entityId, String origin) {
+        this(entityType, entityId, null, origin);
+    }
+
+    public CacheInvalidation(CachedEntityType entityType, Long entityId, String tag,
+                             String origin) {
+        this.entityType = entityType;
+        this.entityId = entityId;
+        this.tag = tag;
+        this.origin = origin;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public CachedEntityType getEntityType() {
+        return entityType;
+    }
+
+    public Long getEntityId() {
+        return entityId;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -7,12 +7,12 @@ import jakarta.persistence.Table;
 import java.time.LocalDateTime;
 import org.springframework.data.annotation.LastModifiedDate;
 
+// Keyed by the 64-bit id of the canonical url in visit_urls, so the clustered key stays 8 bytes
 @Entity
-@Table(name = "visits")
+@Table(name = "visit_counts")
 public class Visit {
     @Id
-    @Column(name = "url", length = 768)
-    private String url;
+    private Long id;
 
     @Column(nullable = false)
     private Integer count = 0;
@@ -21,18 +21,22 @@ public class Visit {
     @Column(name = "last_updated")
     private LocalDateTime lastUpdated;
 
+    // HyperLogLog sketch of the visitor ids seen for the url, in its sparse or dense form
+    @Column(name = "visitor_sketch", length = 4096)
+    private byte[] visitorSketch;
+
     public Visit() {}
 
-    public Visit(String url) {
-        this.url = url;
+    public Visit(Long id) {
+        this.id = id;
     }
 
-    public String getUrl() {
-        return url;
+    public Long getId() {
+        return id;
     }
 
-    public void setUrl(String url) {
-        this.url = url;
+    public void setId(Long id) {
+        this.id = id;
     }
 
     public Integer getCount() {
@@ -50,4 +54,12 @@ public class Visit {
     public void setLastUpdated(LocalDateTime lastUpdated) {
         this.lastUpdated = lastUpdated;
     }
-}
\ No newline at end of file
+
+    public byte[] getVisitorSketch() {
+        return visitorSketch;
+    }
+
+    public void setVisitorSketch(byte[] visitorSketch) {
+        this.visitorSketch = visitorSketch;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.bookblog.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+// Visits of one url within one hour or day, keyed by the id visit_urls holds for the url
+@Entity
+@Table(name = "visit_buckets")
+@IdClass(VisitBucket.Key.class)
+public class VisitBucket {
+    @Id
+    @Column(name = "url_id")
+    private long urlId;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(length = 8)
+    private VisitResolution resolution;
+
+    @Id
+    @Column(name = "bucket_start")
+    private LocalDateTime bucketStart;
+
+    @Column(nullable = false)
+    private long count;
+
+    public VisitBucket() {}
+
+    public VisitBucket(long urlId, VisitResolution resolution, LocalDateTime bucketStart,
+                       long count) {
+        this.urlId = urlId;
+        this.resolution = resolution;
+        this.bucketStart = bucketStart;
+        this.count = count;
+    }
+
+    public long getUrlId() {
+        return urlId;
+    }
+
+    public VisitResolution getResolution() {
+        return resolution;
+    }
+
+    public LocalDateTime getBucketStart() {
+        return bucketStart;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public static class Key implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private long urlId;
+        private VisitResolution resolution;
+        private LocalDateTime bucketStart;
+
+        public Key() {}
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key other)) {
+                return false;
+            }
+            return urlId == other.urlId && resolution == other.resolution
+                    && Objects.equals(bucketStart, other.bucketStart);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(urlId, resolution, bucketStart);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.bookblog.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+// Progress of a one-off data import: the last key it has committed, and whether it is done
+@Entity
+@Table(name = "visit_import_cursors")
+public class VisitImportCursor {
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    @Column(name = "last_url", length = 768)
+    private String lastUrl;
+
+    @Column(nullable = false)
+    private boolean completed;
+
+    public VisitImportCursor() {}
+
+    public String getName() {
+        return name;
+    }
+
+    public String getLastUrl() {
+        return lastUrl;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.bookblog.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+// Newest visit log segment of a node whose visits are already in the visits table
+@Entity
+@Table(name = "visit_log_checkpoints")
+public class VisitLogCheckpoint {
+    @Id
+    @Column(name = "log_id", length = 36)
+    private String logId;
+
+    @Column(nullable = false)
+    private long segment;
+
+    public VisitLogCheckpoint() {}
+
+    public VisitLogCheckpoint(String logId, long segment) {
+        this.logId = logId;
+        this.segment = segment;
+    }
+
+    public String getLogId() {
+        return logId;
+    }
+
+    public long getSegment() {
+        return segment;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.bookblog.entity;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+// Width of a visit history bucket. Buckets are aligned on local time; MINUTE buckets are only
+// kept in memory, the coarser ones are also rolled up into visit_buckets
+public enum VisitResolution {
+    MINUTE(60, 120, false),
+    HOUR(60 * 60, 7 * 24, true),
+    DAY(24 * 60 * 60, 31, true);
+
+    private final long seconds;
+    private final int slots;
+    private final boolean persisted;
+
+    VisitResolution(long seconds, int slots, boolean persisted) {
+        this.seconds = seconds;
+        this.slots = slots;
+        this.persisted = persisted;
+    }
+
+    // Number of most recent buckets held in memory per url
+    public int getSlots() {
+        return slots;
+    }
+
+    public boolean isPersisted() {
+        return persisted;
+    }
+
+    public long bucketOf(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), seconds);
+    }
+
+    public LocalDateTime startOf(long bucket) {
+        return LocalDateTime.ofEpochSecond(bucket * seconds, 0, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.bookblog.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+// Canonical url behind a visit id. Only id lookups of new urls touch the url index
+@Entity
+@Table(name = "visit_urls", uniqueConstraints = @UniqueConstraint(
+        name = "uk_visit_urls_url", columnNames = "url"))
+public class VisitUrl {
+    @Id
+    private Long id;
+
+    @Column(nullable = false, length = 768)
+    private String url;
+
+    public VisitUrl() {}
+
+    public VisitUrl(Long id, String url) {
+        this.id = id;
+        this.url = url;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+}
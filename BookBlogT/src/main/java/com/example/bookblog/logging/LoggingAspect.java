@@ -55,33 +55,20 @@ public class LoggingAspect {
                 joinPoint.getSignature().toShortString(), joinPoint.getArgs());
     }
 
-    @Before("execution(* com.example.bookblog.cache.*.*(..))")
-    public void logCacheOperations(JoinPoint joinPoint) {
-        logger.info("Операция с кэшем: {} с аргументами: {}",
-                joinPoint.getSignature().toShortString(), joinPoint.getArgs());
-    }
-
     @AfterReturning(pointcut = "execution(* com.example.bookblog.cache.InMemoryCache.put(..))")
     public void logCachePut(JoinPoint joinPoint) {
-        logger.info("Добавление в кэш: {} с аргументами: {}",
+        logger.debug("Добавление в кэш: {} с аргументами: {}",
                 joinPoint.getSignature().toShortString(), joinPoint.getArgs());
     }
 
     @AfterReturning(pointcut = "execution(* com.example.bookblog.cache.InMemoryCache.remove(..))")
     public void logCacheRemove(JoinPoint joinPoint) {
-        logger.info("Удаление из кэша: {} с аргументами: {}",
+        logger.debug("Удаление из кэша: {} с аргументами: {}",
                 joinPoint.getSignature().toShortString(), joinPoint.getArgs());
     }
 
-    @AfterReturning(pointcut = "execution(* com.example.bookblog.cache.InMemoryCache.get(..))",
-            returning = "result")
-    public void logCacheGet(JoinPoint joinPoint, Object result) {
-        logger.info("Чтение из кэша: {} с аргументами: {}, результат: {}",
-                joinPoint.getSignature().toShortString(), joinPoint.getArgs(), result);
-    }
-
     @AfterReturning(pointcut = "execution(* com.example.bookblog.cache.InMemoryCache.clear(..))")
     public void logCacheClear(JoinPoint joinPoint) {
-        logger.info("Очистка кэша: {}", joinPoint.getSignature().toShortString());
+        logger.debug("Очистка кэша: {}", joinPoint.getSignature().toShortString());
     }
 }
\ No newline at end of file
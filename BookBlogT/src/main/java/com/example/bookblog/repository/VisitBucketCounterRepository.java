@@ -0,0 +1,12 @@
+package com.example.bookblog.repository;
+
+import com.example.bookblog.entity.VisitBucket;
+import java.util.Collection;
+import org.springframework.transaction.annotation.Transactional;
+
+// Custom fragment of VisitBucketRepository for visit history rollups
+public interface VisitBucketCounterRepository {
+    // Adds each bucket's count to the stored one, creating missing rows, in one JDBC batch
+    @Transactional
+    void addCounts(Collection<VisitBucket> buckets);
+}
@@ -0,0 +1,29 @@
+package com.example.bookblog.repository;
+
+import com.example.bookblog.entity.VisitBucket;
+import java.sql.Timestamp;
+import java.util.Collection;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+public class VisitBucketCounterRepositoryImpl implements VisitBucketCounterRepository {
+    private static final int BATCH_SIZE = 1000;
+    private static final String UPSERT = "INSERT INTO visit_buckets "
+            + "(url_id, resolution, bucket_start, count) VALUES (?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE count = count + VALUES(count)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public VisitBucketCounterRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void addCounts(Collection<VisitBucket> buckets) {
+        jdbcTemplate.batchUpdate(UPSERT, buckets, BATCH_SIZE, (statement, bucket) -> {
+            statement.setLong(1, bucket.getUrlId());
+            statement.setString(2, bucket.getResolution().name());
+            statement.setTimestamp(3, Timestamp.valueOf(bucket.getBucketStart()));
+            statement.setLong(4, bucket.getCount());
+        });
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.bookblog.repository;
+
+import com.example.bookblog.entity.VisitBucket;
+import com.example.bookblog.entity.VisitResolution;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface VisitBucketRepository
+        extends JpaRepository<VisitBucket, VisitBucket.Key>, VisitBucketCounterRepository {
+    @Query("SELECT b FROM VisitBucket b WHERE b.urlId = :urlId "
+            + "AND b.resolution = :resolution AND b.bucketStart >= :from AND b.bucketStart < :to "
+            + "ORDER BY b.bucketStart")
+    List<VisitBucket> findRange(@Param("urlId") long urlId,
+                                @Param("resolution") VisitResolution resolution,
+                                @Param("from") LocalDateTime from,
+                                @Param("to") LocalDateTime to);
+}
@@ -0,0 +1,20 @@
+package com.example.bookblog.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+import org.springframework.transaction.annotation.Transactional;
+
+// Custom fragment of VisitRepository for write-behind counter flushes
+public interface VisitCounterRepository {
+    // Adds each delta to the count of its url id, creating missing rows, in one JDBC batch
+    @Transactional
+    void addVisits(Map<Long, Long> deltas, LocalDateTime now);
+
+    // Reads the visitor sketches of existing ids and locks their rows until the transaction ends
+    @Transactional
+    Map<Long, byte[]> lockVisitorSketches(Collection<Long> ids);
+
+    @Transactional
+    void saveVisitorSketches(Map<Long, byte[]> sketches);
+}
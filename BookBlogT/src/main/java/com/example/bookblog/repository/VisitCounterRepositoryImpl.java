@@ -0,0 +1,63 @@
+package com.example.bookblog.repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+public class VisitCounterRepositoryImpl implements VisitCounterRepository {
+    private static final int BATCH_SIZE = 1000;
+    private static final String UPSERT = "INSERT INTO visit_counts (id, count, last_updated) "
+            + "VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE count = count + VALUES(count), "
+            + "last_updated = VALUES(last_updated)";
+    private static final String SAVE_SKETCH = "UPDATE visit_counts SET visitor_sketch = ? "
+            + "WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public VisitCounterRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void addVisits(Map<Long, Long> deltas, LocalDateTime now) {
+        List<Map.Entry<Long, Long>> rows = new ArrayList<>(deltas.entrySet());
+        Timestamp visitedAt = Timestamp.valueOf(now);
+        // With rewriteBatchedStatements the MySQL driver sends each batch as one statement
+        jdbcTemplate.batchUpdate(UPSERT, rows, BATCH_SIZE, (statement, row) -> {
+            statement.setLong(1, row.getKey());
+            statement.setLong(2, row.getValue());
+            statement.setTimestamp(3, visitedAt);
+        });
+    }
+
+    @Override
+    public Map<Long, byte[]> lockVisitorSketches(Collection<Long> ids) {
+        List<Long> remaining = new ArrayList<>(ids);
+        Map<Long, byte[]> sketches = new HashMap<>();
+        for (int from = 0; from < remaining.size(); from += BATCH_SIZE) {
+            List<Long> batch = remaining.subList(from,
+                    Math.min(from + BATCH_SIZE, remaining.size()));
+            String sql = "SELECT id, visitor_sketch FROM visit_counts WHERE id IN ("
+                    + String.join(", ", Collections.nCopies(batch.size(), "?")) + ") FOR UPDATE";
+            jdbcTemplate.query(sql, resultSet -> {
+                sketches.put(resultSet.getLong(1), resultSet.getBytes(2));
+            }, batch.toArray());
+        }
+        return sketches;
+    }
+
+    @Override
+    public void saveVisitorSketches(Map<Long, byte[]> sketches) {
+        List<Map.Entry<Long, byte[]>> rows = new ArrayList<>(sketches.entrySet());
+        jdbcTemplate.batchUpdate(SAVE_SKETCH, rows, BATCH_SIZE, (statement, row) -> {
+            statement.setBytes(1, row.getValue());
+            statement.setLong(2, row.getKey());
+        });
+    }
+}
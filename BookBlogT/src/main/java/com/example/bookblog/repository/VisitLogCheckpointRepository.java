@@ -0,0 +1,9 @@
+package com.example.bookblog.repository;
+
+import com.example.bookblog.entity.VisitLogCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface VisitLogCheckpointRepository extends JpaRepository<VisitLogCheckpoint, String> {
+}
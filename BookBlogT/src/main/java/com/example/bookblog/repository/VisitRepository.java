@@ -1,19 +1,19 @@
 package com.example.bookblog.repository;
 
 import com.example.bookblog.entity.Visit;
-import java.time.LocalDateTime;
-import java.util.Optional;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.query.Param;
 
-public interface VisitRepository extends JpaRepository<Visit, String> {
-    @Modifying
-    @Query("UPDATE Visit v SET v.count = v.count + 1, v.lastUpdated = :now WHERE v.url = :url")
-    void incrementCount(@Param("url") String url, @Param("now") LocalDateTime now);
+public interface VisitRepository extends JpaRepository<Visit, Long>, VisitCounterRepository {
+    @Query("SELECT u.url AS url, v.count AS count FROM Visit v JOIN VisitUrl u ON u.id = v.id "
+            + "ORDER BY v.count DESC")
+    List<UrlCount> findTopCounts(Pageable pageable);
 
-    Optional<Visit> findByUrl(String url);
+    interface UrlCount {
+        String getUrl();
 
-    boolean existsByUrl(String url);
-}
\ No newline at end of file
+        Integer getCount();
+    }
+}
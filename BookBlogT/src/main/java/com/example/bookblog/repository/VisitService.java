@@ -1,9 +1,30 @@
 package com.example.bookblog.repository;
 
+import com.example.bookblog.dto.TopUrlDto;
+import com.example.bookblog.dto.VisitEventDto;
+import com.example.bookblog.dto.VisitSeriesDto;
 import com.example.bookblog.dto.VisitStatsDto;
+import java.time.LocalDateTime;
+import java.util.List;
 
 public interface VisitService {
-    void recordVisit(String url);
+    int MAX_BATCH_SIZE = 1000;
+    // Longest canonical url, in UTF-8 bytes, that fits the visit_urls column
+    int MAX_URL_BYTES = 768;
+
+    default void recordVisit(String url) {
+        recordVisit(url, null);
+    }
+
+    // A null visitor id counts the visit without adding to the unique visitors
+    void recordVisit(String url, String visitorId);
+
+    // Visits without their own visitor id count under the default one, if any
+    void recordVisits(List<VisitEventDto> visits, String defaultVisitorId);
 
     VisitStatsDto getVisitStats(String url);
+
+    List<TopUrlDto> getTopUrls(int k);
+
+    VisitSeriesDto getVisitSeries(String url, LocalDateTime from, LocalDateTime to, String step);
 }
\ No newline at end of file
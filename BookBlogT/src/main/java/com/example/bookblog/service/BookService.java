@@ -1,5 +1,6 @@
 package com.example.bookblog.service;
 
+import com.example.bookblog.cache.CachedEntityType;
 import com.example.bookblog.cache.InMemoryCache;
 import com.example.bookblog.entity.Book;
 import com.example.bookblog.entity.Category;
@@ -12,6 +13,7 @@ import java.util.Optional;
 
 import com.example.bookblog.repository.CategoryRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -21,15 +23,23 @@ public class BookService {
     private BookRepository bookRepository;
 
     @Autowired
+    @Qualifier("bookCache")
     private InMemoryCache<Long, Book> bookCache;
 
+    @Autowired
+    private CacheInvalidationService cacheInvalidationService;
+
     public List<Book> getAllBooks() {
         return bookRepository.findAll();
     }
 
     public Optional<Book> getBookById(Long id) throws BookNotFoundException {
+        if (bookCache.isKnownAbsent(id)) {
+            throw new BookNotFoundException("Book with this ID not found!");
+        }
         Optional<Book> book = bookRepository.findById(id);
         if (book.isEmpty()) {
+            bookCache.markAbsent(id);
             throw new BookNotFoundException("Book with this ID not found!");
         }
         return book;
@@ -54,6 +64,7 @@ public class BookService {
         }
 
         bookRepository.save(book);
+        evictNotFound(book.getId());
         return book;
     }
 
@@ -62,7 +73,9 @@ public class BookService {
     }
 
     public List<Book> saveBooksBulk(List<Book> books) {
-        return bookRepository.saveAll(books);
+        List<Book> savedBooks = bookRepository.saveAll(books);
+        savedBooks.forEach(book -> evictNotFound(book.getId()));
+        return savedBooks;
     }
 
     public void updateBook(Long id, Book updatedBook) throws BookNotFoundException {
@@ -77,6 +90,7 @@ public class BookService {
         existingBook.setAuthor(updatedBook.getAuthor());
         bookRepository.save(existingBook);
         bookCache.put(id, existingBook);
+        cacheInvalidationService.publish(CachedEntityType.BOOK, id);
     }
 
     public void deleteBook(Long id) throws BookNotFoundException {
@@ -84,6 +98,13 @@ public class BookService {
                 -> new BookNotFoundException("Book with this ID not found"));
         bookRepository.delete(book);
         bookCache.remove(id);
+        cacheInvalidationService.publish(CachedEntityType.BOOK, id);
+    }
+
+    // A new id may have been probed before it existed, here or on another node
+    private void evictNotFound(Long id) {
+        bookCache.remove(id);
+        cacheInvalidationService.publish(CachedEntityType.BOOK, id);
     }
 
     public List<Book> getBooksByCategoryId(Long categoryId) {
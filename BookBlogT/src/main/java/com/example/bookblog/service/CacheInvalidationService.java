@@ -0,0 +1,158 @@
+package com.example.bookblog.service;
+
+import com.example.bookblog.cache.CacheProperties;
+import com.example.bookblog.cache.CacheRegistry;
+import com.example.bookblog.cache.CachedEntityType;
+import com.example.bookblog.cache.InMemoryCache;
+import com.example.bookblog.config.CacheConfig;
+import com.example.bookblog.entity.CacheInvalidation;
+import com.example.bookblog.repository.CacheInvalidationRepository;
+import jakarta.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+// Broadcasts cache invalidations through the cache_invalidations table. Every node polls the
+// table with an id cursor and evicts what the other nodes changed.
+@Service
+public class CacheInvalidationService {
+    private static final Logger logger = LoggerFactory.getLogger(CacheInvalidationService.class);
+    private static final int MAX_TRACKED_GAPS = 10_000;
+
+    private final CacheInvalidationRepository invalidationRepository;
+    private final CacheRegistry cacheRegistry;
+    private final CacheProperties.Invalidation settings;
+    private final String nodeId = UUID.randomUUID().toString();
+    // Ids skipped by the cursor whose inserts may still commit, with their re-check deadline
+    private final Map<Long, Long> gaps = new LinkedHashMap<>();
+    private long cursor;
+
+    public CacheInvalidationService(CacheInvalidationRepository invalidationRepository,
+                                    CacheRegistry cacheRegistry,
+                                    CacheProperties properties) {
+        this.invalidationRepository = invalidationRepository;
+        this.cacheRegistry = cacheRegistry;
+        this.settings = properties.getInvalidation();
+    }
+
+    @PostConstruct
+    public synchronized void start() {
+        cursor = invalidationRepository.findMaxId();
+        logger.info("Cache invalidation node {} starts after event {}", nodeId, cursor);
+    }
+
+    // Joins the caller's transaction, if any, so the event commits together with the change
+    public void publish(CachedEntityType entityType, Long entityId) {
+        invalidationRepository.save(new CacheInvalidation(entityType, entityId, nodeId));
+    }
+
+    public void publishTag(CachedEntityType entityType, String tag) {
+        invalidationRepository.save(new CacheInvalidation(entityType, null, tag, nodeId));
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Scheduled(fixedDelayString = "${cache.invalidation.poll-interval:1s}")
+    public synchronized void poll() {
+        try {
+            List<CacheInvalidation> events;
+            do {
+                events = invalidationRepository.findByIdGreaterThanOrderByIdAsc(cursor,
+                        PageRequest.of(0, settings.getBatchSize()));
+                long deadline = System.nanoTime() + settings.getGapTimeout().toNanos();
+                for (CacheInvalidation event : events) {
+                    for (long missing = cursor + 1; missing < event.getId()
+                            && gaps.size() < MAX_TRACKED_GAPS; missing++) {
+                        gaps.put(missing, deadline);
+                    }
+                    apply(event);
+                    cursor = event.getId();
+                }
+            } while (events.size() == settings.getBatchSize());
+            recheckGaps();
+        } catch (DataAccessException e) {
+            logger.warn("Polling cache invalidations failed, will retry", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cache.invalidation.retention:1h}",
+            initialDelayString = "${cache.invalidation.retention:1h}")
+    public void purgeExpired() {
+        try {
+            int deleted = invalidationRepository.deleteOlderThan(
+                    LocalDateTime.now().minus(settings.getRetention()));
+            logger.debug("Purged {} old cache invalidation events", deleted);
+        } catch (DataAccessException e) {
+            logger.warn("Purging cache invalidation events failed", e);
+        }
+    }
+
+    // An insert that was still uncommitted when the cursor passed it shows up here later;
+    // ids that never appear were rolled back and are dropped after the gap timeout
+    private void recheckGaps() {
+        if (gaps.isEmpty()) {
+            return;
+        }
+        for (CacheInvalidation event : invalidationRepository.findAllById(gaps.keySet())) {
+            gaps.remove(event.getId());
+            apply(event);
+        }
+        long now = System.nanoTime();
+        Iterator<Long> deadlines = gaps.values().iterator();
+        while (deadlines.hasNext()) {
+            if (deadlines.next() - now <= 0) {
+                deadlines.remove();
+            }
+        }
+    }
+
+    private void apply(CacheInvalidation event) {
+        if (nodeId.equals(event.getOrigin())) {
+            return;
+        }
+        logger.debug("Applying cache invalidation {} {} {} from node {}", event.getEntityType(),
+                event.getEntityId(), event.getTag(), event.getOrigin());
+        Long id = event.getEntityId();
+        switch (event.getEntityType()) {
+            case BOOK -> evict(CacheConfig.BOOKS, id);
+            case CATEGORY -> {
+                evict(CacheConfig.CATEGORIES, id);
+                invalidateTag(CacheConfig.CATEGORY_SEARCH,
+                        id == null ? null : CategoryService.categoryTag(id));
+            }
+            case CATEGORY_SEARCH -> invalidateTag(CacheConfig.CATEGORY_SEARCH, event.getTag());
+            case USER -> evict(CacheConfig.USERS, id);
+            case USER_RESPONSES -> evict(CacheConfig.RESPONSES, id);
+            default -> logger.warn("Unknown cache invalidation type {}", event.getEntityType());
+        }
+    }
+
+    private void invalidateTag(String region, String tag) {
+        InMemoryCache<?, ?> cache = cacheRegistry.region(region);
+        if (tag == null) {
+            cache.clear();
+        } else {
+            cache.invalidateTag(tag);
+        }
+    }
+
+    private void evict(String region, Long key) {
+        InMemoryCache<Object, ?> cache = cacheRegistry.region(region);
+        if (key == null) {
+            cache.clear();
+        } else {
+            cache.remove(key);
+        }
+    }
+}
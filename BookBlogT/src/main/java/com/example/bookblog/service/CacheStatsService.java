@@ -0,0 +1,41 @@
+package com.example.bookblog.service;
+
+import com.example.bookblog.cache.CacheRegistry;
+import com.example.bookblog.cache.InMemoryCache;
+import com.example.bookblog.dto.CacheStatsDto;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.stereotype.Service;
+
+@Service
+public class CacheStatsService {
+    private final CacheRegistry cacheRegistry;
+
+    public CacheStatsService(CacheRegistry cacheRegistry) {
+        this.cacheRegistry = cacheRegistry;
+    }
+
+    public List<CacheStatsDto> getAllStats() {
+        return cacheRegistry.getRegions().entrySet().stream()
+                .map(region -> CacheStatsDto.toModel(region.getKey(), region.getValue()))
+                .toList();
+    }
+
+    public Optional<CacheStatsDto> getStats(String region) {
+        return Optional.ofNullable(cacheRegistry.getRegions().get(region))
+                .map(cache -> CacheStatsDto.toModel(region, cache));
+    }
+
+    public boolean resetStats(String region) {
+        if (region == null) {
+            cacheRegistry.getRegions().values().forEach(cache -> cache.stats().reset());
+            return true;
+        }
+        InMemoryCache<?, ?> cache = cacheRegistry.getRegions().get(region);
+        if (cache == null) {
+            return false;
+        }
+        cache.stats().reset();
+        return true;
+    }
+}
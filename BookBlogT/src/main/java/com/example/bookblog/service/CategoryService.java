@@ -1,26 +1,31 @@
 package com.example.bookblog.service;
 
+import com.example.bookblog.cache.CachedEntityType;
 import com.example.bookblog.cache.InMemoryCache;
 import com.example.bookblog.dto.CategoryWithUsersDto;
 import com.example.bookblog.entity.Category;
 import com.example.bookblog.entity.User;
-import com.example.bookblog.exception.CacheMissException;
 import com.example.bookblog.exception.CategoryAlreadyExistException;
 import com.example.bookblog.exception.CategoryNotFoundException;
 import com.example.bookblog.exception.ValidationException;
 import com.example.bookblog.repository.CategoryRepository;
 import com.example.bookblog.repository.UserRepository;
 import jakarta.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
 public class CategoryService {
@@ -29,17 +34,26 @@ public class CategoryService {
     private final UserRepository userRepository;
     private final InMemoryCache<Long, CategoryWithUsersDto> categoryCache;
     private final InMemoryCache<String, List<CategoryWithUsersDto>> searchCache;
+    private final TransactionTemplate readOnlyTransaction;
+    private final CacheInvalidationService cacheInvalidationService;
 
     @Autowired
     public CategoryService(CategoryRepository categoryRepository,
                            UserRepository userRepository,
-                           InMemoryCache<Long, CategoryWithUsersDto>
-                                       categoryCache, InMemoryCache<String,
-            List<CategoryWithUsersDto>> searchCache) {
+                           @Qualifier("categoryCache")
+                           InMemoryCache<Long, CategoryWithUsersDto> categoryCache,
+                           @Qualifier("categorySearchCache")
+                           InMemoryCache<String, List<CategoryWithUsersDto>> searchCache,
+                           PlatformTransactionManager transactionManager,
+                           CacheInvalidationService cacheInvalidationService) {
         this.categoryRepository = categoryRepository;
         this.userRepository = userRepository;
         this.categoryCache = categoryCache;
         this.searchCache = searchCache;
+        // Cache refreshes run on a background thread, outside the request's persistence context
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.cacheInvalidationService = cacheInvalidationService;
     }
 
     public Category registration(Category category) throws CategoryAlreadyExistException {
@@ -54,24 +68,24 @@ public class CategoryService {
         }
         Category savedCategory = categoryRepository.save(category);
         categoryCache.put(savedCategory.getId(), CategoryWithUsersDto.toModel(savedCategory));
+        // Replaces a "not found" tombstone for this id on the other nodes too
+        cacheInvalidationService.publish(CachedEntityType.CATEGORY, savedCategory.getId());
+        // A new category has no users yet, so only results without a real threshold gain it
+        searchCache.invalidateTag(minUsersTag(0));
+        cacheInvalidationService.publishTag(CachedEntityType.CATEGORY_SEARCH, minUsersTag(0));
         logger.info("Category registered and cached with ID: {}", savedCategory.getId());
         return savedCategory;
     }
 
     public CategoryWithUsersDto getOne(Long id) throws CategoryNotFoundException {
         logger.info("Fetching category with ID: {}", id);
-        return categoryCache.getOrCompute(id, () -> {
+        // A missing id is cached as a tombstone instead of being queried again
+        return categoryCache.findOrCompute(id, () -> readOnlyTransaction.execute(status -> {
             logger.info("Cache miss: fetching category from database");
-            try {
-                return categoryRepository.findWithUsersById(id)
-                        .map(CategoryWithUsersDto::toModel)
-                        .orElseThrow(()
-                                -> new CategoryNotFoundException("Category "
-                                + "with this id does not exist!"));
-            } catch (CategoryNotFoundException e) {
-                throw new CacheMissException("Cache miss occurred while fetching the category", e);
-            }
-        });
+            return categoryRepository.findWithUsersById(id)
+                    .map(CategoryWithUsersDto::toModel);
+        })).orElseThrow(() -> new CategoryNotFoundException("Category "
+                + "with this id does not exist!"));
     }
 
     public List<CategoryWithUsersDto> findCategoriesByMinUsers(int minUsers) {
@@ -79,13 +93,13 @@ public class CategoryService {
         logger.info("Fetching categories with at least {} users, "
                 + "cache key: {}", minUsers, cacheKey);
 
-        return searchCache.getOrCompute(cacheKey, () -> {
+        return searchCache.getOrCompute(cacheKey, () -> readOnlyTransaction.execute(status -> {
             logger.info("Cache miss: fetching categories from database");
             return categoryRepository.findCategoriesByMinUsers(minUsers)
                     .stream()
                     .map(CategoryWithUsersDto::toModel)
                     .toList();
-        });
+        }));
     }
 
     public List<CategoryWithUsersDto> findCategoriesByMinUsersNative(int minUsers) {
@@ -93,13 +107,13 @@ public class CategoryService {
         logger.info("Fetching native categories with at least {} "
                 + "users, cache key: {}", minUsers, cacheKey);
 
-        return searchCache.getOrCompute(cacheKey, () -> {
+        return searchCache.getOrCompute(cacheKey, () -> readOnlyTransaction.execute(status -> {
             logger.info("Cache miss: fetching categories from database");
             return categoryRepository.findCategoriesByMinUsersNative(minUsers)
                     .stream()
                     .map(CategoryWithUsersDto::toModel)
                     .toList();
-        });
+        }));
     }
 
     @Transactional
@@ -120,10 +134,12 @@ public class CategoryService {
 
         categoryRepository.delete(category);
         categoryCache.remove(groupId);
-        searchCache.clear();
+        searchCache.invalidateTag(categoryTag(groupId));
+        cacheInvalidationService.publish(CachedEntityType.CATEGORY, groupId);
         logger.info("Category deleted and removed from cache");
     }
 
+    @Transactional
     public void updateGroup(Long id, Category updatedCategory) throws CategoryNotFoundException {
         logger.info("Updating category with ID: {}", id);
 
@@ -137,11 +153,45 @@ public class CategoryService {
         existingCategory.setName(updatedCategory.getName());
 
         categoryRepository.save(existingCategory);
+        // Built inside the transaction, but only cached once it commits
         categoryCache.put(id, CategoryWithUsersDto.toModel(existingCategory));
-        searchCache.clear();
+        searchCache.invalidateTag(categoryTag(id));
+        cacheInvalidationService.publish(CachedEntityType.CATEGORY, id);
         logger.info("Category updated and cache refreshed");
     }
 
+    // The member count changed: results listing the category are stale, and it may now reach
+    // the threshold of results that did not list it
+    public void membersChanged(Category category) {
+        Long id = category.getId();
+        String threshold = minUsersTag(category.getUsers().size());
+        categoryCache.remove(id);
+        searchCache.invalidateTag(categoryTag(id));
+        searchCache.invalidateTag(threshold);
+        cacheInvalidationService.publish(CachedEntityType.CATEGORY, id);
+        cacheInvalidationService.publishTag(CachedEntityType.CATEGORY_SEARCH, threshold);
+    }
+
+    public static String categoryTag(Long id) {
+        return "category:" + id;
+    }
+
+    public static String minUsersTag(int minUsers) {
+        return "min-users:" + Math.max(0, minUsers);
+    }
+
+    // Tags a search result with the categories it lists and with its minUsers threshold
+    public static Collection<String> searchTags(String cacheKey,
+                                                List<CategoryWithUsersDto> categories) {
+        List<String> tags = new ArrayList<>(categories.size() + 1);
+        tags.add(minUsersTag(Integer.parseInt(
+                cacheKey.substring(cacheKey.lastIndexOf('_') + 1))));
+        for (CategoryWithUsersDto category : categories) {
+            tags.add(categoryTag(category.getId()));
+        }
+        return tags;
+    }
+
     public List<Category> getCategoriesByUserId(Long userId) {
         return categoryRepository.findByUsersId(userId);
     }
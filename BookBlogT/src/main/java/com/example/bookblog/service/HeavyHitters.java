@@ -0,0 +1,138 @@
+package com.example.bookblog.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Space-Saving summary of the most frequent items. Items are split into stripes by hash, so
+// concurrent offers rarely contend, and each stripe monitors a fixed number of items in a min-heap
+// on count. An unmonitored item replaces the least counted one and inherits its count, which is
+// kept as the most the new count can overestimate by.
+public final class HeavyHitters {
+    private final Stripe[] stripes;
+
+    public record Hitter(String item, long count, long error) {}
+
+    public HeavyHitters(int stripes, int capacityPerStripe) {
+        this.stripes = new Stripe[Integer.highestOneBit(Math.max(1, stripes))];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new Stripe(capacityPerStripe);
+        }
+    }
+
+    public void offer(String item) {
+        offer(item, 1);
+    }
+
+    public void offer(String item, long weight) {
+        stripeOf(item).offer(item, weight);
+    }
+
+    // The k highest counts, highest first
+    public List<Hitter> top(int k) {
+        List<Hitter> all = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            stripe.copyTo(all);
+        }
+        all.sort(Comparator.comparingLong(Hitter::count).reversed());
+        return all.size() > k ? List.copyOf(all.subList(0, k)) : all;
+    }
+
+    public int capacity() {
+        return stripes.length * stripes[0].heap.length;
+    }
+
+    private Stripe stripeOf(String item) {
+        int hash = item.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    private static final class Node {
+        String item;
+        long count;
+        long error;
+        int position;
+    }
+
+    private static final class Stripe {
+        final Node[] heap;
+        final Map<String, Node> monitored;
+        int size;
+
+        Stripe(int capacity) {
+            this.heap = new Node[capacity];
+            this.monitored = new HashMap<>(capacity * 2);
+        }
+
+        synchronized void offer(String item, long weight) {
+            Node node = monitored.get(item);
+            if (node != null) {
+                node.count += weight;
+                siftDown(node.position);
+                return;
+            }
+            if (size < heap.length) {
+                node = new Node();
+                node.item = item;
+                node.count = weight;
+                node.position = size;
+                heap[size] = node;
+                monitored.put(item, node);
+                siftUp(size++);
+                return;
+            }
+            Node min = heap[0];
+            monitored.remove(min.item);
+            min.item = item;
+            min.error = min.count;
+            min.count += weight;
+            monitored.put(item, min);
+            siftDown(0);
+        }
+
+        synchronized void copyTo(List<Hitter> target) {
+            for (int i = 0; i < size; i++) {
+                target.add(new Hitter(heap[i].item, heap[i].count, heap[i].error));
+            }
+        }
+
+        private void siftUp(int position) {
+            Node node = heap[position];
+            while (position > 0) {
+                int parent = (position - 1) >>> 1;
+                if (heap[parent].count <= node.count) {
+                    break;
+                }
+                place(heap[parent], position);
+                position = parent;
+            }
+            place(node, position);
+        }
+
+        private void siftDown(int position) {
+            Node node = heap[position];
+            while (true) {
+                int child = 2 * position + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+                    child++;
+                }
+                if (node.count <= heap[child].count) {
+                    break;
+                }
+                place(heap[child], position);
+                position = child;
+            }
+            place(node, position);
+        }
+
+        private void place(Node node, int position) {
+            heap[position] = node;
+            node.position = position;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.bookblog.service;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+
+// HyperLogLog distinct-count sketch with 2^12 one-byte registers. Merging takes the register-wise
+// maximum, so sketches of different flushes, time buckets or nodes combine into the sketch of
+// their union. A sketch starts sparse, as a sorted list of its nonzero registers, and turns into
+// the dense 4 KiB array once that list would be larger; both forms estimate the same.
+// Offers and merges are lock-free: the sparse list is replaced by compare-and-set, and dense
+// registers are raised one compare-and-set at a time.
+//
+// Stored form: the dense array as is, or 3 bytes per nonzero register [register (2), rank (1)].
+public final class HyperLogLog {
+    public static final int PRECISION = 12;
+    public static final int REGISTERS = 1 << PRECISION;
+    // Relative standard error of an estimate
+    public static final double STANDARD_ERROR = 1.04 / Math.sqrt(REGISTERS);
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+    // Sparse entries are register << 8 | rank; past this many they cost a quarter of the array
+    private static final int SPARSE_LIMIT = REGISTERS / 16;
+    private static final int SPARSE_BYTES = 3;
+    private static final int[] EMPTY = new int[0];
+    private static final VarHandle REGISTER = MethodHandles.arrayElementVarHandle(byte[].class);
+
+    // An int[] of sparse entries until densified, a byte[] of registers after
+    private final AtomicReference<Object> registers = new AtomicReference<>(EMPTY);
+
+    // Null stands for an empty sketch, as stored for urls without visitor ids
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        HyperLogLog sketch = new HyperLogLog();
+        if (bytes == null) {
+            return sketch;
+        }
+        if (bytes.length == REGISTERS) {
+            sketch.registers.set(bytes.clone());
+        } else if (bytes.length % SPARSE_BYTES == 0) {
+            for (int i = 0; i < bytes.length; i += SPARSE_BYTES) {
+                int register = (bytes[i] & 0xff) << 8 | bytes[i + 1] & 0xff;
+                int rank = bytes[i + 2];
+                if (register >= REGISTERS || rank < 1) {
+                    throw new IllegalArgumentException("Sketch entry out of range");
+                }
+                sketch.raise(register, rank);
+            }
+        } else {
+            throw new IllegalArgumentException("Sketch must have " + REGISTERS + " registers");
+        }
+        return sketch;
+    }
+
+    // Returns whether the sketch changed; a visitor seen before never changes it
+    public boolean offer(String item) {
+        long hash = hash(item);
+        int register = (int) (hash >>> (Long.SIZE - PRECISION));
+        // Position of the first one bit in the remaining bits; the sentinel caps it
+        int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+        return raise(register, rank);
+    }
+
+    public void merge(HyperLogLog other) {
+        Object theirs = other.registers.get();
+        if (theirs instanceof byte[] dense) {
+            for (int i = 0; i < REGISTERS; i++) {
+                byte rank = (byte) REGISTER.getVolatile(dense, i);
+                if (rank > 0) {
+                    raise(i, rank);
+                }
+            }
+        } else {
+            for (int entry : (int[]) theirs) {
+                raise(entry >>> 8, entry & 0xff);
+            }
+        }
+    }
+
+    public byte[] toBytes() {
+        Object current = registers.get();
+        if (current instanceof byte[] dense) {
+            byte[] bytes = new byte[REGISTERS];
+            for (int i = 0; i < REGISTERS; i++) {
+                bytes[i] = (byte) REGISTER.getVolatile(dense, i);
+            }
+            return bytes;
+        }
+        int[] sparse = (int[]) current;
+        byte[] bytes = new byte[sparse.length * SPARSE_BYTES];
+        for (int i = 0; i < sparse.length; i++) {
+            bytes[i * SPARSE_BYTES] = (byte) (sparse[i] >>> 16);
+            bytes[i * SPARSE_BYTES + 1] = (byte) (sparse[i] >>> 8);
+            bytes[i * SPARSE_BYTES + 2] = (byte) sparse[i];
+        }
+        return bytes;
+    }
+
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        Object current = registers.get();
+        if (current instanceof byte[] dense) {
+            for (int i = 0; i < REGISTERS; i++) {
+                byte register = (byte) REGISTER.getVolatile(dense, i);
+                sum += 1.0 / (1L << register);
+                if (register == 0) {
+                    zeros++;
+                }
+            }
+        } else {
+            int[] sparse = (int[]) current;
+            zeros = REGISTERS - sparse.length;
+            sum = zeros;
+            for (int entry : sparse) {
+                sum += 1.0 / (1L << (entry & 0xff));
+            }
+        }
+        double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            // Linear counting is more accurate while many registers are still empty
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    // Lifts a register to at least the rank; returns whether it was lower
+    private boolean raise(int register, int rank) {
+        while (true) {
+            Object current = registers.get();
+            if (current instanceof byte[] dense) {
+                return raiseDense(dense, register, rank);
+            }
+            int[] sparse = (int[]) current;
+            int index = find(sparse, register);
+            if (index >= 0 && (sparse[index] & 0xff) >= rank) {
+                return false;
+            }
+            Object next;
+            if (index < 0 && sparse.length >= SPARSE_LIMIT) {
+                byte[] dense = new byte[REGISTERS];
+                for (int entry : sparse) {
+                    dense[entry >>> 8] = (byte) entry;
+                }
+                dense[register] = (byte) rank;
+                next = dense;
+            } else {
+                next = withEntry(sparse, index, register << 8 | rank);
+            }
+            if (registers.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    private static boolean raiseDense(byte[] dense, int register, int rank) {
+        while (true) {
+            byte current = (byte) REGISTER.getVolatile(dense, register);
+            if (current >= rank) {
+                return false;
+            }
+            if (REGISTER.compareAndSet(dense, register, current, (byte) rank)) {
+                return true;
+            }
+        }
+    }
+
+    // Index of the register's entry, or -(insertion point) - 1 as in Arrays.binarySearch
+    private static int find(int[] sparse, int register) {
+        int low = 0;
+        int high = sparse.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int found = sparse[middle] >>> 8;
+            if (found < register) {
+                low = middle + 1;
+            } else if (found > register) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private static int[] withEntry(int[] sparse, int index, int entry) {
+        if (index >= 0) {
+            int[] next = sparse.clone();
+            next[index] = entry;
+            return next;
+        }
+        int at = -(index + 1);
+        int[] next = new int[sparse.length + 1];
+        System.arraycopy(sparse, 0, next, 0, at);
+        next[at] = entry;
+        System.arraycopy(sparse, at, next, at + 1, sparse.length - at);
+        return next;
+    }
+
+    // FNV-1a over the UTF-8 bytes, finished with the MurmurHash3 mixer so every bit avalanches
+    private static long hash(String item) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : item.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.bookblog.service;
+
+import com.example.bookblog.repository.VisitRepository;
+import jakarta.annotation.PostConstruct;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Moves the counts of the former url-keyed visits table into visit_counts on startup, a page of
+// rows in url order per transaction. Each transaction locks the import cursor in
+// visit_import_cursors and moves it past the page it adds, so a node that crashes resumes after
+// the last committed page and nodes starting together take turns. The legacy table is only read;
+// drop it once every node has started with this version. Visitor sketches are imported only from
+// tables that have the visitor_sketch column, which the original table did not.
+@Component
+public class LegacyVisitImport {
+    private static final Logger logger = LoggerFactory.getLogger(LegacyVisitImport.class);
+    private static final String NAME = "legacy-visits";
+    private static final int PAGE_SIZE = 1000;
+    private static final String COLUMNS = "SELECT url, count, last_updated";
+    private static final String SKETCH_COLUMN = ", visitor_sketch";
+    private static final String FIRST_PAGE = " FROM visits ORDER BY url LIMIT " + PAGE_SIZE;
+    private static final String NEXT_PAGE = " FROM visits WHERE url > ? ORDER BY url LIMIT "
+            + PAGE_SIZE;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final VisitRepository visitRepo;
+    private final VisitUrlRegistry urlRegistry;
+    private final TransactionTemplate transaction;
+
+    public LegacyVisitImport(JdbcTemplate jdbcTemplate,
+                             VisitRepository visitRepo,
+                             VisitUrlRegistry urlRegistry,
+                             PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.visitRepo = visitRepo;
+        this.urlRegistry = urlRegistry;
+        this.transaction = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void run() {
+        if (!columnExists("url")) {
+            return;
+        }
+        // Probed outside the page transactions, so a failed probe cannot abort one of them
+        String columns = columnExists("visitor_sketch") ? COLUMNS + SKETCH_COLUMN : COLUMNS;
+        try {
+            jdbcTemplate.update("INSERT INTO visit_import_cursors (name, completed) "
+                    + "VALUES (?, FALSE)", NAME);
+        } catch (DuplicateKeyException e) {
+            // Started by an earlier run or another node
+        }
+        long rows = 0;
+        Integer imported;
+        while ((imported = transaction.execute(status -> importNextPage(columns))) > 0) {
+            rows += imported;
+        }
+        if (imported == 0) {
+            logger.info("Imported {} rows of the legacy visits table; it can now be dropped",
+                    rows);
+        }
+    }
+
+    // Rows added by the page, 0 once the import has just completed, -1 if it already was
+    private int importNextPage(String columns) {
+        Map<String, Object> cursor = jdbcTemplate.queryForMap("SELECT last_url, completed "
+                + "FROM visit_import_cursors WHERE name = ? FOR UPDATE", NAME);
+        if (Boolean.TRUE.equals(cursor.get("completed"))) {
+            return -1;
+        }
+        String lastUrl = (String) cursor.get("last_url");
+        List<LegacyVisit> page = lastUrl == null
+                ? jdbcTemplate.query(columns + FIRST_PAGE, this::mapRow)
+                : jdbcTemplate.query(columns + NEXT_PAGE, this::mapRow, lastUrl);
+        if (page.isEmpty()) {
+            jdbcTemplate.update("UPDATE visit_import_cursors SET completed = TRUE "
+                    + "WHERE name = ?", NAME);
+            return 0;
+        }
+        importPage(page);
+        jdbcTemplate.update("UPDATE visit_import_cursors SET last_url = ? WHERE name = ?",
+                page.get(page.size() - 1).url(), NAME);
+        return page.size();
+    }
+
+    // Spellings of one page merge into its canonical url; the merged row keeps the latest visit
+    private void importPage(List<LegacyVisit> page) {
+        Map<String, Long> counts = new HashMap<>();
+        Map<String, HyperLogLog> sketches = new HashMap<>();
+        LocalDateTime lastUpdated = null;
+        for (LegacyVisit visit : page) {
+            String url = UrlCanonicalizer.canonicalize(visit.url());
+            counts.merge(url, visit.count(), Long::sum);
+            if (visit.visitorSketch() != null) {
+                sketches.computeIfAbsent(url, ignored -> new HyperLogLog())
+                        .merge(HyperLogLog.fromBytes(visit.visitorSketch()));
+            }
+            if (visit.lastUpdated() != null
+                    && (lastUpdated == null || visit.lastUpdated().isAfter(lastUpdated))) {
+                lastUpdated = visit.lastUpdated();
+            }
+        }
+
+        Map<String, Long> ids = urlRegistry.resolveAll(counts.keySet());
+        Map<Long, Long> deltas = new HashMap<>();
+        counts.forEach((url, count) -> {
+            if (ids.containsKey(url)) {
+                deltas.put(ids.get(url), count);
+            }
+        });
+        visitRepo.addVisits(deltas, lastUpdated != null ? lastUpdated : LocalDateTime.now());
+        sketches.keySet().retainAll(ids.keySet());
+        if (sketches.isEmpty()) {
+            return;
+        }
+        Map<Long, byte[]> stored = visitRepo.lockVisitorSketches(
+                sketches.keySet().stream().map(ids::get).toList());
+        Map<Long, byte[]> merged = new HashMap<>();
+        sketches.forEach((url, sketch) -> {
+            long id = ids.get(url);
+            HyperLogLog total = HyperLogLog.fromBytes(stored.get(id));
+            total.merge(sketch);
+            merged.put(id, total.toBytes());
+        });
+        visitRepo.saveVisitorSketches(merged);
+    }
+
+    private boolean columnExists(String column) {
+        try {
+            jdbcTemplate.queryForList("SELECT " + column + " FROM visits WHERE 1 = 0");
+            return true;
+        } catch (BadSqlGrammarException e) {
+            return false;
+        }
+    }
+
+    private LegacyVisit mapRow(ResultSet resultSet, int row) throws SQLException {
+        Timestamp lastUpdated = resultSet.getTimestamp(3);
+        return new LegacyVisit(resultSet.getString(1), resultSet.getLong(2),
+                lastUpdated == null ? null : lastUpdated.toLocalDateTime(),
+                resultSet.getMetaData().getColumnCount() > 3 ? resultSet.getBytes(4) : null);
+    }
+
+    private record LegacyVisit(String url, long count, LocalDateTime lastUpdated,
+                               byte[] visitorSketch) {}
+}
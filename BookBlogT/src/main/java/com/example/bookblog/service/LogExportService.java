@@ -0,0 +1,390 @@
+package com.example.bookblog.service;
+
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+// Runs log exports in the background: a copy of the active log, or its lines within a time
+// range. Jobs wait in a bounded queue, and their files share a size limit in a directory of their
+// own. Each job reserves the size of the active log in that limit when it is submitted, so queued
+// jobs cannot all pass the check together; a file outgrowing its reservation reserves more as it
+// is written, and the unused rest is released when it is done. Finished jobs are forgotten and
+// their files deleted once the TTL has passed; files left by an earlier run are deleted on
+// startup.
+@Service
+public class LogExportService {
+    private static final Logger logger = LoggerFactory.getLogger(LogExportService.class);
+    private static final String FILE_PREFIX = "log_";
+    private static final String FILE_SUFFIX = ".log";
+    // Bytes per transfer, so progress and cancellation are seen along a large copy
+    private static final long TRANSFER_SIZE = 8 * 1024 * 1024;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    public enum Status { PENDING, PROCESSING, COMPLETED, CANCELLED, FAILED }
+
+    private final LogSearchService logSearchService;
+    private final Path logFile;
+    private final Path directory;
+    private final int maxJobs;
+    private final long maxBytes;
+    private final long ttlNanos;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+    // Bytes held by export files, counted as they are written
+    private final AtomicLong storedBytes = new AtomicLong();
+
+    public LogExportService(
+            LogSearchService logSearchService,
+            @Value("${logging.file.name:logs/application.log}") String logFile,
+            @Value("${logs.export.directory:${java.io.tmpdir}/bookblog-log-exports}")
+            String directory,
+            @Value("${logs.export.threads:2}") int threads,
+            @Value("${logs.export.queue-capacity:16}") int queueCapacity,
+            @Value("${logs.export.max-jobs:1000}") int maxJobs,
+            @Value("${logs.export.max-size:1GB}") DataSize maxSize,
+            @Value("${logs.export.ttl:1h}") Duration ttl) {
+        this.logSearchService = logSearchService;
+        this.logFile = Path.of(logFile);
+        this.directory = Path.of(directory);
+        this.maxJobs = maxJobs;
+        this.maxBytes = maxSize.toBytes();
+        this.ttlNanos = ttl.toNanos();
+        try {
+            Files.createDirectories(this.directory);
+            deleteLeftovers();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot prepare log export directory " + directory, e);
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable,
+                            "log-export-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // Queues an export of the whole log, or of the lines in [from, to) when both are given.
+    // Throws RejectedExecutionException when the queue, the job table or the storage is full.
+    public ExportJob submit(LocalDateTime from, LocalDateTime to) {
+        if (jobs.size() >= maxJobs) {
+            cleanup();
+            if (jobs.size() >= maxJobs) {
+                throw new RejectedExecutionException("Too many log export jobs are kept");
+            }
+        }
+        ExportJob job = new ExportJob(UUID.randomUUID().toString(), from, to);
+        if (!tryReserve(job, estimateSize())) {
+            throw new RejectedExecutionException("Log export storage is full");
+        }
+        jobs.put(job.id, job);
+        try {
+            job.future = executor.submit(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            deleteFile(job);
+            throw new RejectedExecutionException("Log export queue is full", e);
+        }
+        return job;
+    }
+
+    public Optional<ExportJob> find(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    // False if the job is unknown or already over. A queued job leaves the queue; a running one
+    // is interrupted and its thread deletes what it wrote.
+    public boolean cancel(String id) {
+        ExportJob job = jobs.get(id);
+        if (job == null || !job.finish(Status.CANCELLED, null)) {
+            return false;
+        }
+        Future<?> future = job.future;
+        if (future != null) {
+            future.cancel(true);
+            if (future instanceof FutureTask<?> task && executor.remove(task)) {
+                // Never started, so only its reservation is held
+                deleteFile(job);
+            }
+        }
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${logs.export.cleanup-interval:1m}")
+    public void cleanup() {
+        long now = System.nanoTime();
+        jobs.values().removeIf(job -> {
+            if (!job.expired(now, ttlNanos)) {
+                return false;
+            }
+            deleteFile(job);
+            return true;
+        });
+    }
+
+    public long getStoredBytes() {
+        return storedBytes.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(ExportJob job) {
+        if (!job.status.compareAndSet(Status.PENDING, Status.PROCESSING)) {
+            deleteFile(job);
+            return;
+        }
+        job.file = directory.resolve(FILE_PREFIX + job.id + FILE_SUFFIX);
+        try {
+            if (job.from == null) {
+                copyLog(job);
+            } else {
+                writeRange(job);
+            }
+        } catch (Exception e) {
+            // The file goes before the status changes, so a failed job holds no storage
+            deleteFile(job);
+            if (e instanceof NoSuchFileException missing
+                    && logFile.equals(Path.of(missing.getFile()))) {
+                job.finish(Status.FAILED, "Source log file not found");
+            } else if (job.finish(Status.FAILED, e.getMessage())) {
+                logger.warn("Log export {} failed", job.id, e);
+            }
+            return;
+        }
+        release(job, job.stored.get() - job.written);
+        if (!job.finish(Status.COMPLETED, null)) {
+            // Cancelled as it finished
+            deleteFile(job);
+        }
+    }
+
+    // Copies the log as long as it was when the copy started, file to file in the kernel
+    private void copyLog(ExportJob job) throws IOException {
+        try (FileChannel source = FileChannel.open(logFile, StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(job.file, StandardOpenOption.CREATE_NEW,
+                     StandardOpenOption.WRITE)) {
+            long size = source.size();
+            job.total = size;
+            long position = 0;
+            while (position < size) {
+                long count = Math.min(TRANSFER_SIZE, size - position);
+                reserve(job, count);
+                long transferred = source.transferTo(position, count, target);
+                job.written -= count - transferred;
+                if (transferred <= 0) {
+                    // The log was truncated under the copy
+                    break;
+                }
+                position += transferred;
+                job.done = position;
+            }
+        }
+    }
+
+    private void writeRange(ExportJob job) throws IOException {
+        Optional<LogSearchService.Selection> selection =
+                logSearchService.findByTime(job.from, job.to);
+        if (selection.isPresent()) {
+            job.total = selection.get().getBytes();
+        }
+        try (FileChannel target = FileChannel.open(job.file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE);
+             OutputStream out = new BufferedOutputStream(new ExportStream(job, target),
+                     WRITE_BUFFER_SIZE)) {
+            if (selection.isPresent()) {
+                logSearchService.write(selection.get(), out, scanned -> job.done = scanned);
+            }
+        }
+    }
+
+    // Whole-log exports copy the active log, and most ranges are within it
+    private long estimateSize() {
+        try {
+            return Files.size(logFile);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    // Fails once the limit would be passed, or was already reached
+    private boolean tryReserve(ExportJob job, long bytes) {
+        long total = storedBytes.addAndGet(bytes);
+        if (total > maxBytes || total - bytes >= maxBytes) {
+            storedBytes.addAndGet(-bytes);
+            return false;
+        }
+        job.stored.addAndGet(bytes);
+        return true;
+    }
+
+    // Counts bytes about to be written, taking more storage once the reservation is used up
+    private void reserve(ExportJob job, long bytes) throws IOException {
+        if (job.status.get() == Status.CANCELLED) {
+            throw new InterruptedIOException("Log export was cancelled");
+        }
+        long missing = job.written + bytes - job.stored.get();
+        if (missing > 0 && !tryReserve(job, missing)) {
+            throw new IOException("Log export storage limit of " + maxBytes + " bytes reached");
+        }
+        job.written += bytes;
+    }
+
+    private void release(ExportJob job, long bytes) {
+        job.stored.addAndGet(-bytes);
+        storedBytes.addAndGet(-bytes);
+    }
+
+    private void deleteFile(ExportJob job) {
+        release(job, job.stored.getAndSet(0));
+        if (job.file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(job.file);
+        } catch (IOException e) {
+            logger.warn("Cannot delete log export file {}", job.file, e);
+        }
+    }
+
+    private void deleteLeftovers() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    // Writes to an export file within the storage limit, and stops once the job is cancelled
+    private final class ExportStream extends OutputStream {
+        private final ExportJob job;
+        private final FileChannel target;
+
+        private ExportStream(ExportJob job, FileChannel target) {
+            this.job = job;
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            reserve(job, length);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+            while (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+        }
+    }
+
+    public static final class ExportJob {
+        private final String id;
+        private final LocalDateTime from;
+        private final LocalDateTime to;
+        private final AtomicReference<Status> status = new AtomicReference<>(Status.PENDING);
+        // Bytes this job holds in the storage limit, and bytes of its file; written is only
+        // touched by the thread running the job
+        private final AtomicLong stored = new AtomicLong();
+        private long written;
+        private volatile Future<?> future;
+        private volatile Path file;
+        private volatile String error;
+        private volatile long total;
+        private volatile long done;
+        private volatile long finishedAt;
+
+        private ExportJob(String id, LocalDateTime from, LocalDateTime to) {
+            this.id = id;
+            this.from = from;
+            this.to = to;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public Status getStatus() {
+            return status.get();
+        }
+
+        // Why the job failed, if it did
+        public String getError() {
+            return error;
+        }
+
+        // Percent of the source read so far
+        public int getProgress() {
+            if (status.get() == Status.COMPLETED) {
+                return 100;
+            }
+            long total = this.total;
+            return total <= 0 ? 0 : (int) Math.min(99, done * 100 / total);
+        }
+
+        // The export file once the job has completed
+        public Optional<Path> getFile() {
+            return status.get() == Status.COMPLETED ? Optional.of(file) : Optional.empty();
+        }
+
+        // Only a pending or running job can finish, and only once
+        private boolean finish(Status outcome, String error) {
+            Status current = status.get();
+            while (current == Status.PENDING || current == Status.PROCESSING) {
+                this.error = error;
+                if (status.compareAndSet(current, outcome)) {
+                    finishedAt = System.nanoTime();
+                    return true;
+                }
+                current = status.get();
+            }
+            return false;
+        }
+
+        private boolean expired(long now, long ttlNanos) {
+            long finished = finishedAt;
+            return finished != 0 && now - finished >= ttlNanos;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.bookblog.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+// Sparse index of a time-sorted log: about every interval bytes it records the timestamp of a line
+// and the offset where the line starts. Lines begin with "yyyy-MM-dd HH:mm:ss", which sorts the
+// same as the times it stands for, so timestamps are kept and compared as those 19 bytes.
+//
+// The index lives in a sidecar file: a header with the log length it covers and a checksum of the
+// log's first bytes, followed by fixed-size entries. Each refresh reads only what the log gained
+// since the previous one; a log that shrank or starts differently was rolled and is indexed anew.
+public final class LogIndex {
+    public static final int TIMESTAMP_LENGTH = 19;
+
+    private static final int MAGIC = 0x4c4f4758;
+    private static final int VERSION = 1;
+    // magic, version, covered length, checksum
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8;
+    private static final int ENTRY_SIZE = TIMESTAMP_LENGTH + 8;
+    private static final int FINGERPRINT_LENGTH = 256;
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private final Path logFile;
+    private final Path indexFile;
+    private final long interval;
+    private boolean loaded;
+    // Guarded by this
+    private byte[] timestamps = new byte[64 * TIMESTAMP_LENGTH];
+    private long[] offsets = new long[64];
+    private int size;
+    private long covered;
+    private long fingerprint;
+
+    public record Slice(long start, long end) {}
+
+    public LogIndex(Path logFile, Path indexFile, long interval) {
+        this.logFile = logFile;
+        this.indexFile = indexFile;
+        this.interval = interval;
+    }
+
+    // Offsets bounding every line whose timestamp is in [from, to). Bounds shorter than a
+    // timestamp compare as prefixes, so a date covers its whole day. The end is Long.MAX_VALUE
+    // when the range reaches past the last indexed line.
+    public synchronized Slice slice(byte[] from, byte[] to) throws IOException {
+        refresh();
+        // The last entry before the range; equal timestamps may start before any entry of them
+        int before = search(from) - 1;
+        int after = search(to);
+        return new Slice(before < 0 ? 0 : offsets[before],
+                after < size ? offsets[after] : Long.MAX_VALUE);
+    }
+
+    // Without the log there is nothing to index, and no sidecar is created for it
+    public synchronized void refresh() throws IOException {
+        long length;
+        try {
+            length = Files.size(logFile);
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        if (!loaded) {
+            load();
+            loaded = true;
+        }
+        if (length < covered || (covered > 0 && fingerprint(covered) != fingerprint)) {
+            reset();
+        }
+        if (length > covered) {
+            int indexed = size;
+            index(length);
+            save(indexed);
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public static boolean isTimestamp(byte[] line, int from) {
+        for (int i = 0; i < TIMESTAMP_LENGTH; i++) {
+            byte b = line[from + i];
+            boolean ok = switch (i) {
+                case 4, 7 -> b == '-';
+                case 10 -> b == ' ';
+                case 13, 16 -> b == ':';
+                default -> b >= '0' && b <= '9';
+            };
+            if (!ok) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Orders the timestamp at the offset against a bound that may be a shorter prefix of one
+    public static int compare(byte[] timestamp, int from, byte[] bound) {
+        int length = Math.min(TIMESTAMP_LENGTH, bound.length);
+        int mismatch = Arrays.compareUnsigned(timestamp, from, from + length, bound, 0, length);
+        return mismatch != 0 ? mismatch : Integer.compare(TIMESTAMP_LENGTH, bound.length);
+    }
+
+    // Reads the log from the covered length on, up to the last complete line
+    private void index(long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+            ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+            byte[] bytes = block.array();
+            byte[] head = new byte[TIMESTAMP_LENGTH];
+            int headLength = 0;
+            long nextEntry = size == 0 ? 0 : offsets[size - 1] + interval;
+            long position = covered;
+            long lineStart = covered;
+            long complete = covered;
+            channel.position(covered);
+            while (position < length) {
+                block.limit((int) Math.min(BLOCK_SIZE, length - position));
+                int read = channel.read(block);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    byte b = bytes[i];
+                    if (b == '\n') {
+                        lineStart = position + i + 1;
+                        complete = lineStart;
+                        headLength = 0;
+                    } else if (lineStart >= nextEntry && headLength < TIMESTAMP_LENGTH) {
+                        head[headLength++] = b;
+                        if (headLength == TIMESTAMP_LENGTH && isTimestamp(head, 0)) {
+                            add(head, lineStart);
+                            nextEntry = lineStart + interval;
+                        }
+                    }
+                }
+                position += read;
+                block.clear();
+            }
+            // An entry on the unfinished last line would be added again by the next refresh
+            while (size > 0 && offsets[size - 1] >= complete) {
+                size--;
+            }
+            covered = complete;
+        }
+    }
+
+    private void add(byte[] timestamp, long offset) {
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size * 2);
+            timestamps = Arrays.copyOf(timestamps, size * 2 * TIMESTAMP_LENGTH);
+        }
+        System.arraycopy(timestamp, 0, timestamps, size * TIMESTAMP_LENGTH, TIMESTAMP_LENGTH);
+        offsets[size++] = offset;
+    }
+
+    // Index of the first entry whose timestamp is not below the bound
+    private int search(byte[] bound) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(middle, bound) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int compare(int entry, byte[] bound) {
+        return compare(timestamps, entry * TIMESTAMP_LENGTH, bound);
+    }
+
+    private void load() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            long entries = (channel.size() - HEADER_SIZE) / ENTRY_SIZE;
+            if (channel.read(header, 0) < HEADER_SIZE || header.getInt(0) != MAGIC
+                    || header.getInt(4) != VERSION || entries > Integer.MAX_VALUE / ENTRY_SIZE) {
+                reset();
+                return;
+            }
+            covered = header.getLong(8);
+            fingerprint = header.getLong(16);
+            ByteBuffer buffer = ByteBuffer.allocate((int) entries * ENTRY_SIZE);
+            while (buffer.hasRemaining() && channel.read(buffer, HEADER_SIZE
+                    + buffer.position()) > 0) {
+                // Reads until the buffer is full
+            }
+            buffer.flip();
+            byte[] timestamp = new byte[TIMESTAMP_LENGTH];
+            while (buffer.remaining() >= ENTRY_SIZE) {
+                buffer.get(timestamp);
+                long offset = buffer.getLong();
+                // Entries written past the header's length belong to an interrupted refresh
+                if (offset < covered) {
+                    add(timestamp, offset);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            reset();
+        }
+    }
+
+    private void reset() throws IOException {
+        size = 0;
+        covered = 0;
+        fingerprint = 0;
+        Files.createDirectories(indexFile.toAbsolutePath().getParent());
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(header(), 0);
+        }
+    }
+
+    // Entries go first and the header last, so a crash in between leaves entries load() drops
+    private void save(int from) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE)) {
+            channel.truncate(HEADER_SIZE + (long) from * ENTRY_SIZE);
+            ByteBuffer entries = ByteBuffer.allocate((size - from) * ENTRY_SIZE);
+            for (int i = from; i < size; i++) {
+                entries.put(timestamps, i * TIMESTAMP_LENGTH, TIMESTAMP_LENGTH).putLong(offsets[i]);
+            }
+            entries.flip();
+            long position = HEADER_SIZE + (long) from * ENTRY_SIZE;
+            while (entries.hasRemaining()) {
+                position += channel.write(entries, position);
+            }
+            fingerprint = fingerprint(covered);
+            channel.write(header(), 0);
+        }
+    }
+
+    private ByteBuffer header() {
+        return ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putLong(covered)
+                .putLong(fingerprint).flip();
+    }
+
+    // Checksum of the log's first bytes, at most as many as the index covers
+    private long fingerprint(long length) throws IOException {
+        ByteBuffer start = ByteBuffer.allocate((int) Math.min(FINGERPRINT_LENGTH, length));
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+            while (start.hasRemaining() && channel.read(start, start.position()) > 0) {
+                // Reads until the buffer is full
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(start.flip());
+        return crc.getValue();
+    }
+}
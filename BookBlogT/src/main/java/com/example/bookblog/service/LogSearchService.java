@@ -0,0 +1,657 @@
+package com.example.bookblog.service;
+
+import jakarta.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.LongConsumer;
+import java.util.zip.GZIPInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+// Finds lines of the application log and of the segments rolled from it, by date prefix or time
+// range. A sparse LogIndex narrows each uncompressed segment to the slice that can hold the lines;
+// the slice is cut into chunks scanned in parallel on a fork-join pool, and compressed segments
+// are read as a stream. Lines of all segments are merged in timestamp order. Only a few chunks
+// per segment are scanned ahead of the output, so a search needs the same memory however large
+// the log is.
+@Service
+public class LogSearchService {
+    private static final Logger logger = LoggerFactory.getLogger(LogSearchService.class);
+    private static final DateTimeFormatter TIMESTAMP =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    // Controller entry logs are left out of search results
+    private static final byte[] EXCLUDED =
+            "INFO - Вход в метод контроллера".getBytes(StandardCharsets.UTF_8);
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private static final long INDEX_INTERVAL = 64 * 1024;
+
+    private final LogSegments segments;
+    private final ForkJoinPool pool;
+    // Chunks of a segment scanned ahead of the one being written
+    private final int lookAhead;
+
+    public LogSearchService(@Value("${logging.file.name:logs/application.log}") String logFile,
+                            @Value("${logs.search.parallelism:0}") int parallelism) {
+        this.segments = new LogSegments(Paths.get(logFile), INDEX_INTERVAL);
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread thread =
+                    ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("log-search-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+        this.lookAhead = 2 * threads;
+    }
+
+    // Lines starting with the prefix, such as a date; empty if there are none or no log yet
+    public Optional<Selection> findByPrefix(String prefix) throws IOException {
+        byte[] wanted = prefix.getBytes(StandardCharsets.UTF_8);
+        byte[] from = Arrays.copyOf(wanted, Math.min(wanted.length, LogIndex.TIMESTAMP_LENGTH));
+        LineFilter filter = new LineFilter() {
+            @Override
+            public int headLength() {
+                return wanted.length;
+            }
+
+            @Override
+            public boolean accepts(byte[] head) {
+                return Arrays.equals(head, 0, wanted.length, wanted, 0, wanted.length);
+            }
+        };
+        return find(filter, from, successor(from));
+    }
+
+    // Lines stamped within [from, to), to the second
+    public Optional<Selection> findByTime(LocalDateTime from, LocalDateTime to)
+            throws IOException {
+        byte[] lower = TIMESTAMP.format(from).getBytes(StandardCharsets.US_ASCII);
+        byte[] upper = TIMESTAMP.format(to).getBytes(StandardCharsets.US_ASCII);
+        LineFilter filter = new LineFilter() {
+            @Override
+            public int headLength() {
+                return LogIndex.TIMESTAMP_LENGTH;
+            }
+
+            @Override
+            public boolean accepts(byte[] head) {
+                int length = LogIndex.TIMESTAMP_LENGTH;
+                return LogIndex.isTimestamp(head, 0)
+                        && Arrays.compareUnsigned(head, 0, length, lower, 0, length) >= 0
+                        && Arrays.compareUnsigned(head, 0, length, upper, 0, length) < 0;
+            }
+        };
+        return find(filter, lower, upper);
+    }
+
+    // Writes the selected lines in timestamp order, each ending with a line feed
+    public long write(Selection selection, OutputStream out) throws IOException {
+        return write(selection, out, scanned -> { });
+    }
+
+    // As above, reporting the bytes read so far, out of Selection.getBytes(), as the scan goes
+    public long write(Selection selection, OutputStream out, LongConsumer progress)
+            throws IOException {
+        long[] scanned = {0};
+        LongConsumer read = bytes -> progress.accept(scanned[0] += bytes);
+        PriorityQueue<LineCursor> queue = new PriorityQueue<>();
+        ArrayDeque<Part> pending = new ArrayDeque<>(selection.parts);
+        List<LineCursor> opened = new ArrayList<>();
+        long lines = 0;
+        try {
+            while (true) {
+                // A segment joins the merge once the lines ahead are not older than its first
+                while (!pending.isEmpty() && (queue.isEmpty()
+                        || queue.peek().compareHead(pending.peek().segment().first()) >= 0)) {
+                    LineCursor cursor = open(selection.filter, pending.poll(), opened.size(),
+                            read);
+                    if (cursor != null) {
+                        opened.add(cursor);
+                        if (cursor.advance()) {
+                            queue.add(cursor);
+                        }
+                    }
+                }
+                LineCursor cursor = queue.poll();
+                if (cursor == null) {
+                    return lines;
+                }
+                out.write(cursor.batch, cursor.from, cursor.length);
+                out.write('\n');
+                lines++;
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+        } finally {
+            for (LineCursor cursor : opened) {
+                cursor.close();
+            }
+        }
+    }
+
+    // Keeps the index close to the end of the log, so queries rarely wait for it to catch up
+    @Scheduled(fixedDelayString = "${logs.index.refresh-interval:1m}")
+    public void refreshIndex() {
+        try {
+            segments.refreshActiveIndex();
+        } catch (IOException e) {
+            logger.warn("Refreshing the log index failed", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    // The search stops at the first match, which is where the selection starts; the segments
+    // after it are selected whole, within their index slices
+    private Optional<Selection> find(LineFilter filter, byte[] from, byte[] to)
+            throws IOException {
+        List<LogSegments.Segment> candidates = segments.between(from, to);
+        for (int i = 0; i < candidates.size(); i++) {
+            Part part = part(candidates.get(i), from, to);
+            long first = firstMatch(filter, part);
+            if (first < 0) {
+                continue;
+            }
+            List<Part> parts = new ArrayList<>();
+            parts.add(new Part(part.segment(), first, part.end()));
+            for (int j = i + 1; j < candidates.size(); j++) {
+                parts.add(part(candidates.get(j), from, to));
+            }
+            return Optional.of(new Selection(filter, parts));
+        }
+        return Optional.empty();
+    }
+
+    private Part part(LogSegments.Segment segment, byte[] from, byte[] to) throws IOException {
+        if (segment.compressed()) {
+            return new Part(segment, 0, Long.MAX_VALUE);
+        }
+        LogIndex.Slice slice = segments.index(segment).slice(from, to);
+        return new Part(segment, slice.start(), slice.end());
+    }
+
+    // Offset of the first accepted line of the part, or -1; compressed parts are not seekable,
+    // so they report 0 for any match
+    private long firstMatch(LineFilter filter, Part part) throws IOException {
+        try (LineCursor cursor = open(filter, part, 0, bytes -> { })) {
+            if (cursor == null) {
+                return -1;
+            }
+            if (cursor instanceof FileCursor file) {
+                return file.firstMatch();
+            }
+            return cursor.advance() ? 0 : -1;
+        }
+    }
+
+    // Null when the segment is gone, as when it was rolled or cleaned up since the search
+    private LineCursor open(LineFilter filter, Part part, int order, LongConsumer read)
+            throws IOException {
+        try {
+            return part.segment().compressed()
+                    ? new GzipCursor(filter, part.segment().path(), order, read)
+                    : new FileCursor(filter, part, order, read, pool, lookAhead);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    // The smallest byte string above every string that starts with the prefix
+    private static byte[] successor(byte[] prefix) {
+        byte[] next = prefix.clone();
+        for (int i = next.length - 1; i >= 0; i--) {
+            if (next[i] != (byte) 0xff) {
+                next[i]++;
+                return Arrays.copyOf(next, i + 1);
+            }
+        }
+        // Nothing is above an empty or all-0xff prefix; this sorts after every timestamp
+        return new byte[] {(byte) 0xff};
+    }
+
+    private static boolean contains(byte[] line, int length, byte[] part) {
+        outer:
+        for (int start = 0; start + part.length <= length; start++) {
+            for (int i = 0; i < part.length; i++) {
+                if (line[start + i] != part[i]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    // Lines to return and the parts of the log segments that hold them
+    public static final class Selection {
+        private final LineFilter filter;
+        private final List<Part> parts;
+
+        private Selection(LineFilter filter, List<Part> parts) {
+            this.filter = filter;
+            this.parts = List.copyOf(parts);
+        }
+
+        public int getSegments() {
+            return parts.size();
+        }
+
+        // Bytes the lines are read from; compressed segments count in full
+        public long getBytes() throws IOException {
+            long bytes = 0;
+            for (Part part : parts) {
+                long size;
+                try {
+                    size = Files.size(part.segment().path());
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+                bytes += part.segment().compressed()
+                        ? size : Math.max(0, Math.min(part.end(), size) - part.start());
+            }
+            return bytes;
+        }
+    }
+
+    // end is Long.MAX_VALUE when the part runs to the end of the segment
+    private record Part(LogSegments.Segment segment, long start, long end) {}
+
+    private interface LineFilter {
+        // Bytes at the start of a line the decision needs; shorter lines are never accepted
+        int headLength();
+
+        boolean accepts(byte[] head);
+    }
+
+    @FunctionalInterface
+    private interface LineConsumer {
+        // Returns false to stop the scan
+        boolean accept(byte[] line, int length, long offset) throws IOException;
+    }
+
+    // Splits bytes into lines and hands over those the filter accepts. The state carries over
+    // from block to block, so a line may span several of them.
+    private static final class LineScanner {
+        private final LineFilter filter;
+        private final LineConsumer consumer;
+        private final int head;
+        // Lines starting here or later are left to another scanner
+        private final long limit;
+        private byte[] line;
+        private int length;
+        // Undecided until the head of the line is read
+        private Boolean accepted;
+        private long lineStart;
+
+        LineScanner(LineFilter filter, long from, long limit, LineConsumer consumer) {
+            this.filter = filter;
+            this.consumer = consumer;
+            this.head = filter.headLength();
+            this.limit = limit;
+            this.line = new byte[Math.max(256, head)];
+            this.accepted = head == 0 ? filter.accepts(line) : null;
+            this.lineStart = from;
+        }
+
+        // For a scan that starts inside a line: everything up to the next line feed is skipped
+        void skipLine() {
+            accepted = Boolean.FALSE;
+        }
+
+        // Reads the block between its position and limit, found at the offset in the segment.
+        // Returns false once the scan is over.
+        boolean feed(ByteBuffer block, long offset) throws IOException {
+            if (lineStart >= limit) {
+                return false;
+            }
+            int start = block.position();
+            for (int i = start; i < block.limit(); i++) {
+                byte b = block.get(i);
+                if (b == '\n') {
+                    if (accepted == Boolean.TRUE && !contains(line, length, EXCLUDED)
+                            && !consumer.accept(line, length, lineStart)) {
+                        return false;
+                    }
+                    length = 0;
+                    lineStart = offset + (i - start) + 1;
+                    if (lineStart >= limit) {
+                        return false;
+                    }
+                    accepted = head == 0 ? filter.accepts(line) : null;
+                } else if (accepted != Boolean.FALSE) {
+                    if (length == line.length) {
+                        line = Arrays.copyOf(line, line.length * 2);
+                    }
+                    line[length++] = b;
+                    if (accepted == null && length == head) {
+                        accepted = filter.accepts(line);
+                    }
+                }
+            }
+            return true;
+        }
+
+        // The last line may still be being written
+        void finish() throws IOException {
+            if (length > 0 && accepted == Boolean.TRUE && !contains(line, length, EXCLUDED)) {
+                consumer.accept(line, length, lineStart);
+            }
+            accepted = Boolean.FALSE;
+        }
+    }
+
+    // Accepted lines, each ending with a line feed, and the offset of the first; -1 if none
+    private record Chunk(byte[] lines, long first) {}
+
+    // Scans the lines that start in [from, to) of a segment slice ending at end. The last of
+    // them is read to its end past to.
+    private static final class ChunkScan extends RecursiveTask<Chunk> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final boolean mapped;
+        private final LineFilter filter;
+        private final boolean atLineStart;
+        private final long from;
+        private final long to;
+        private final long end;
+        private final boolean firstOnly;
+
+        ChunkScan(FileChannel channel, boolean mapped, LineFilter filter, boolean atLineStart,
+                  long from, long to, long end, boolean firstOnly) {
+            this.channel = channel;
+            this.mapped = mapped;
+            this.filter = filter;
+            this.atLineStart = atLineStart;
+            this.from = from;
+            this.to = to;
+            this.end = end;
+            this.firstOnly = firstOnly;
+        }
+
+        @Override
+        protected Chunk compute() {
+            try {
+                return scan();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private Chunk scan() throws IOException {
+            ByteArrayOutputStream lines = new ByteArrayOutputStream();
+            long[] first = {-1};
+            // The byte before the chunk tells whether a line starts right at from
+            long position = atLineStart ? from : from - 1;
+            LineScanner scanner = new LineScanner(filter, position, to, (line, length, offset) -> {
+                if (first[0] < 0) {
+                    first[0] = offset;
+                }
+                lines.write(line, 0, length);
+                lines.write('\n');
+                return !firstOnly;
+            });
+            if (!atLineStart) {
+                scanner.skipLine();
+            }
+            while (position < end) {
+                long length = Math.min(end - position, Math.max(to - position, BLOCK_SIZE));
+                ByteBuffer region = region(position, (int) length);
+                if (!region.hasRemaining()) {
+                    break;
+                }
+                if (!scanner.feed(region, position)) {
+                    return new Chunk(lines.toByteArray(), first[0]);
+                }
+                position += region.remaining();
+            }
+            scanner.finish();
+            return new Chunk(lines.toByteArray(), first[0]);
+        }
+
+        private ByteBuffer region(long position, int length) throws IOException {
+            if (mapped) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()
+                    && channel.read(buffer, position + buffer.position()) > 0) {
+                // Reads until the buffer is full
+            }
+            return buffer.flip();
+        }
+    }
+
+    // Walks the accepted lines of one segment in order, a batch at a time
+    private abstract static class LineCursor implements Closeable, Comparable<LineCursor> {
+        private final int order;
+        // Told how many more bytes of the segment were read
+        final LongConsumer read;
+        byte[] batch;
+        int from;
+        int length;
+        private int next;
+
+        LineCursor(int order, LongConsumer read) {
+            this.order = order;
+            this.read = read;
+        }
+
+        // Null once the segment has no more lines
+        abstract byte[] nextBatch() throws IOException;
+
+        boolean advance() throws IOException {
+            while (batch == null || next == batch.length) {
+                batch = nextBatch();
+                next = 0;
+                if (batch == null) {
+                    return false;
+                }
+            }
+            int i = next;
+            while (batch[i] != '\n') {
+                i++;
+            }
+            from = next;
+            length = i - next;
+            next = i + 1;
+            return true;
+        }
+
+        // Orders the head of the current line against a timestamp
+        int compareHead(byte[] timestamp) {
+            int head = Math.min(length, LogIndex.TIMESTAMP_LENGTH);
+            return Arrays.compareUnsigned(batch, from, from + head, timestamp, 0,
+                    timestamp.length);
+        }
+
+        // Lines with the same timestamp keep the order of their segments
+        @Override
+        public int compareTo(LineCursor other) {
+            int head = Math.min(length, LogIndex.TIMESTAMP_LENGTH);
+            int otherHead = Math.min(other.length, LogIndex.TIMESTAMP_LENGTH);
+            int order = Arrays.compareUnsigned(batch, from, from + head,
+                    other.batch, other.from, other.from + otherHead);
+            return order != 0 ? order : Integer.compare(this.order, other.order);
+        }
+    }
+
+    // An uncompressed segment, cut into chunks that are scanned ahead on the pool. Rolled
+    // segments are memory-mapped; the active log is read instead, since a mapping would keep
+    // it from being renamed on rollover on some platforms.
+    private static final class FileCursor extends LineCursor {
+        private final FileChannel channel;
+        private final LineFilter filter;
+        private final boolean mapped;
+        private final ForkJoinPool pool;
+        private final int lookAhead;
+        private final long start;
+        private final long end;
+        private final ArrayDeque<ChunkScan> scans = new ArrayDeque<>();
+        private long next;
+        private boolean firstOnly;
+
+        FileCursor(LineFilter filter, Part part, int order, LongConsumer read, ForkJoinPool pool,
+                   int lookAhead) throws IOException {
+            super(order, read);
+            this.channel = FileChannel.open(part.segment().path(), StandardOpenOption.READ);
+            this.filter = filter;
+            this.mapped = !part.segment().active();
+            this.pool = pool;
+            this.lookAhead = lookAhead;
+            this.start = part.start();
+            this.end = Math.min(part.end(), channel.size());
+            this.next = start;
+        }
+
+        long firstMatch() throws IOException {
+            firstOnly = true;
+            Chunk chunk;
+            while ((chunk = nextChunk()) != null) {
+                if (chunk.first() >= 0) {
+                    return chunk.first();
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        byte[] nextBatch() throws IOException {
+            Chunk chunk;
+            while ((chunk = nextChunk()) != null) {
+                if (chunk.lines().length > 0) {
+                    return chunk.lines();
+                }
+            }
+            return null;
+        }
+
+        private Chunk nextChunk() throws IOException {
+            while (scans.size() < lookAhead && next < end) {
+                long to = Math.min(next + CHUNK_SIZE, end);
+                ChunkScan scan = new ChunkScan(channel, mapped, filter, next == start, next, to,
+                        end, firstOnly);
+                pool.execute(scan);
+                scans.add(scan);
+                next = to;
+            }
+            ChunkScan scan = scans.poll();
+            if (scan == null) {
+                return null;
+            }
+            Chunk chunk;
+            try {
+                chunk = scan.join();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            read.accept(scan.to - scan.from);
+            return chunk;
+        }
+
+        @Override
+        public void close() throws IOException {
+            scans.forEach(scan -> scan.cancel(false));
+            scans.clear();
+            channel.close();
+        }
+    }
+
+    // A gzip-compressed segment, decompressed as a stream on the calling thread
+    private static final class GzipCursor extends LineCursor {
+        private final Path path;
+        private final InputStream in;
+        private final ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        private final LineScanner scanner;
+        private final byte[] block = new byte[BLOCK_SIZE];
+        private long position;
+        private boolean done;
+
+        GzipCursor(LineFilter filter, Path path, int order, LongConsumer read)
+                throws IOException {
+            super(order, read);
+            this.path = path;
+            InputStream file = new FilterInputStream(Files.newInputStream(path)) {
+                @Override
+                public int read(byte[] bytes, int offset, int length) throws IOException {
+                    int count = super.read(bytes, offset, length);
+                    if (count > 0) {
+                        read.accept(count);
+                    }
+                    return count;
+                }
+            };
+            try {
+                this.in = new GZIPInputStream(file, BLOCK_SIZE);
+            } catch (IOException e) {
+                file.close();
+                throw e;
+            }
+            this.scanner = new LineScanner(filter, 0, Long.MAX_VALUE, (line, length, offset) -> {
+                lines.write(line, 0, length);
+                lines.write('\n');
+                return true;
+            });
+        }
+
+        @Override
+        byte[] nextBatch() throws IOException {
+            lines.reset();
+            while (!done && lines.size() < CHUNK_SIZE) {
+                int read;
+                try {
+                    read = in.read(block);
+                } catch (EOFException e) {
+                    logger.warn("Log segment {} ends early, it may still be being compressed",
+                            path);
+                    read = -1;
+                }
+                if (read < 0) {
+                    scanner.finish();
+                    done = true;
+                } else {
+                    scanner.feed(ByteBuffer.wrap(block, 0, read), position);
+                    position += read;
+                }
+            }
+            return lines.size() == 0 ? null : lines.toByteArray();
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.bookblog.service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// The application log together with the segments logback rolled it into, such as
+// application.log.2025-04-12.0 or application.log.2025-04-12.0.gz. Segments are ordered by the
+// first timestamp they hold, and each uncompressed one gets a LogIndex in a sidecar file. A
+// sidecar goes once logback deletes or compresses its segment. A blank path means the log only
+// goes to the console, so there are no segments.
+public final class LogSegments {
+    private static final Logger logger = LoggerFactory.getLogger(LogSegments.class);
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final String COMPRESSED_SUFFIX = ".gz";
+    // Bytes read from the start of a segment to find its first timestamp
+    private static final int PROBE_LENGTH = 64 * 1024;
+
+    // Null without a log file
+    private final Path logFile;
+    private final long indexInterval;
+    private final Map<Path, LogIndex> indexes = new ConcurrentHashMap<>();
+    private final Map<Path, Probe> probes = new ConcurrentHashMap<>();
+
+    // first is empty when the segment starts without a timestamp, which sorts it before the rest
+    public record Segment(Path path, boolean compressed, boolean active, byte[] first) {}
+
+    private record Probe(long size, FileTime modified, byte[] first) {}
+
+    public LogSegments(Path logFile, long indexInterval) {
+        this.logFile = logFile.toString().isBlank() ? null : logFile.toAbsolutePath();
+        this.indexInterval = indexInterval;
+    }
+
+    public List<Segment> list() throws IOException {
+        if (logFile == null) {
+            return List.of();
+        }
+        String name = logFile.getFileName().toString();
+        List<Segment> segments = new ArrayList<>();
+        Set<Path> paths = new HashSet<>();
+        List<Path> sidecars = new ArrayList<>();
+        try (Stream<Path> files = Files.list(logFile.getParent())) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                String fileName = path.getFileName().toString();
+                if (!fileName.equals(name) && !fileName.startsWith(name + ".")) {
+                    continue;
+                }
+                if (fileName.endsWith(INDEX_SUFFIX)) {
+                    sidecars.add(path);
+                    continue;
+                }
+                boolean compressed = fileName.endsWith(COMPRESSED_SUFFIX);
+                byte[] first = first(path, compressed);
+                if (first != null) {
+                    segments.add(new Segment(path, compressed, path.equals(logFile), first));
+                    paths.add(path);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return List.of();
+        }
+        probes.keySet().retainAll(paths);
+        indexes.keySet().retainAll(paths);
+        deleteOrphans(sidecars, paths);
+        segments.sort(Comparator.comparing(Segment::first, Arrays::compareUnsigned)
+                .thenComparing(Segment::active)
+                .thenComparing(Segment::path));
+        return segments;
+    }
+
+    // Segments that may hold lines stamped within [from, to). Like the index, this assumes the
+    // log is written in time order, so a segment ends no later than the next one starts.
+    public List<Segment> between(byte[] from, byte[] to) throws IOException {
+        List<Segment> segments = list();
+        List<Segment> overlapping = new ArrayList<>();
+        for (int i = 0; i < segments.size(); i++) {
+            byte[] first = segments.get(i).first();
+            byte[] next = i + 1 < segments.size() ? segments.get(i + 1).first() : null;
+            if ((first.length == 0 || LogIndex.compare(first, 0, to) < 0)
+                    && (next == null || next.length == 0 || LogIndex.compare(next, 0, from) >= 0)) {
+                overlapping.add(segments.get(i));
+            }
+        }
+        return overlapping;
+    }
+
+    public LogIndex index(Segment segment) {
+        return index(segment.path());
+    }
+
+    public void refreshActiveIndex() throws IOException {
+        if (logFile != null) {
+            index(logFile).refresh();
+        }
+    }
+
+    private LogIndex index(Path path) {
+        return indexes.computeIfAbsent(path,
+                ignored -> new LogIndex(path, Paths.get(path + INDEX_SUFFIX), indexInterval));
+    }
+
+    // Sidecars of segments that are gone or compressed; a segment rolled after the listing
+    // started is checked on disk, so its fresh index stays
+    private void deleteOrphans(List<Path> sidecars, Set<Path> paths) {
+        for (Path sidecar : sidecars) {
+            String fileName = sidecar.getFileName().toString();
+            Path segment = sidecar.resolveSibling(
+                    fileName.substring(0, fileName.length() - INDEX_SUFFIX.length()));
+            if (paths.contains(segment) || Files.exists(segment)) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(sidecar);
+            } catch (IOException e) {
+                logger.warn("Cannot delete log index {}", sidecar, e);
+            }
+        }
+    }
+
+    // The first timestamp of the segment, or null if it is gone
+    private byte[] first(Path path, boolean compressed) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if (!attributes.isRegularFile()) {
+            return null;
+        }
+        Probe probe = probes.get(path);
+        if (probe == null || probe.size() != attributes.size()
+                || !probe.modified().equals(attributes.lastModifiedTime())) {
+            byte[] start;
+            try (InputStream in = compressed ? new GZIPInputStream(Files.newInputStream(path))
+                    : Files.newInputStream(path)) {
+                start = in.readNBytes(PROBE_LENGTH);
+            } catch (NoSuchFileException e) {
+                return null;
+            } catch (EOFException e) {
+                // A segment still being compressed
+                start = new byte[0];
+            }
+            probe = new Probe(attributes.size(), attributes.lastModifiedTime(),
+                    firstTimestamp(start));
+            probes.put(path, probe);
+        }
+        return probe.first();
+    }
+
+    private static byte[] firstTimestamp(byte[] start) {
+        int lineStart = 0;
+        while (lineStart + LogIndex.TIMESTAMP_LENGTH <= start.length) {
+            if (LogIndex.isTimestamp(start, lineStart)) {
+                return Arrays.copyOfRange(start, lineStart, lineStart + LogIndex.TIMESTAMP_LENGTH);
+            }
+            while (lineStart < start.length && start[lineStart] != '\n') {
+                lineStart++;
+            }
+            lineStart++;
+        }
+        return new byte[0];
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.bookblog.service;
 
+import com.example.bookblog.cache.CachedEntityType;
+import com.example.bookblog.cache.InMemoryCache;
 import com.example.bookblog.entity.Book;
 import com.example.bookblog.entity.Response;
 import com.example.bookblog.entity.User;
@@ -11,8 +13,7 @@ import com.example.bookblog.repository.BookRepository;
 import com.example.bookblog.repository.ResponseRepository;
 import com.example.bookblog.repository.UserRepository;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -20,13 +21,19 @@ public class ResponseService {
     private final ResponseRepository responseRepository;
     private final UserRepository userRepository;
     private final BookRepository bookRepository;
-    private final Map<Long, List<Response>> responseCache = new ConcurrentHashMap<>();
+    private final InMemoryCache<Long, List<Response>> responseCache;
+    private final CacheInvalidationService cacheInvalidationService;
 
     public ResponseService(ResponseRepository responseRepository,
-                           UserRepository userRepository, BookRepository bookRepository) {
+                           UserRepository userRepository, BookRepository bookRepository,
+                           @Qualifier("responseCache")
+                           InMemoryCache<Long, List<Response>> responseCache,
+                           CacheInvalidationService cacheInvalidationService) {
         this.responseRepository = responseRepository;
         this.userRepository = userRepository;
         this.bookRepository = bookRepository;
+        this.responseCache = responseCache;
+        this.cacheInvalidationService = cacheInvalidationService;
     }
 
     public Response createResponse(Long userId, Long bookId, String content)
@@ -44,6 +51,7 @@ public class ResponseService {
         Response response = new Response(content, user, book);
         Response savedResponse = responseRepository.save(response);
         responseCache.remove(userId);
+        cacheInvalidationService.publish(CachedEntityType.USER_RESPONSES, userId);
         return savedResponse;
     }
 
@@ -73,6 +81,8 @@ public class ResponseService {
 
         responseRepository.deleteById(responseId);
         responseCache.remove(response.getUser().getId());
+        cacheInvalidationService.publish(CachedEntityType.USER_RESPONSES,
+                response.getUser().getId());
         getUserResponses(response.getUser().getId());
         if (!responseRepository.findByUserId(response.getUser().getId()).isEmpty()) {
             getUserResponses(response.getUser().getId());
@@ -91,5 +101,6 @@ public class ResponseService {
         response.setContent(content);
         responseRepository.save(response);
         responseCache.clear();
+        cacheInvalidationService.publish(CachedEntityType.USER_RESPONSES, null);
     }
 }
\ No newline at end of file
@@ -0,0 +1,84 @@
+package com.example.bookblog.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Maps the spellings of one page to one url: lower-case scheme and host without the default port,
+// no fragment, no trailing slash, no tracking parameters and the remaining parameters sorted.
+// Percent-escapes are kept as they are. Applying it twice changes nothing.
+public final class UrlCanonicalizer {
+    private static final Pattern ABSOLUTE =
+            Pattern.compile("^([a-zA-Z][a-zA-Z0-9+.-]*)://([^/?#]*)(.*)$");
+    private static final Set<String> TRACKING_PARAMETERS = Set.of(
+            "gclid", "dclid", "fbclid", "yclid", "msclkid", "mc_cid", "mc_eid", "_ga", "_openstat");
+    private static final Comparator<String> BY_NAME_THEN_VALUE =
+            Comparator.comparing(UrlCanonicalizer::nameOf).thenComparing(Comparator.naturalOrder());
+
+    private UrlCanonicalizer() {
+    }
+
+    public static String canonicalize(String url) {
+        if (url == null) {
+            return null;
+        }
+        String rest = url.trim();
+        int fragment = rest.indexOf('#');
+        if (fragment >= 0) {
+            rest = rest.substring(0, fragment);
+        }
+
+        StringBuilder canonical = new StringBuilder(rest.length());
+        Matcher absolute = ABSOLUTE.matcher(rest);
+        if (absolute.matches()) {
+            String scheme = absolute.group(1).toLowerCase(Locale.ROOT);
+            canonical.append(scheme).append("://").append(authority(scheme, absolute.group(2)));
+            rest = absolute.group(3);
+        }
+
+        int queryStart = rest.indexOf('?');
+        String path = queryStart >= 0 ? rest.substring(0, queryStart) : rest;
+        String query = queryStart >= 0 ? rest.substring(queryStart + 1) : "";
+        while (path.length() > 1 && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        canonical.append(path.isEmpty() ? "/" : path);
+
+        List<String> parameters = new ArrayList<>();
+        for (String parameter : query.split("&")) {
+            if (!parameter.isEmpty() && !isTracking(nameOf(parameter))) {
+                parameters.add(parameter);
+            }
+        }
+        if (!parameters.isEmpty()) {
+            parameters.sort(BY_NAME_THEN_VALUE);
+            canonical.append('?').append(String.join("&", parameters));
+        }
+        return canonical.toString();
+    }
+
+    private static String authority(String scheme, String authority) {
+        String host = authority.toLowerCase(Locale.ROOT);
+        if (scheme.equals("http") && host.endsWith(":80")) {
+            return host.substring(0, host.length() - 3);
+        }
+        if (scheme.equals("https") && host.endsWith(":443")) {
+            return host.substring(0, host.length() - 4);
+        }
+        return host;
+    }
+
+    private static boolean isTracking(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        return lower.startsWith("utm_") || TRACKING_PARAMETERS.contains(lower);
+    }
+
+    private static String nameOf(String parameter) {
+        int equals = parameter.indexOf('=');
+        return equals >= 0 ? parameter.substring(0, equals) : parameter;
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.bookblog.service;
 
+import com.example.bookblog.cache.CachedEntityType;
+import com.example.bookblog.cache.InMemoryCache;
 import com.example.bookblog.dto.UserWithResponsesAndCategoryDto;
 import com.example.bookblog.entity.Category;
 import com.example.bookblog.entity.User;
@@ -12,8 +14,8 @@ import com.example.bookblog.repository.UserRepository;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -23,16 +25,24 @@ public class UserService {
     private final UserRepository userRepository;
     private final CategoryRepository groupRepository;
     private final PasswordEncoder passwordEncoder;
-    private final ConcurrentHashMap<Long, UserWithResponsesAndCategoryDto> userCache
-            = new ConcurrentHashMap<>();
+    private final InMemoryCache<Long, UserWithResponsesAndCategoryDto> userCache;
+    private final CacheInvalidationService cacheInvalidationService;
+    private final CategoryService categoryService;
 
     @Autowired
     public UserService(UserRepository userRepository,
                        CategoryRepository groupRepository,
-                       PasswordEncoder passwordEncoder) {
+                       PasswordEncoder passwordEncoder,
+                       @Qualifier("userCache")
+                       InMemoryCache<Long, UserWithResponsesAndCategoryDto> userCache,
+                       CacheInvalidationService cacheInvalidationService,
+                       CategoryService categoryService) {
         this.userRepository = userRepository;
         this.groupRepository = groupRepository;
         this.passwordEncoder = passwordEncoder;
+        this.userCache = userCache;
+        this.cacheInvalidationService = cacheInvalidationService;
+        this.categoryService = categoryService;
     }
 
     public User registration(User user) throws UserAlreadyExistException {
@@ -50,12 +60,23 @@ public class UserService {
 
         user.setPassword(passwordEncoder.encode(user.getPassword()));
 
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        // The id may have been probed before it existed, here or on another node
+        userCache.remove(savedUser.getId());
+        cacheInvalidationService.publish(CachedEntityType.USER, savedUser.getId());
+        return savedUser;
     }
 
     public UserWithResponsesAndCategoryDto getOne(Long id) throws UserNotFoundException {
-        User user = userRepository.findWithPostsAndGroupsById(id)
-                .orElseThrow(() -> new UserNotFoundException("User with this id not exist!!!"));
+        if (userCache.isKnownAbsent(id)) {
+            throw new UserNotFoundException("User with this id not exist!!!");
+        }
+        Optional<User> optionalUser = userRepository.findWithPostsAndGroupsById(id);
+        if (optionalUser.isEmpty()) {
+            userCache.markAbsent(id);
+            throw new UserNotFoundException("User with this id not exist!!!");
+        }
+        User user = optionalUser.get();
 
         UserWithResponsesAndCategoryDto dto = UserWithResponsesAndCategoryDto.toModel(user);
         userCache.put(id, dto);
@@ -64,10 +85,14 @@ public class UserService {
     }
 
     public User getUserById(Long id) throws UserNotFoundException {
+        if (userCache.isKnownAbsent(id)) {
+            throw new UserNotFoundException("User with this id not exist!!!");
+        }
         Optional<User> optionalUser = userRepository.findById(id);
         if (optionalUser.isPresent()) {
             return optionalUser.get();
         } else {
+            userCache.markAbsent(id);
             throw new UserNotFoundException("User with this id not exist!!!");
         }
     }
@@ -83,6 +108,8 @@ public class UserService {
         userRepository.save(user);
 
         userCache.remove(userId);
+        cacheInvalidationService.publish(CachedEntityType.USER, userId);
+        categoryService.membersChanged(group);
         getOne(userId);
     }
 
@@ -103,6 +130,7 @@ public class UserService {
         userRepository.save(existingUser);
 
         userCache.remove(id);
+        cacheInvalidationService.publish(CachedEntityType.USER, id);
         getOne(id);
     }
 
@@ -112,6 +140,7 @@ public class UserService {
         }
         userRepository.deleteById(id);
         userCache.remove(id);
+        cacheInvalidationService.publish(CachedEntityType.USER, id);
     }
 
     public void removeUserFromGroup(Long userId, Long groupId) throws UserNotFoundException,
@@ -122,6 +151,10 @@ public class UserService {
                         new CategoryNotFoundException("Group with this id not exist!!!"));
         user.removeGroup(group);
         userRepository.save(user);
+
+        userCache.remove(userId);
+        cacheInvalidationService.publish(CachedEntityType.USER, userId);
+        categoryService.membersChanged(group);
     }
 
     public Set<Category> getUserGroups(Long userId) throws UserNotFoundException {
@@ -0,0 +1,316 @@
+package com.example.bookblog.service;
+
+import com.example.bookblog.dto.VisitSeriesDto;
+import com.example.bookblog.entity.VisitBucket;
+import com.example.bookblog.entity.VisitResolution;
+import com.example.bookblog.exception.ValidationException;
+import com.example.bookblog.repository.VisitBucketRepository;
+import jakarta.annotation.PreDestroy;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Per-url visit counts over time, held in ring buffers of the most recent minute, hour and day
+// buckets. A rollup adds what the hour and day buckets gained since the previous one to
+// visit_buckets under the url's id; a range query reads stored rows only for buckets the rings do
+// not fully cover.
+@Component
+public class VisitHistory {
+    private static final Logger logger = LoggerFactory.getLogger(VisitHistory.class);
+    private static final VisitResolution[] RESOLUTIONS = VisitResolution.values();
+    private static final int MAX_POINTS = 5000;
+
+    private final VisitBucketRepository bucketRepo;
+    private final VisitUrlRegistry urlRegistry;
+    private final Clock clock;
+    private final ConcurrentHashMap<String, Series> series = new ConcurrentHashMap<>();
+    // Queries that combine stored rows with the rings hold the read lock, so a rollup cannot move
+    // counts from the rings into the table between the two reads
+    private final ReentrantReadWriteLock rollupLock = new ReentrantReadWriteLock();
+
+    @Autowired
+    public VisitHistory(VisitBucketRepository bucketRepo, VisitUrlRegistry urlRegistry) {
+        this(bucketRepo, urlRegistry, Clock.systemDefaultZone());
+    }
+
+    public VisitHistory(VisitBucketRepository bucketRepo, VisitUrlRegistry urlRegistry,
+                        Clock clock) {
+        this.bucketRepo = bucketRepo;
+        this.urlRegistry = urlRegistry;
+        this.clock = clock;
+    }
+
+    public void record(String url) {
+        record(url, null);
+    }
+
+    // Counts the visit at the given time; null or future times count as now
+    public void record(String url, LocalDateTime time) {
+        LocalDateTime now = LocalDateTime.now(clock);
+        LocalDateTime at = time == null || time.isAfter(now) ? now : time;
+        while (true) {
+            Series urlSeries = series.get(url);
+            if (urlSeries == null) {
+                urlSeries = series.computeIfAbsent(url, key -> new Series(key, now));
+            }
+            if (urlSeries.record(at)) {
+                return;
+            }
+            // Dropped by a rollup in the meantime, the next lookup creates a fresh one
+        }
+    }
+
+    // Visits per bucket of [from, to), both rounded down to the resolution
+    public List<VisitSeriesDto.Point> range(String url, VisitResolution resolution,
+                                            LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            throw new ValidationException("'from' must be before 'to'");
+        }
+        long first = resolution.bucketOf(from);
+        long last = resolution.bucketOf(to.minusNanos(1));
+        if (last - first >= MAX_POINTS) {
+            throw new ValidationException("Range must not exceed " + MAX_POINTS + " points");
+        }
+        long current = resolution.bucketOf(LocalDateTime.now(clock));
+        if (!resolution.isPersisted() && first <= current - resolution.getSlots()) {
+            throw new ValidationException("Minute history covers the last "
+                    + resolution.getSlots() + " minutes only");
+        }
+
+        Series urlSeries = series.get(url);
+        // Buckets from here on are counted by the ring alone
+        long covered = urlSeries == null ? current + 1 : urlSeries.coveredFrom(resolution, current);
+        long storedLast = Math.min(last, covered - 1);
+        boolean readStored = resolution.isPersisted() && first <= storedLast;
+        long[] counts = new long[(int) (last - first + 1)];
+        if (readStored) {
+            rollupLock.readLock().lock();
+        }
+        try {
+            // A url without an id has never been rolled up
+            Optional<Long> urlId = readStored ? urlRegistry.find(url) : Optional.empty();
+            if (urlId.isPresent()) {
+                List<VisitBucket> stored = bucketRepo.findRange(urlId.get(), resolution,
+                        resolution.startOf(first), resolution.startOf(storedLast + 1));
+                for (VisitBucket bucket : stored) {
+                    counts[(int) (resolution.bucketOf(bucket.getBucketStart()) - first)]
+                            += bucket.getCount();
+                }
+            }
+            if (urlSeries != null) {
+                urlSeries.addTo(resolution, first, covered, counts);
+            }
+        } finally {
+            if (readStored) {
+                rollupLock.readLock().unlock();
+            }
+        }
+
+        List<VisitSeriesDto.Point> points = new ArrayList<>(counts.length);
+        for (int i = 0; i < counts.length; i++) {
+            points.add(new VisitSeriesDto.Point(resolution.startOf(first + i), counts[i]));
+        }
+        return points;
+    }
+
+    @Scheduled(fixedDelayString = "${visits.history.rollup-interval:1m}")
+    public synchronized void rollup() {
+        List<Rolled> rolled = new ArrayList<>();
+        for (Series urlSeries : series.values()) {
+            urlSeries.collect(rolled);
+        }
+        try {
+            // Ids are resolved before taking the lock, so range queries wait only for the write
+            Map<String, Long> ids = rolled.isEmpty() ? Map.of() : urlRegistry.resolveAll(
+                    rolled.stream().map(bucket -> bucket.series().url).distinct().toList());
+            List<VisitBucket> deltas = new ArrayList<>(rolled.size());
+            for (Rolled bucket : rolled) {
+                // Buckets of a url the registry rejected are dropped with it
+                Long id = ids.get(bucket.series().url);
+                if (id != null) {
+                    deltas.add(bucket.toBucket(id));
+                }
+            }
+            rollupLock.writeLock().lock();
+            try {
+                if (!deltas.isEmpty()) {
+                    bucketRepo.addCounts(deltas);
+                }
+                for (Rolled bucket : rolled) {
+                    bucket.markPersisted();
+                }
+            } finally {
+                rollupLock.writeLock().unlock();
+            }
+        } catch (DataAccessException e) {
+            // Nothing is marked as persisted, so the next rollup adds these counts again
+            logger.warn("Rolling up {} visit buckets failed, will retry", rolled.size(), e);
+            return;
+        }
+
+        long minute = VisitResolution.MINUTE.bucketOf(LocalDateTime.now(clock));
+        int dropped = 0;
+        for (Series urlSeries : series.values()) {
+            if (urlSeries.retireIfIdle(minute)) {
+                series.remove(urlSeries.url, urlSeries);
+                dropped++;
+            }
+        }
+        logger.debug("Rolled up {} visit buckets, dropped {} idle urls", rolled.size(), dropped);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rollup();
+    }
+
+    private static final class Series {
+        final String url;
+        final Ring[] rings = new Ring[RESOLUTIONS.length];
+        // Set once a rollup has dropped the series from the map; guarded by this
+        boolean retired;
+
+        Series(String url, LocalDateTime created) {
+            this.url = url;
+            for (VisitResolution resolution : RESOLUTIONS) {
+                rings[resolution.ordinal()] = new Ring(resolution, resolution.bucketOf(created));
+            }
+        }
+
+        synchronized boolean record(LocalDateTime time) {
+            if (retired) {
+                return false;
+            }
+            for (Ring ring : rings) {
+                ring.add(ring.resolution.bucketOf(time));
+            }
+            return true;
+        }
+
+        long coveredFrom(VisitResolution resolution, long current) {
+            // The creation bucket may also hold visits counted before this series existed
+            return Math.max(rings[resolution.ordinal()].createdIn + 1,
+                    current - resolution.getSlots() + 1);
+        }
+
+        // Adds ring totals from covered on, and counts not yet rolled up before that
+        synchronized void addTo(VisitResolution resolution, long first, long covered,
+                                long[] counts) {
+            Ring ring = rings[resolution.ordinal()];
+            for (int i = 0; i < counts.length; i++) {
+                long bucket = first + i;
+                int slot = ring.slotOf(bucket);
+                if (ring.buckets[slot] == bucket) {
+                    counts[i] += bucket >= covered
+                            ? ring.counts[slot] : ring.counts[slot] - ring.persisted[slot];
+                }
+            }
+        }
+
+        synchronized void collect(List<Rolled> rolled) {
+            for (Ring ring : rings) {
+                if (!ring.resolution.isPersisted()) {
+                    continue;
+                }
+                for (int slot = 0; slot < ring.buckets.length; slot++) {
+                    long delta = ring.counts[slot] - ring.persisted[slot];
+                    if (delta > 0) {
+                        rolled.add(new Rolled(this, ring, slot, ring.buckets[slot],
+                                ring.counts[slot], delta));
+                    }
+                }
+            }
+        }
+
+        // Idle once the minute ring is empty and everything else is stored
+        synchronized boolean retireIfIdle(long minute) {
+            Ring minutes = rings[VisitResolution.MINUTE.ordinal()];
+            if (minutes.newest > minute - minutes.buckets.length) {
+                return false;
+            }
+            for (Ring ring : rings) {
+                if (ring.resolution.isPersisted() && ring.hasUnpersisted()) {
+                    return false;
+                }
+            }
+            retired = true;
+            return true;
+        }
+    }
+
+    // Guarded by the owning Series
+    private static final class Ring {
+        final VisitResolution resolution;
+        final long createdIn;
+        final long[] buckets;
+        final long[] counts;
+        final long[] persisted;
+        long newest = Long.MIN_VALUE;
+
+        Ring(VisitResolution resolution, long createdIn) {
+            this.resolution = resolution;
+            this.createdIn = createdIn;
+            this.buckets = new long[resolution.getSlots()];
+            this.counts = new long[buckets.length];
+            this.persisted = new long[buckets.length];
+            Arrays.fill(buckets, Long.MIN_VALUE);
+        }
+
+        void add(long bucket) {
+            if (newest != Long.MIN_VALUE && bucket <= newest - buckets.length) {
+                // Behind the ring after a clock step back; there is no slot left for it
+                return;
+            }
+            int slot = slotOf(bucket);
+            if (buckets[slot] != bucket) {
+                // Reuses the slot of the oldest bucket, which earlier rollups have stored
+                buckets[slot] = bucket;
+                counts[slot] = 0;
+                persisted[slot] = 0;
+            }
+            counts[slot]++;
+            newest = Math.max(newest, bucket);
+        }
+
+        int slotOf(long bucket) {
+            return (int) Math.floorMod(bucket, (long) buckets.length);
+        }
+
+        boolean hasUnpersisted() {
+            for (int slot = 0; slot < buckets.length; slot++) {
+                if (counts[slot] > persisted[slot]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    // A bucket delta handed to the table, marked as stored once the write succeeds
+    private record Rolled(Series series, Ring ring, int slot, long bucket, long total,
+                          long delta) {
+        VisitBucket toBucket(long urlId) {
+            return new VisitBucket(urlId, ring.resolution, ring.resolution.startOf(bucket), delta);
+        }
+
+        void markPersisted() {
+            synchronized (series) {
+                if (ring.buckets[slot] == bucket) {
+                    ring.persisted[slot] = total;
+                }
+            }
+        }
+    }
+}
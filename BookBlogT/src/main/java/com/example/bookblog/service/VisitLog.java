@@ -0,0 +1,395 @@
+package com.example.bookblog.service;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+// Local append-only log of visits that are counted in memory but not yet in the database.
+// A background thread fsyncs appends in groups, at most once per sync interval, and a visit is
+// acknowledged once its group is durable. Each flush closes the current segment; closed segments
+// are deleted once the database holds their visits, and replayed on startup otherwise. Appends are
+// rejected while too many bytes wait for a sync, and for a backoff period after a sync failed.
+//
+// Segment layout: frames of [payload length, CRC32 of payload, payload], where the payload is a
+// run of [unsigned short url length, url UTF-8 bytes] records. A torn frame ends the segment.
+@Component
+public class VisitLog {
+    private static final Logger logger = LoggerFactory.getLogger(VisitLog.class);
+    private static final String SEGMENT_PREFIX = "visits-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String LOG_ID_FILE = "log-id";
+    private static final int FRAME_HEADER = 8;
+    private static final int INITIAL_BUFFER = 64 * 1024;
+    private static final int MAX_URL_BYTES = 0xFFFF;
+
+    private final Path directory;
+    private final long syncIntervalNanos;
+    private final long maxPendingBytes;
+    private final long failureBackoffNanos;
+    private final String logId;
+    private final long recoveredThrough;
+
+    // Guards pending, group, closed, failure and retryAt
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final Condition appended = appendLock.newCondition();
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER);
+    private CompletableFuture<Void> group = new CompletableFuture<>();
+    private boolean closed;
+    // Why the last sync failed, until one succeeds; appends fail fast until retryAt
+    private Exception failure;
+    private long retryAt;
+
+    // Guards the segment file; taken before appendLock when both are needed
+    private final ReentrantLock ioLock = new ReentrantLock();
+    private ByteBuffer spare = ByteBuffer.allocate(INITIAL_BUFFER);
+    private FileChannel channel;
+    private long segment;
+    private long segmentBytes;
+
+    private final Thread syncThread;
+
+    public VisitLog(String directory, Duration syncInterval) {
+        this(directory, syncInterval, DataSize.ofMegabytes(16), Duration.ofSeconds(1));
+    }
+
+    @Autowired
+    public VisitLog(@Value("${visits.log.directory:visit-log}") String directory,
+                    @Value("${visits.log.sync-interval:5ms}") Duration syncInterval,
+                    @Value("${visits.log.max-pending:16MB}") DataSize maxPending,
+                    @Value("${visits.log.failure-backoff:1s}") Duration failureBackoff) {
+        this.directory = Path.of(directory);
+        this.syncIntervalNanos = syncInterval.toNanos();
+        this.maxPendingBytes = maxPending.toBytes();
+        this.failureBackoffNanos = failureBackoff.toNanos();
+        try {
+            Files.createDirectories(this.directory);
+            this.logId = readOrCreateLogId();
+            this.recoveredThrough = segments().stream().mapToLong(Long::longValue).max().orElse(0);
+            this.segment = recoveredThrough + 1;
+            this.channel = openSegment(segment);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open visit log in " + directory, e);
+        }
+        this.syncThread = new Thread(this::syncLoop, "visit-log-sync");
+        this.syncThread.setDaemon(true);
+        this.syncThread.start();
+    }
+
+    // Identifies this log in the checkpoint table, so several nodes can share the database
+    public String getLogId() {
+        return logId;
+    }
+
+    // Segments up to this one were written before the current start and may need a replay
+    public long getRecoveredThrough() {
+        return recoveredThrough;
+    }
+
+    // Completes once the visit is on disk
+    public CompletableFuture<Void> append(String url) {
+        return appendAll(List.of(url));
+    }
+
+    // Appends all visits to the same group, so they become durable together
+    public CompletableFuture<Void> appendAll(Collection<String> urls) {
+        List<byte[]> records = new ArrayList<>(urls.size());
+        int size = 0;
+        for (String url : urls) {
+            byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > MAX_URL_BYTES) {
+                throw new IllegalArgumentException("URL is too long to be logged");
+            }
+            records.add(bytes);
+            size += 2 + bytes.length;
+        }
+        appendLock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Visit log is closed");
+            }
+            if (failure != null && System.nanoTime() - retryAt < 0) {
+                throw new IllegalStateException("Visit log cannot be written", failure);
+            }
+            if (pending.position() + (long) size > maxPendingBytes) {
+                throw new IllegalStateException("Visit log is full, "
+                        + pending.position() + " bytes are waiting for a sync");
+            }
+            if (pending.remaining() < size) {
+                pending = grow(pending, size);
+            }
+            boolean wasEmpty = pending.position() == 0;
+            for (byte[] bytes : records) {
+                pending.putShort((short) bytes.length).put(bytes);
+            }
+            if (wasEmpty && size > 0) {
+                appended.signal();
+            }
+            return group;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // Makes everything appended so far durable and starts a new segment. Returns the id of the
+    // newest closed segment; without new visits the current segment is kept
+    public long rotate() {
+        ioLock.lock();
+        try {
+            sync();
+            if (segmentBytes == 0) {
+                return segment - 1;
+            }
+            channel.close();
+            long closedSegment = segment;
+            segment++;
+            segmentBytes = 0;
+            channel = openSegment(segment);
+            return closedSegment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot rotate visit log", e);
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    // Counts the visits of closed segments in (after, through], stopping each at a torn frame
+    public Map<String, Long> replay(long after, long through) {
+        Map<String, Long> visits = new HashMap<>();
+        for (long id : segments()) {
+            if (id > after && id <= through) {
+                replaySegment(id, visits);
+            }
+        }
+        return visits;
+    }
+
+    public void deleteThrough(long through) {
+        for (long id : segments()) {
+            if (id <= through && id != segment) {
+                try {
+                    Files.deleteIfExists(segmentPath(id));
+                } catch (IOException e) {
+                    logger.warn("Cannot delete visit log segment {}", id, e);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        ioLock.lock();
+        try {
+            sync();
+            appendLock.lock();
+            try {
+                closed = true;
+                appended.signal();
+            } finally {
+                appendLock.unlock();
+            }
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Cannot close visit log segment {}", segment, e);
+        } finally {
+            ioLock.unlock();
+        }
+        syncThread.interrupt();
+    }
+
+    private void syncLoop() {
+        long lastSync = System.nanoTime();
+        while (awaitAppends()) {
+            long wait = lastSync + syncIntervalNanos - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            ioLock.lock();
+            try {
+                sync();
+            } catch (IOException | RuntimeException e) {
+                logger.error("Cannot write visit log segment {}", segment, e);
+            } finally {
+                ioLock.unlock();
+            }
+            lastSync = System.nanoTime();
+        }
+    }
+
+    private boolean awaitAppends() {
+        appendLock.lock();
+        try {
+            while (pending.position() == 0 && !closed) {
+                appended.awaitUninterruptibly();
+            }
+            return !closed;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // Writes the pending group as one frame and fsyncs it; caller holds ioLock
+    private void sync() throws IOException {
+        ByteBuffer full;
+        CompletableFuture<Void> done;
+        appendLock.lock();
+        try {
+            if (pending.position() == 0 || closed) {
+                return;
+            }
+            full = pending;
+            pending = spare;
+            done = group;
+            group = new CompletableFuture<>();
+        } finally {
+            appendLock.unlock();
+        }
+        full.flip();
+        try {
+            CRC32 crc = new CRC32();
+            crc.update(full.duplicate());
+            ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER)
+                    .putInt(full.remaining())
+                    .putInt((int) crc.getValue())
+                    .flip();
+            long frameBytes = header.remaining() + full.remaining();
+            ByteBuffer[] frame = {header, full};
+            while (header.hasRemaining() || full.hasRemaining()) {
+                channel.write(frame);
+            }
+            channel.force(false);
+            segmentBytes += frameBytes;
+            recordSync(null);
+            done.complete(null);
+        } catch (IOException | RuntimeException e) {
+            recordSync(e);
+            done.completeExceptionally(e);
+            // Cut off a partial frame, so later frames stay readable
+            try {
+                channel.truncate(segmentBytes);
+                channel.position(segmentBytes);
+            } catch (IOException ignored) {
+                // Replay stops at the partial frame instead
+            }
+            throw e;
+        } finally {
+            spare = full.clear();
+        }
+    }
+
+    private void recordSync(Exception error) {
+        appendLock.lock();
+        try {
+            failure = error;
+            retryAt = System.nanoTime() + failureBackoffNanos;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void replaySegment(long id, Map<String, Long> visits) {
+        Path path = segmentPath(id);
+        ByteBuffer buffer;
+        try {
+            buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        } catch (IOException e) {
+            logger.warn("Cannot read visit log segment {}", path, e);
+            return;
+        }
+        int frames = 0;
+        while (buffer.remaining() >= FRAME_HEADER) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                break;
+            }
+            ByteBuffer payload = buffer.slice(buffer.position(), length);
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            while (payload.remaining() >= 2) {
+                int urlLength = Short.toUnsignedInt(payload.getShort());
+                byte[] url = new byte[urlLength];
+                payload.get(url);
+                visits.merge(new String(url, StandardCharsets.UTF_8), 1L, Long::sum);
+            }
+            buffer.position(buffer.position() + length);
+            frames++;
+        }
+        if (buffer.hasRemaining()) {
+            logger.warn("Visit log segment {} ends with a torn frame after {} frames, "
+                    + "dropping {} bytes", path, frames, buffer.remaining());
+        }
+    }
+
+    private List<Long> segments() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX)
+                            && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list visit log segments", e);
+        }
+    }
+
+    private FileChannel openSegment(long id) throws IOException {
+        FileChannel opened = FileChannel.open(segmentPath(id), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        // Makes the new file itself survive a crash; not supported on every platform
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            logger.debug("Cannot fsync visit log directory {}", directory);
+        }
+        return opened;
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+
+    private String readOrCreateLogId() throws IOException {
+        Path file = directory.resolve(LOG_ID_FILE);
+        if (Files.exists(file)) {
+            return Files.readString(file).trim();
+        }
+        String id = UUID.randomUUID().toString();
+        Files.writeString(file, id);
+        return id;
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int needed) {
+        int capacity = Math.max(buffer.capacity() * 2, buffer.position() + needed);
+        return ByteBuffer.allocate(capacity).put(buffer.flip());
+    }
+}
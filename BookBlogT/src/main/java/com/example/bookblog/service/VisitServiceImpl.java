@@ -1,45 +1,441 @@
 package com.example.bookblog.service;
 
+import com.example.bookblog.dto.TopUrlDto;
+import com.example.bookblog.dto.VisitEventDto;
+import com.example.bookblog.dto.VisitSeriesDto;
 import com.example.bookblog.dto.VisitStatsDto;
 import com.example.bookblog.entity.Visit;
+import com.example.bookblog.entity.VisitLogCheckpoint;
+import com.example.bookblog.entity.VisitResolution;
+import com.example.bookblog.exception.ValidationException;
+import com.example.bookblog.repository.VisitLogCheckpointRepository;
 import com.example.bookblog.repository.VisitRepository;
 import com.example.bookblog.repository.VisitService;
-import jakarta.transaction.Transactional;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
 
+// Visits are counted in memory and written behind: every flush adds what accumulated since the
+// previous one to visit_counts in a single batched upsert. A visit is acknowledged only once
+// it is in the local VisitLog, and taken back out of the counters if logging it fails; each flush
+// stores the last log segment it covers in the same transaction, so after a crash exactly the
+// later segments are replayed on startup. History, visitors and top urls see only logged visits.
+// A batch that fails for good, not just for now, is written again row by row, and only the rows
+// the table rejects are dropped.
+// Visitor ids go into a HyperLogLog per url, merged into the stored sketch by a slower flush of
+// their own; only sketches a new visitor changed are written, and each stays merged in memory.
+// The most visited urls are tracked in a Space-Saving summary seeded from the table on startup.
+// Urls are canonicalized on the way in and stored under the ids VisitUrlRegistry assigns them.
 @Service
+@DependsOn("legacyVisitImport")
 public class VisitServiceImpl implements VisitService {
+    private static final Logger logger = LoggerFactory.getLogger(VisitServiceImpl.class);
+    // Flushes without visits before a url's counter is dropped from memory
+    private static final int IDLE_FLUSHES = 120;
+    private static final int TOP_STRIPES = 16;
+    private static final int TOP_CAPACITY_PER_STRIPE = 64;
+    private static final int MAX_TOP = 100;
+
     private final VisitRepository visitRepo;
-    private final Object lock = new Object();
+    private final VisitLogCheckpointRepository checkpointRepo;
+    private final VisitLog visitLog;
+    private final VisitHistory visitHistory;
+    private final VisitUrlRegistry urlRegistry;
+    private final TransactionTemplate transaction;
+    private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final HeavyHitters topUrls = new HeavyHitters(TOP_STRIPES, TOP_CAPACITY_PER_STRIPE);
+    // Visits are logged and counted under the read lock, a flush rotates the log and reads the
+    // counters under the write lock, so a closed segment holds exactly the visits flushed with it
+    private final ReentrantReadWriteLock flushBarrier = new ReentrantReadWriteLock();
 
     @Autowired
-    public VisitServiceImpl(VisitRepository visitRepo) {
+    public VisitServiceImpl(VisitRepository visitRepo,
+                            VisitLogCheckpointRepository checkpointRepo,
+                            VisitLog visitLog,
+                            VisitHistory visitHistory,
+                            VisitUrlRegistry urlRegistry,
+                            PlatformTransactionManager transactionManager) {
         this.visitRepo = visitRepo;
+        this.checkpointRepo = checkpointRepo;
+        this.visitLog = visitLog;
+        this.visitHistory = visitHistory;
+        this.urlRegistry = urlRegistry;
+        this.transaction = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void recover() {
+        replayLog();
+        // Sorts the whole table once; visits after this point are counted in memory
+        for (VisitRepository.UrlCount top :
+                visitRepo.findTopCounts(PageRequest.of(0, topUrls.capacity()))) {
+            topUrls.offer(top.getUrl(), top.getCount());
+        }
+    }
+
+    // Writes the segments left by the previous run that its last flush did not cover
+    private void replayLog() {
+        long through = visitLog.getRecoveredThrough();
+        if (through == 0) {
+            return;
+        }
+        String logId = visitLog.getLogId();
+        long checkpoint = checkpointRepo.findById(logId)
+                .map(VisitLogCheckpoint::getSegment)
+                .orElse(0L);
+        if (through > checkpoint) {
+            // Logs written before urls were canonicalized hold them as they came in
+            Map<String, Long> visits = new HashMap<>();
+            visitLog.replay(checkpoint, through).forEach((url, views) ->
+                    visits.merge(UrlCanonicalizer.canonicalize(url), views, Long::sum));
+            Map<Long, Long> byId = byId(visits, urlRegistry.resolveAll(visits.keySet()));
+            transaction.executeWithoutResult(status -> {
+                if (!byId.isEmpty()) {
+                    visitRepo.addVisits(byId, LocalDateTime.now());
+                }
+                checkpointRepo.save(new VisitLogCheckpoint(logId, through));
+            });
+            logger.info("Replayed visits of {} urls from visit log segments {} to {}",
+                    visits.size(), checkpoint + 1, through);
+        }
+        visitLog.deleteThrough(through);
+    }
+
+    @Override
+    public void recordVisit(String rawUrl, String visitorId) {
+        String url = storableUrl(rawUrl);
+        CompletableFuture<Void> durable;
+        Counter counter;
+        flushBarrier.readLock().lock();
+        try {
+            durable = visitLog.append(url);
+            counter = counter(url);
+            counter.visits.increment();
+        } finally {
+            flushBarrier.readLock().unlock();
+        }
+        awaitLogged(durable, () -> counter.visits.decrement());
+        if (visitorId != null) {
+            counter.offerVisitor(visitorId);
+        }
+        visitHistory.record(url, null);
+        topUrls.offer(url);
     }
 
+    // One log group and one counter update per url, however many views the batch holds
     @Override
-    @Transactional
-    public void recordVisit(String url) {
-        synchronized (lock) {
-            visitRepo.incrementCount(url, LocalDateTime.now());
-            if (!visitRepo.existsByUrl(url)) {
-                Visit newVisit = new Visit(url);
-                newVisit.setCount(1);
-                visitRepo.save(newVisit);
+    public void recordVisits(List<VisitEventDto> visits, String defaultVisitorId) {
+        if (visits.size() > MAX_BATCH_SIZE) {
+            throw new ValidationException("Batch must not exceed " + MAX_BATCH_SIZE + " visits");
+        }
+        List<String> urls = new ArrayList<>(visits.size());
+        Map<String, Long> perUrl = new HashMap<>();
+        for (VisitEventDto visit : visits) {
+            if (visit == null) {
+                throw new ValidationException("Every visit must have a url");
+            }
+            String url = storableUrl(visit.getUrl());
+            urls.add(url);
+            perUrl.merge(url, 1L, Long::sum);
+        }
+        if (perUrl.isEmpty()) {
+            return;
+        }
+        CompletableFuture<Void> durable;
+        Map<String, Counter> counted = new HashMap<>();
+        flushBarrier.readLock().lock();
+        try {
+            durable = visitLog.appendAll(urls);
+            perUrl.forEach((url, views) -> {
+                Counter counter = counter(url);
+                counter.visits.add(views);
+                counted.put(url, counter);
+            });
+        } finally {
+            flushBarrier.readLock().unlock();
+        }
+        awaitLogged(durable, () -> perUrl.forEach((url, views) ->
+                counted.get(url).visits.add(-views)));
+        for (int i = 0; i < visits.size(); i++) {
+            String visitorId = visits.get(i).getVisitorId() != null
+                    ? visits.get(i).getVisitorId() : defaultVisitorId;
+            if (visitorId != null) {
+                counted.get(urls.get(i)).offerVisitor(visitorId);
             }
+            visitHistory.record(urls.get(i), visits.get(i).getTimestamp());
         }
+        perUrl.forEach(topUrls::offer);
     }
 
     @Override
-    public VisitStatsDto getVisitStats(String url) {
-        Optional<Visit> visit = visitRepo.findByUrl(url);
-        return visit.map(v -> new VisitStatsDto(
-                        v.getUrl(),
-                        v.getCount(),
-                        v.getLastUpdated()))
-                .orElse(new VisitStatsDto(url, 0, null));
-    }
-}
\ No newline at end of file
+    public VisitStatsDto getVisitStats(String rawUrl) {
+        String url = UrlCanonicalizer.canonicalize(rawUrl);
+        Optional<Visit> visit = url == null
+                ? Optional.empty() : urlRegistry.find(url).flatMap(visitRepo::findById);
+        long pending = pendingVisits(url);
+        HyperLogLog visitors =
+                HyperLogLog.fromBytes(visit.map(Visit::getVisitorSketch).orElse(null));
+        Counter counter = url == null ? null : counters.get(url);
+        if (counter != null) {
+            visitors.merge(counter.visitors);
+        }
+        long unique = visitors.estimate();
+        long error = Math.round(2 * HyperLogLog.STANDARD_ERROR * unique);
+        if (visit.isEmpty()) {
+            return new VisitStatsDto(url, (int) pending,
+                    pending > 0 ? LocalDateTime.now() : null, unique, error);
+        }
+        Visit v = visit.get();
+        return new VisitStatsDto(url, v.getCount() + (int) pending,
+                pending > 0 ? LocalDateTime.now() : v.getLastUpdated(), unique, error);
+    }
+
+    @Override
+    public List<TopUrlDto> getTopUrls(int k) {
+        if (k < 1 || k > MAX_TOP) {
+            throw new ValidationException("k must be between 1 and " + MAX_TOP);
+        }
+        return topUrls.top(k).stream()
+                .map(hitter -> new TopUrlDto(hitter.item(), hitter.count(), hitter.error()))
+                .toList();
+    }
+
+    @Override
+    public VisitSeriesDto getVisitSeries(String rawUrl, LocalDateTime from, LocalDateTime to,
+                                         String step) {
+        String url = UrlCanonicalizer.canonicalize(rawUrl);
+        VisitResolution resolution;
+        try {
+            resolution = VisitResolution.valueOf(step.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Step must be one of minute, hour, day");
+        }
+        return new VisitSeriesDto(url, resolution.name().toLowerCase(Locale.ROOT),
+                visitHistory.range(url, resolution, from, to));
+    }
+
+    @Scheduled(fixedDelayString = "${visits.flush-interval:500ms}")
+    public synchronized void flush() {
+        Map<String, Long> deltas = new HashMap<>();
+        Map<Counter, Long> flushedTotals = new HashMap<>();
+        long segment;
+        flushBarrier.writeLock().lock();
+        try {
+            segment = visitLog.rotate();
+            for (Counter counter : counters.values()) {
+                if (!collect(counter, deltas, flushedTotals)
+                        && ++counter.idleFlushes >= IDLE_FLUSHES && !counter.visitorsChanged) {
+                    counters.remove(counter.url, counter);
+                }
+            }
+        } finally {
+            flushBarrier.writeLock().unlock();
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+        try {
+            // Ids of new urls are registered ahead of the flush transaction and kept if it fails
+            Map<String, Long> ids = urlRegistry.resolveAll(deltas.keySet());
+            Map<Long, Long> perId = byId(deltas, ids);
+            LocalDateTime now = LocalDateTime.now();
+            try {
+                transaction.executeWithoutResult(status -> {
+                    visitRepo.addVisits(perId, now);
+                    checkpointRepo.save(new VisitLogCheckpoint(visitLog.getLogId(), segment));
+                });
+            } catch (NonTransientDataAccessException e) {
+                // Retrying the same batch would fail the same way, so the rows are written one by
+                // one to find the ones the table rejects
+                logger.warn("Flushing {} visit counters in one batch failed, writing them one by"
+                        + " one", deltas.size(), e);
+                flushEach(perId, now, segment);
+            }
+        } catch (DataAccessException | TransactionException e) {
+            // Nothing is marked as flushed, so the next flush writes these visits again
+            logger.warn("Flushing {} visit counters failed, will retry", deltas.size(), e);
+            return;
+        }
+        flushedTotals.forEach((counter, total) -> {
+            counter.flushed = total;
+            counter.idleFlushes = 0;
+        });
+        visitLog.deleteThrough(segment);
+        logger.debug("Flushed visits of {} urls through visit log segment {}",
+                deltas.size(), segment);
+    }
+
+    // Merging is idempotent, so a sketch is merged whole each time and never reset. Urls whose
+    // counts no flush has written yet have no row to lock and wait for the next run
+    @Scheduled(fixedDelayString = "${visits.visitors.flush-interval:1m}")
+    public synchronized void flushVisitors() {
+        List<Counter> changed = new ArrayList<>();
+        for (Counter counter : counters.values()) {
+            if (counter.visitorsChanged) {
+                // Cleared before the sketch is read, so a visitor added meanwhile marks it again
+                counter.visitorsChanged = false;
+                changed.add(counter);
+            }
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+        try {
+            Map<String, Long> ids = urlRegistry.resolveAll(
+                    changed.stream().map(counter -> counter.url).toList());
+            Map<Long, Counter> byId = new HashMap<>();
+            changed.stream().filter(counter -> ids.containsKey(counter.url))
+                    .forEach(counter -> byId.put(ids.get(counter.url), counter));
+            transaction.executeWithoutResult(status -> {
+                Map<Long, byte[]> stored = visitRepo.lockVisitorSketches(byId.keySet());
+                Map<Long, byte[]> merged = new HashMap<>();
+                byId.forEach((id, counter) -> {
+                    if (!stored.containsKey(id)) {
+                        counter.visitorsChanged = true;
+                        return;
+                    }
+                    HyperLogLog total = HyperLogLog.fromBytes(stored.get(id));
+                    total.merge(counter.visitors);
+                    merged.put(id, total.toBytes());
+                });
+                if (!merged.isEmpty()) {
+                    visitRepo.saveVisitorSketches(merged);
+                }
+            });
+        } catch (DataAccessException | TransactionException e) {
+            changed.forEach(counter -> counter.visitorsChanged = true);
+            logger.warn("Flushing visitors of {} urls failed, will retry", changed.size(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        flushVisitors();
+    }
+
+    // Each row gets a savepoint, so a rejected one is rolled back alone and its visits are dropped,
+    // while the others still commit together with the checkpoint
+    private void flushEach(Map<Long, Long> perId, LocalDateTime now, long segment) {
+        transaction.executeWithoutResult(status -> {
+            perId.forEach((id, views) -> {
+                Object savepoint = status.createSavepoint();
+                try {
+                    visitRepo.addVisits(Map.of(id, views), now);
+                    status.releaseSavepoint(savepoint);
+                } catch (NonTransientDataAccessException e) {
+                    status.rollbackToSavepoint(savepoint);
+                    logger.error("Dropping {} visits of url id {}, the table rejects them",
+                            views, id, e);
+                }
+            });
+            checkpointRepo.save(new VisitLogCheckpoint(visitLog.getLogId(), segment));
+        });
+    }
+
+    // Urls the registry could not resolve are left out
+    private static Map<Long, Long> byId(Map<String, Long> perUrl, Map<String, Long> ids) {
+        Map<Long, Long> byId = new HashMap<>();
+        perUrl.forEach((url, views) -> {
+            Long id = ids.get(url);
+            if (id != null) {
+                byId.put(id, views);
+            }
+        });
+        return byId;
+    }
+
+    private Counter counter(String url) {
+        Counter counter = counters.get(url);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(url, Counter::new);
+        }
+        return counter;
+    }
+
+    // Checked before a visit is logged, so a url the visit_urls column cannot hold never
+    // reaches a flush
+    private static String storableUrl(String rawUrl) {
+        if (rawUrl == null || rawUrl.isBlank()) {
+            throw new ValidationException("Every visit must have a url");
+        }
+        String url = UrlCanonicalizer.canonicalize(rawUrl);
+        if (url.getBytes(StandardCharsets.UTF_8).length > MAX_URL_BYTES) {
+            throw new ValidationException("URL must not exceed " + MAX_URL_BYTES + " bytes");
+        }
+        return url;
+    }
+
+    // A rolled back visit a flush has already written leaves a negative delta for the next one
+    private static void awaitLogged(CompletableFuture<Void> durable, Runnable rollback) {
+        try {
+            durable.join();
+        } catch (CompletionException e) {
+            rollback.run();
+            throw new IllegalStateException("Visit could not be logged", e.getCause());
+        }
+    }
+
+    private static boolean collect(Counter counter, Map<String, Long> deltas,
+                                   Map<Counter, Long> flushedTotals) {
+        long total = counter.visits.sum();
+        long delta = total - counter.flushed;
+        if (delta == 0) {
+            return false;
+        }
+        deltas.merge(counter.url, delta, Long::sum);
+        flushedTotals.put(counter, total);
+        return true;
+    }
+
+    private long pendingVisits(String url) {
+        Counter counter = url == null ? null : counters.get(url);
+        return counter == null ? 0 : Math.max(0, counter.visits.sum() - counter.flushed);
+    }
+
+    private static final class Counter {
+        final String url;
+        final LongAdder visits = new LongAdder();
+        // Written by the flushing thread only
+        volatile long flushed;
+        int idleFlushes;
+        // Every visitor of the url since the counter was created; sparse while there are few
+        final HyperLogLog visitors = new HyperLogLog();
+        // Set when a visitor changed the sketch since flushVisitors last copied it
+        volatile boolean visitorsChanged;
+
+        Counter(String url) {
+            this.url = url;
+        }
+
+        void offerVisitor(String visitorId) {
+            if (visitors.offer(visitorId)) {
+                visitorsChanged = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.bookblog.service;
+
+import com.example.bookblog.cache.InMemoryCache;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// Maps canonical urls to the 64-bit ids that key visit_counts and visit_buckets. An id is the
+// leading 8 bytes of the SHA-256 of the url; when a different url already holds it, the next probe
+// hashes the url with a '#' suffix, which no canonical url contains. The url that claims an id
+// first keeps it, so nodes registering the same url concurrently end up with the same id. A url
+// the table rejects for good is left out of resolveAll, so it cannot hold up the other urls of
+// a flush; its visits are dropped with a warning.
+@Component
+public class VisitUrlRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(VisitUrlRegistry.class);
+    private static final int BATCH_SIZE = 1000;
+    private static final int MAX_PROBES = 8;
+    private static final String INSERT = "INSERT INTO visit_urls (id, url) VALUES (?, ?)";
+    // Leaves the row alone when either the id or the url is already taken
+    private static final String INSERT_NEW = "INSERT INTO visit_urls (id, url) VALUES (?, ?) "
+            + "ON DUPLICATE KEY UPDATE id = id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final InMemoryCache<String, Long> ids;
+
+    public VisitUrlRegistry(JdbcTemplate jdbcTemplate, InMemoryCache<String, Long> visitUrlCache) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ids = visitUrlCache;
+    }
+
+    public static long idOf(String url, int probe) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(
+                    (probe == 0 ? url : url + "#" + probe).getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // The id of a registered url, without registering it
+    public Optional<Long> find(String url) {
+        Optional<Long> cached = ids.get(url);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        Map<String, Long> found = new HashMap<>();
+        select(List.of(url), found);
+        return Optional.ofNullable(found.get(url));
+    }
+
+    // Ids of the urls, registering the ones seen for the first time; urls that cannot be
+    // registered have no entry
+    public Map<String, Long> resolveAll(Collection<String> urls) {
+        Map<String, Long> resolved = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String url : urls) {
+            Optional<Long> cached = ids.get(url);
+            if (cached.isPresent()) {
+                resolved.put(url, cached.get());
+            } else {
+                missing.add(url);
+            }
+        }
+        if (missing.isEmpty()) {
+            return resolved;
+        }
+        select(missing, resolved);
+        missing.removeIf(resolved::containsKey);
+        if (missing.isEmpty()) {
+            return resolved;
+        }
+
+        // New urls claim their first-probe id in one batch; a url whose id turns out to be taken
+        // by another url is left out and registered one by one below
+        try {
+            jdbcTemplate.batchUpdate(INSERT_NEW, missing, BATCH_SIZE, (statement, url) -> {
+                statement.setLong(1, idOf(url, 0));
+                statement.setString(2, url);
+            });
+        } catch (NonTransientDataAccessException e) {
+            // Some url of the batch is rejected; the others are registered one by one below
+            logger.debug("Registering {} visit urls in one batch failed", missing.size(), e);
+        }
+        select(missing, resolved);
+        for (String url : missing) {
+            if (!resolved.containsKey(url)) {
+                try {
+                    resolved.put(url, register(url));
+                } catch (NonTransientDataAccessException | IllegalStateException e) {
+                    logger.warn("Cannot register visit url {}, dropping its visits", url, e);
+                }
+            }
+        }
+        return resolved;
+    }
+
+    private long register(String url) {
+        for (int probe = 1; probe < MAX_PROBES; probe++) {
+            long id = idOf(url, probe);
+            try {
+                jdbcTemplate.update(INSERT, id, url);
+                ids.put(url, id);
+                return id;
+            } catch (DuplicateKeyException e) {
+                // Either the id is taken by another url or another node registered this one
+                Optional<Long> registered = find(url);
+                if (registered.isPresent()) {
+                    return registered.get();
+                }
+            }
+        }
+        throw new IllegalStateException("No free visit id for url " + url);
+    }
+
+    private void select(List<String> urls, Map<String, Long> found) {
+        for (int from = 0; from < urls.size(); from += BATCH_SIZE) {
+            List<String> batch = urls.subList(from, Math.min(from + BATCH_SIZE, urls.size()));
+            String sql = "SELECT url, id FROM visit_urls WHERE url IN ("
+                    + String.join(", ", Collections.nCopies(batch.size(), "?")) + ")";
+            jdbcTemplate.query(sql, resultSet -> {
+                String url = resultSet.getString(1);
+                long id = resultSet.getLong(2);
+                found.put(url, id);
+                ids.put(url, id);
+            }, batch.toArray());
+        }
+    }
+}
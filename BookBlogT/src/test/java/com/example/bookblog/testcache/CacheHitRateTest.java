@@ -0,0 +1,129 @@
+package com.example.bookblog.testcache;
+
+import com.example.bookblog.cache.AdmissionPolicy;
+import com.example.bookblog.cache.InMemoryCache;
+import com.example.bookblog.dto.CategoryWithUsersDto;
+import com.example.bookblog.service.CategoryService;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Trace-replay comparisons of admission policies and invalidation strategies on synthetic
+// access patterns. The traces are seeded, so the hit rates are the same on every run.
+class CacheHitRateTest {
+
+    private static final int CACHE_SIZE = 500;
+    private static final int KEY_SPACE = 20_000;
+    private static final int ACCESSES = 300_000;
+    private static final double ZIPF_EXPONENT = 0.9;
+
+    @Test
+    void zipfianTrace_TinyLfuIsAtLeastAsGoodAsLru() {
+        long[] trace = zipfianTrace(new Random(42), ACCESSES);
+
+        double lru = replay(trace, AdmissionPolicy.LRU);
+        double tinyLfu = replay(trace, AdmissionPolicy.TINY_LFU);
+
+        assertTrue(tinyLfu >= lru - 0.01, "TinyLFU " + tinyLfu + " vs LRU " + lru);
+    }
+
+    @Test
+    void scanHeavyTrace_TinyLfuKeepsHotEntries() {
+        Random random = new Random(7);
+        long[] hot = zipfianTrace(random, ACCESSES);
+        long[] trace = new long[ACCESSES * 2];
+        long nextScanKey = KEY_SPACE;
+        int position = 0;
+        for (int i = 0; i < hot.length; i += 1000) {
+            // Crawler walking ids that are never requested again
+            for (int j = 0; j < 1000; j++) {
+                trace[position++] = nextScanKey++;
+            }
+            int hotRun = Math.min(1000, hot.length - i);
+            System.arraycopy(hot, i, trace, position, hotRun);
+            position += hotRun;
+        }
+        trace = Arrays.copyOf(trace, position);
+
+        double lru = replay(trace, AdmissionPolicy.LRU);
+        double tinyLfu = replay(trace, AdmissionPolicy.TINY_LFU);
+
+        assertTrue(tinyLfu > lru + 0.02, "TinyLFU " + tinyLfu + " vs LRU " + lru);
+    }
+
+    @Test
+    void steadyCategoryWrites_TagInvalidationKeepsSearchHits() {
+        double cleared = replaySearches(false);
+        double tagged = replaySearches(true);
+
+        assertTrue(tagged > cleared + 0.3, "tags " + tagged + " vs clear " + cleared);
+    }
+
+    // Most categories have a handful of members, so a rename only touches low thresholds
+    private static double replaySearches(boolean tagged) {
+        Random random = new Random(11);
+        int[] members = new int[200];
+        for (int id = 0; id < members.length; id++) {
+            members[id] = (int) Math.min(50, Math.round(-Math.log(random.nextDouble()) * 4));
+        }
+        InMemoryCache<String, List<CategoryWithUsersDto>> cache =
+                InMemoryCache.<String, List<CategoryWithUsersDto>>builder()
+                        .maximumSize(100)
+                        .expireAfterWrite(Duration.ofHours(1))
+                        .tagger(tagged ? CategoryService::searchTags : null)
+                        .build();
+        for (int i = 0; i < 50_000; i++) {
+            int minUsers = random.nextInt(50);
+            cache.getOrCompute("minUsers_" + minUsers, () -> search(members, minUsers));
+            if (i % 10 == 0) {
+                cache.invalidateTag(CategoryService.categoryTag((long) random.nextInt(200)));
+            }
+        }
+        return cache.stats().getHitRate();
+    }
+
+    private static List<CategoryWithUsersDto> search(int[] members, int minUsers) {
+        List<CategoryWithUsersDto> result = new ArrayList<>();
+        for (int id = 0; id < members.length; id++) {
+            if (members[id] >= minUsers) {
+                CategoryWithUsersDto category = new CategoryWithUsersDto();
+                category.setId((long) id);
+                result.add(category);
+            }
+        }
+        return result;
+    }
+
+    private static double replay(long[] trace, AdmissionPolicy policy) {
+        InMemoryCache<Long, Long> cache = InMemoryCache.<Long, Long>builder()
+                .maximumSize(CACHE_SIZE)
+                .expireAfterWrite(Duration.ofHours(1))
+                .admissionPolicy(policy)
+                .build();
+        for (long key : trace) {
+            cache.getOrCompute(key, () -> key);
+        }
+        return cache.stats().getHitRate();
+    }
+
+    private static long[] zipfianTrace(Random random, int length) {
+        double[] cumulative = new double[KEY_SPACE];
+        double sum = 0;
+        for (int rank = 0; rank < KEY_SPACE; rank++) {
+            sum += 1.0 / Math.pow(rank + 1, ZIPF_EXPONENT);
+            cumulative[rank] = sum;
+        }
+        long[] trace = new long[length];
+        for (int i = 0; i < length; i++) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            trace[i] = rank >= 0 ? rank : -rank - 1;
+        }
+        return trace;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.bookblog.testcache;
+
+import com.example.bookblog.BookBlogApplication;
+import com.example.bookblog.cache.CacheRegistry;
+import com.example.bookblog.config.CacheConfig;
+import com.example.bookblog.entity.Category;
+import com.example.bookblog.repository.CategoryRepository;
+import com.example.bookblog.service.CategoryService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Two application contexts in one JVM stand in for two nodes sharing a database
+class CacheInvalidationIntegrationTest {
+
+    @TempDir
+    static Path snapshotDirectory;
+
+    private static ConfigurableApplicationContext first;
+    private static ConfigurableApplicationContext second;
+
+    @BeforeAll
+    static void setUp() {
+        first = startNode("first");
+        second = startNode("second");
+    }
+
+    @AfterAll
+    static void tearDown() {
+        second.close();
+        first.close();
+    }
+
+    @Test
+    void testUpdateOnOneNode_EvictsCategoryOnTheOther() throws Exception {
+        Category category = new Category();
+        category.setName("Before");
+        Long id = first.getBean(CategoryRepository.class).save(category).getId();
+
+        CategoryService firstService = first.getBean(CategoryService.class);
+        CategoryService secondService = second.getBean(CategoryService.class);
+        assertEquals("Before", firstService.getOne(id).getName());
+        assertEquals("Before", secondService.getOne(id).getName());
+
+        Category updated = new Category();
+        updated.setName("After");
+        firstService.updateGroup(id, updated);
+
+        CacheRegistry secondCaches = second.getBean(CacheRegistry.class);
+        awaitTrue(() -> secondCaches.region(CacheConfig.CATEGORIES).get(id).isEmpty());
+        assertEquals("After", secondService.getOne(id).getName());
+    }
+
+    @Test
+    void testDeleteOnOneNode_EvictsCategoryOnTheOther() throws Exception {
+        Category category = new Category();
+        category.setName("Doomed");
+        Long id = first.getBean(CategoryRepository.class).save(category).getId();
+        second.getBean(CategoryService.class).getOne(id);
+
+        first.getBean(CategoryService.class).deleteGroup(id);
+
+        CacheRegistry secondCaches = second.getBean(CacheRegistry.class);
+        awaitTrue(() -> secondCaches.region(CacheConfig.CATEGORIES).get(id).isEmpty());
+    }
+
+    private static ConfigurableApplicationContext startNode(String name) {
+        // Command line arguments, so they override application.properties
+        return new SpringApplicationBuilder(BookBlogApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:cache-invalidation;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.show-sql=false",
+                "--logging.file.name=",
+                "--cache.invalidation.poll-interval=50ms",
+                "--cache.snapshot.directory=" + snapshotDirectory,
+                "--visits.log.directory=" + snapshotDirectory.resolve("visit-log-" + name));
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Invalidation did not arrive in time");
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.bookblog.testcache;
+
+import com.example.bookblog.cache.AdmissionPolicy;
+import com.example.bookblog.cache.CacheProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachePropertiesTest {
+
+    @Test
+    void region_TakesWhatItDoesNotSetFromTheDefaults() {
+        CacheProperties properties = bind(Map.of(
+                "cache.defaults.ttl", "20m",
+                "cache.defaults.negative-ttl", "30s",
+                "cache.regions.books.max-entries", "500",
+                "cache.regions.books.max-weight", "16MB",
+                "cache.regions.books.transactional", "false"));
+
+        CacheProperties.Region books = properties.region("books");
+
+        assertEquals(500, books.getMaxEntries());
+        assertEquals(DataSize.ofMegabytes(16), books.getMaxWeight());
+        assertFalse(books.getTransactional());
+        assertEquals(Duration.ofMinutes(20), books.getTtl());
+        assertEquals(Duration.ofSeconds(30), books.getNegativeTtl());
+        assertEquals(AdmissionPolicy.LRU, books.getAdmission());
+        assertEquals(Duration.ZERO, books.getMaxStale());
+        assertNull(books.getRefreshAfterWrite());
+    }
+
+    @Test
+    void region_FallsBackToDefaultsThenBuiltInValues() {
+        CacheProperties properties = bind(Map.of("cache.defaults.max-entries", "50"));
+
+        CacheProperties.Region unknown = properties.region("unknown");
+
+        assertEquals(50, unknown.getMaxEntries());
+        assertEquals(Duration.ofMinutes(10), unknown.getTtl());
+        assertTrue(unknown.getTransactional());
+        assertFalse(unknown.getSnapshot());
+    }
+
+    private static CacheProperties bind(Map<String, String> values) {
+        return new Binder(new MapConfigurationPropertySource(values))
+                .bind("cache", CacheProperties.class)
+                .get();
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.bookblog.testcache;
+
+import com.example.bookblog.cache.CacheProperties;
+import com.example.bookblog.cache.CacheRegistry;
+import com.example.bookblog.cache.CacheSnapshotter;
+import com.example.bookblog.cache.InMemoryCache;
+import com.example.bookblog.dto.CategoryWithUsersDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheSnapshotterTest {
+
+    private static final String REGION = "categories";
+
+    @TempDir
+    Path directory;
+
+    private final List<CacheRegistry> registries = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        registries.forEach(CacheRegistry::shutdown);
+    }
+
+    @Test
+    void testRestart_RestoresLiveEntries() {
+        CacheProperties properties = properties(Duration.ofMinutes(10), "1");
+        CacheRegistry before = registry(properties);
+        InMemoryCache<Long, CategoryWithUsersDto> cache = before.region(REGION);
+        for (long id = 1; id <= 50; id++) {
+            cache.put(id, category(id));
+        }
+        assertEquals(50, new CacheSnapshotter(before, properties).write(REGION));
+        assertTrue(Files.exists(directory.resolve(REGION + ".snapshot")));
+
+        CacheRegistry after = registry(properties);
+        new CacheSnapshotter(after, properties).afterSingletonsInstantiated();
+
+        InMemoryCache<Long, CategoryWithUsersDto> restored = after.region(REGION);
+        assertEquals(50, restored.size());
+        for (long id = 1; id <= 50; id++) {
+            assertEquals("Category " + id, restored.get(id).orElseThrow().getName());
+        }
+        assertEquals(1.0, restored.stats().getHitRate());
+    }
+
+    @Test
+    void testRestart_SkipsEntriesThatExpiredWhileDown() throws InterruptedException {
+        CacheProperties properties = properties(Duration.ofMillis(200), "1");
+        CacheRegistry before = registry(properties);
+        before.<Long, CategoryWithUsersDto>region(REGION).put(1L, category(1));
+        new CacheSnapshotter(before, properties).write(REGION);
+
+        Thread.sleep(300);
+
+        CacheRegistry after = registry(properties);
+        assertEquals(0, new CacheSnapshotter(after, properties).load(REGION));
+        assertEquals(Optional.empty(), after.region(REGION).get(1L));
+    }
+
+    @Test
+    void testVersionChange_DiscardsSnapshot() {
+        CacheProperties oldBuild = properties(Duration.ofMinutes(10), "1");
+        CacheRegistry before = registry(oldBuild);
+        before.<Long, CategoryWithUsersDto>region(REGION).put(1L, category(1));
+        new CacheSnapshotter(before, oldBuild).write(REGION);
+
+        CacheProperties newBuild = properties(Duration.ofMinutes(10), "2");
+        CacheRegistry after = registry(newBuild);
+
+        assertEquals(0, new CacheSnapshotter(after, newBuild).load(REGION));
+        assertEquals(0, after.region(REGION).size());
+        assertFalse(Files.exists(directory.resolve(REGION + ".snapshot")));
+    }
+
+    @Test
+    void testCorruptSnapshot_IsIgnored() throws IOException {
+        Files.write(directory.resolve(REGION + ".snapshot"), new byte[] {1, 2, 3});
+        CacheProperties properties = properties(Duration.ofMinutes(10), "1");
+        CacheRegistry registry = registry(properties);
+
+        assertEquals(0, new CacheSnapshotter(registry, properties).load(REGION));
+        assertEquals(0, registry.region(REGION).size());
+    }
+
+    private CacheProperties properties(Duration ttl, String version) {
+        CacheProperties properties = new CacheProperties();
+        CacheProperties.Region region = new CacheProperties.Region();
+        region.setTtl(ttl);
+        region.setSnapshot(true);
+        properties.getRegions().put(REGION, region);
+        properties.getSnapshot().setDirectory(directory.toString());
+        properties.getSnapshot().setVersion(version);
+        return properties;
+    }
+
+    private CacheRegistry registry(CacheProperties properties) {
+        CacheRegistry registry = new CacheRegistry(properties);
+        registries.add(registry);
+        return registry;
+    }
+
+    private static CategoryWithUsersDto category(long id) {
+        CategoryWithUsersDto category = new CategoryWithUsersDto();
+        category.setId(id);
+        category.setName("Category " + id);
+        category.setUsers(List.of());
+        return category;
+    }
+}
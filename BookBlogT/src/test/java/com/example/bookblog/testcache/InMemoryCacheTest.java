@@ -0,0 +1,722 @@
+package com.example.bookblog.testcache;
+
+import com.example.bookblog.cache.CacheStats;
+import com.example.bookblog.cache.InMemoryCache;
+import com.example.bookblog.cache.RemovalCause;
+import com.example.bookblog.cache.Ticker;
+import com.example.bookblog.exception.CacheMissException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryCacheTest {
+
+    private static final int THREADS = 16;
+    private static final int OPERATIONS_PER_THREAD = 50_000;
+    private static final int KEY_SPACE = 256;
+
+    @Test
+    void testGetOrCompute_CachesValue() {
+        InMemoryCache<Long, String> cache = new InMemoryCache<>(10, Duration.ofMinutes(1));
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals("one", cache.getOrCompute(1L, () -> {
+            loads.incrementAndGet();
+            return "one";
+        }));
+        assertEquals("one", cache.getOrCompute(1L, () -> {
+            loads.incrementAndGet();
+            return "other";
+        }));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testGetOrCompute_CoalescesConcurrentLoads() throws Exception {
+        InMemoryCache<Long, String> cache = new InMemoryCache<>(10, Duration.ofMinutes(1));
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoader = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<String>> futures = new ArrayList<>();
+
+        futures.add(executor.submit(() -> cache.getOrCompute(1L, () -> {
+            loads.incrementAndGet();
+            loaderStarted.countDown();
+            awaitQuietly(releaseLoader);
+            return "one";
+        })));
+        assertTrue(loaderStarted.await(10, TimeUnit.SECONDS));
+        for (int t = 1; t < THREADS; t++) {
+            futures.add(executor.submit(() -> cache.getOrCompute(1L, () -> {
+                loads.incrementAndGet();
+                return "other";
+            })));
+        }
+        Thread.sleep(100);
+        releaseLoader.countDown();
+
+        for (Future<String> future : futures) {
+            assertEquals("one", future.get(10, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testGetOrCompute_PropagatesLoaderFailureWithoutPoisoningKey() throws Exception {
+        InMemoryCache<Long, String> cache = new InMemoryCache<>(10, Duration.ofMinutes(1));
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoader = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<String>> futures = new ArrayList<>();
+
+        futures.add(executor.submit(() -> cache.getOrCompute(1L, () -> {
+            loaderStarted.countDown();
+            awaitQuietly(releaseLoader);
+            throw new CacheMissException("not found");
+        })));
+        assertTrue(loaderStarted.await(10, TimeUnit.SECONDS));
+        for (int t = 1; t < 4; t++) {
+            futures.add(executor.submit(() -> cache.getOrCompute(1L, () -> "other")));
+        }
+        Thread.sleep(100);
+        releaseLoader.countDown();
+
+        for (Future<String> future : futures) {
+            ExecutionException e = assertThrows(ExecutionException.class,
+                    () -> future.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(CacheMissException.class, e.getCause());
+        }
+        executor.shutdown();
+
+        assertEquals("one", cache.getOrCompute(1L, () -> "one"));
+    }
+
+    @Test
+    void testGetOrCompute_RemoveDuringLoadDiscardsStaleValue() {
+        InMemoryCache<Long, String> cache = new InMemoryCache<>(10, Duration.ofMinutes(1));
+
+        String value = cache.getOrCompute(1L, () -> {
+            cache.remove(1L);
+            return "stale";
+        });
+
+        assertEquals("stale", value);
+        assertTrue(cache.get(1L).isEmpty());
+    }
+
+    @Test
+    void testRefreshAhead_ServesCurrentValueAndReloadsInBackground() {
+        AtomicLong nanos = new AtomicLong();
+        List<Runnable> refreshTasks = new ArrayList<>();
+        InMemoryCache<Long, String> cache = InMemoryCache.<Long, String>builder()
+                .maximumSize(10)
+                .expireAfterWrite(Duration.ofMinutes(10))
+                .refreshAfterWrite(Duration.ofMinutes(8))
+                .ticker(nanos::get)
+                .refreshExecutor(refreshTasks::add)
+                .build();
+        cache.getOrCompute(1L, () -> "v1");
+
+        nanos.addAndGet(Duration.ofMinutes(9).toNanos());
+        assertEquals("v1", cache.getOrCompute(1L, () -> "v2"));
+        assertEquals("v1", cache.getOrCompute(1L, () -> "v3"));
+        assertEquals(1, refreshTasks.size());
+
+        refreshTasks.get(0).run();
+        assertEquals(Optional.of("v2"), cache.get(1L));
+    }
+
+    @Test
+    void testStaleWhileRevalidate_ServesStaleValueWithinWindow() {
+        AtomicLong nanos = new AtomicLong();
+        List<Runnable> refreshTasks = new ArrayList<>();
+        InMemoryCache<Long, String> cache = InMemoryCache.<Long, String>builder()
+                .maximumSize(10)
+                .expireAfterWrite(Duration.ofMinutes(5))
+                .maxStale(Duration.ofMinutes(1))
+                .ticker(nanos::get)
+                .refreshExecutor(refreshTasks::add)
+                .build();
+        cache.put(1L, "v1");
+
+        nanos.addAndGet(Duration.ofSeconds(330).toNanos());
+        assertTrue(cache.get(1L).isEmpty());
+        assertEquals("v1", cache.getOrCompute(1L, () -> "v2"));
+        refreshTasks.forEach(Runnable::run);
+        assertEquals(Optional.of("v2"), cache.get(1L));
+
+        nanos.addAndGet(Duration.ofMinutes(7).toNanos());
+        assertEquals("v3", cache.getOrCompute(1L, () -> "v3"));
+    }
+
+    @Test
+    void testRefreshFailure_KeepsOldValue() {
+        AtomicLong nanos = new AtomicLong();
+        List<Runnable> refreshTasks = new ArrayList<>();
+        InMemoryCache<Long, String> cache = InMemoryCache.<Long, String>builder()
+                .maximumSize(10)
+                .expireAfterWrite(Duration.ofMinutes(10))
+                .refreshAfterWrite(Duration.ofMinutes(1))
+                .ticker(nanos::get)
+                .refreshExecutor(refreshTasks::add)
+                .build();
+        cache.put(1L, "v1");
+
+        nanos.addAndGet(Duration.ofMinutes(2).toNanos());
+        assertEquals("v1", cache.getOrCompute(1L, () -> {
+            throw new CacheMissException("database unavailable");
+        }));
+        assertDoesNotThrow(() -> refreshTasks.forEach(Runnable::run));
+
+        assertEquals(Optional.of("v1"), cache.get(1L));
+        assertEquals("v1", cache.getOrCompute(1L, () -> "v2"));
+        assertEquals(2, refreshTasks.size());
+    }
+
+    @Test
+    void testStats_CountHitsMissesLoadsAndEvictions() {
+        AtomicLong nanos = new AtomicLong();
+        InMemoryCache<Long, String> cache =
+                new InMemoryCache<>(2, Duration.ofMinutes(1), nanos::get);
+
+        cache.getOrCompute(1L, () -> "one");
+        cache.getOrCompute(1L, () -> "one");
+        cache.get(2L);
+        assertThrows(CacheMissException.class, () -> cache.getOrCompute(2L, () -> {
+            throw new CacheMissException("not found");
+        }));
+        cache.put(2L, "two");
+        cache.put(3L, "three");
+        cache.remove(3L);
+        nanos.addAndGet(Duration.ofMinutes(2).toNanos());
+        cache.cleanUp();
+
+        CacheStats stats = cache.stats();
+        assertEquals(1, stats.getHits());
+        assertEquals(3, stats.getMisses());
+        assertEquals(2, stats.getLoadCount());
+        assertEquals(1, stats.getLoadFailures());
+        assertEquals(2, stats.getLoadTimeHistogram().values().stream()
+                .mapToLong(Long::longValue).sum());
+        assertEquals(1, stats.getEvictions().get(RemovalCause.SIZE));
+        assertEquals(1, stats.getEvictions().get(RemovalCause.EXPLICIT));
+        assertEquals(1, stats.getEvictions().get(RemovalCause.EXPIRED));
+
+        stats.reset();
+        assertEquals(0, stats.getHits());
+        assertEquals(0, stats.getEvictions().get(RemovalCause.SIZE));
+    }
+
+    @Test
+    void testUpdate_OnlyReplacesExistingKeys() {
+        InMemoryCache<Long, String> cache = new InMemoryCache<>(10, Duration.ofMinutes(1));
+
+        cache.update(1L, "missing");
+        assertTrue(cache.get(1L).isEmpty());
+
+        cache.put(1L, "one");
+        cache.update(1L, "updated");
+        assertEquals(Optional.of("updated"), cache.get(1L));
+    }
+
+    @Test
+    void testRemoveAndClear() {
+        InMemoryCache<Long, String> cache = new InMemoryCache<>(10, Duration.ofMinutes(1));
+        cache.put(1L, "one");
+        cache.put(2L, "two");
+
+        cache.remove(1L);
+        assertTrue(cache.get(1L).isEmpty());
+        assertEquals(Optional.of("two"), cache.get(2L));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testEviction_RemovesLeastRecentlyUsed() {
+        InMemoryCache<Long, String> cache = new InMemoryCache<>(2, Duration.ofMinutes(1));
+        cache.put(1L, "one");
+        cache.put(2L, "two");
+        cache.get(1L);
+        cache.cleanUp();
+
+        cache.put(3L, "three");
+
+        assertEquals(Optional.of("one"), cache.get(1L));
+        assertTrue(cache.get(2L).isEmpty());
+        assertEquals(Optional.of("three"), cache.get(3L));
+    }
+
+    @Test
+    void testOffHeap_DemotesEvictedEntriesAndPromotesOnHit() {
+        InMemoryCache<Long, List<String>> cache = InMemoryCache.<Long, List<String>>builder()
+                .maximumSize(2)
+                .expireAfterWrite(Duration.ofMinutes(1))
+                .offHeapCapacity(1 << 20)
+                .build();
+        List<String> first = List.of("a", "b");
+        cache.put(1L, first);
+        cache.put(2L, List.of("c"));
+        cache.put(3L, List.of("d"));
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.offHeapSize());
+        assertTrue(cache.offHeapUsedBytes() > 0);
+
+        List<String> promoted = cache.get(1L).orElseThrow();
+        assertEquals(first, promoted);
+        assertNotSame(first, promoted);
+        assertEquals(1, cache.stats().getOffHeapHits());
+        assertEquals(0, cache.stats().getMisses());
+        assertEquals(0, cache.stats().getEvictions().get(RemovalCause.SIZE));
+        // Promotion pushed another entry down, so the region still holds all three
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.offHeapSize());
+    }
+
+    @Test
+    void testOffHeap_WritesAndRemovalsReplaceOffHeapCopy() {
+        InMemoryCache<Long, String> cache = InMemoryCache.<Long, String>builder()
+                .maximumSize(1)
+                .expireAfterWrite(Duration.ofMinutes(1))
+                .offHeapCapacity(1 << 20)
+                .build();
+        cache.put(1L, "one");
+        cache.put(2L, "two");
+
+        cache.update(1L, "updated");
+        assertEquals(Optional.of("updated"), cache.get(1L));
+
+        cache.put(3L, "three");
+        cache.put(2L, "new two");
+        assertEquals(Optional.of("new two"), cache.get(2L));
+
+        cache.remove(3L);
+        assertTrue(cache.get(3L).isEmpty());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.offHeapSize());
+        assertEquals(0, cache.offHeapUsedBytes());
+    }
+
+    @Test
+    void testOffHeap_ExpiresWithOriginalWriteTime() {
+        AtomicLong nanos = new AtomicLong();
+        InMemoryCache<Long, String> cache = InMemoryCache.<Long, String>builder()
+                .maximumSize(1)
+                .expireAfterWrite(Duration.ofSeconds(10))
+                .ticker(nanos::get)
+                .offHeapCapacity(1 << 20)
+                .build();
+        cache.put(1L, "one");
+        cache.put(2L, "two");
+        nanos.addAndGet(Duration.ofSeconds(11).toNanos());
+
+        assertTrue(cache.get(1L).isEmpty());
+        assertEquals(0, cache.offHeapSize());
+        assertEquals(1, cache.stats().getEvictions().get(RemovalCause.EXPIRED));
+    }
+
+    @Test
+    void testOffHeap_RecyclesOldestSlabWhenFull() {
+        InMemoryCache<Long, String> cache = InMemoryCache.<Long, String>builder()
+                .maximumSize(1)
+                .expireAfterWrite(Duration.ofMinutes(1))
+                .offHeapCapacity(8 * 1024)
+                .build();
+        String payload = "x".repeat(200);
+        for (long key = 0; key < 200; key++) {
+            cache.put(key, payload + key);
+        }
+
+        assertTrue(cache.offHeapUsedBytes() <= cache.offHeapCapacityBytes());
+        assertTrue(cache.get(0L).isEmpty());
+        assertEquals(Optional.of(payload + 198), cache.get(198L));
+        assertTrue(cache.stats().getEvictions().get(RemovalCause.SIZE) > 0);
+    }
+
+    @Test
+    void testNegativeCaching_CachesMissingKeyUntilNegativeTtl() {
+        AtomicLong nanos = new AtomicLong();
+        AtomicInteger queries = new AtomicInteger();
+        InMemoryCache<Long, String> cache = InMemoryCache.<Long, String>builder()
+                .expireAfterWrite(Duration.ofMinutes(10))
+                .negativeTtl(Duration.ofSeconds(30))
+                .ticker(nanos::get)
+                .build();
+
+        assertEquals(Optional.empty(), cache.findOrCompute(404L, () -> {
+            queries.incrementAndGet();
+            return Optional.empty();
+        }));
+        assertEquals(Optional.empty(), cache.findOrCompute(404L, () -> {
+            queries.incrementAndGet();
+            return Optional.empty();
+        }));
+        assertEquals(1, queries.get());
+        assertEquals(1, cache.stats().getNegativeHits());
+        assertTrue(cache.isKnownAbsent(404L));
+
+        nanos.addAndGet(Duration.ofSeconds(31).toNanos());
+        assertFalse(cache.isKnownAbsent(404L));
+        assertEquals(Optional.of("found"), cache.findOrCompute(404L, () -> {
+            queries.incrementAndGet();
+            return Optional.of("found");
+        }));
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    void testNegativeCaching_WriteReplacesTombstone() {
+        InMemoryCache<Long, String> cache = InMemoryCache.<Long, String>builder()
+                .negativeTtl(Duration.ofSeconds(30))
+                .build();
+
+        cache.markAbsent(1L);
+        assertTrue(cache.isKnownAbsent(1L));
+        assertEquals(Optional.empty(), cache.get(1L));
+
+        cache.put(1L, "created");
+        assertFalse(cache.isKnownAbsent(1L));
+        assertEquals(Optional.of("created"), cache.get(1L));
+
+        cache.markAbsent(2L);
+        cache.remove(2L);
+        assertFalse(cache.isKnownAbsent(2L));
+    }
+
+    @Test
+    void testNegativeCaching_DisabledWithoutNegativeTtl() {
+        AtomicInteger queries = new AtomicInteger();
+        InMemoryCache<Long, String> cache = new InMemoryCache<>(10, Duration.ofMinutes(1));
+
+        cache.markAbsent(1L);
+        assertFalse(cache.isKnownAbsent(1L));
+        cache.findOrCompute(1L, () -> {
+            queries.incrementAndGet();
+            return Optional.empty();
+        });
+        cache.findOrCompute(1L, () -> {
+            queries.incrementAndGet();
+            return Optional.empty();
+        });
+        assertEquals(2, queries.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testWeightBound_EvictsUntilUnderBudget() {
+        InMemoryCache<Long, String> cache = InMemoryCache.<Long, String>builder()
+                .maximumSize(1000)
+                .maximumWeight(100)
+                .weigher((key, value) -> value.length())
+                .expireAfterWrite(Duration.ofMinutes(1))
+                .build();
+        for (long key = 1; key <= 5; key++) {
+            cache.put(key, "x".repeat(30));
+        }
+        assertEquals(3, cache.size());
+        assertEquals(90, cache.weight());
+
+        cache.put(6L, "y".repeat(90));
+        assertEquals(1, cache.size());
+        assertEquals(Optional.of("y".repeat(90)), cache.get(6L));
+
+        cache.put(6L, "z");
+        assertEquals(1, cache.weight());
+        cache.remove(6L);
+        assertEquals(0, cache.weight());
+        assertEquals(5, cache.stats().getEvictions().get(RemovalCause.SIZE));
+    }
+
+    @Test
+    void testWeightBound_RejectsEntryHeavierThanTheBudget() {
+        InMemoryCache<Long, String> cache = InMemoryCache.<Long, String>builder()
+                .maximumWeight(10)
+                .weigher((key, value) -> value.length())
+                .build();
+        cache.put(1L, "small");
+
+        cache.put(2L, "far too large for the region");
+
+        assertTrue(cache.get(2L).isEmpty());
+        assertTrue(cache.weight() <= 10);
+    }
+
+    @Test
+    void testInvalidateTag_RemovesOnlyTaggedEntries() {
+        InMemoryCache<String, List<Long>> cache = taggedCache(10, 0);
+        cache.put("a", List.of(1L, 2L));
+        cache.put("b", List.of(2L, 3L));
+        cache.put("c", List.of(4L));
+
+        cache.invalidateTag("id:2");
+
+        assertEquals(Optional.empty(), cache.get("a"));
+        assertEquals(Optional.empty(), cache.get("b"));
+        assertEquals(Optional.of(List.of(4L)), cache.get("c"));
+        assertEquals(2, cache.stats().getEvictions().get(RemovalCause.EXPLICIT));
+    }
+
+    @Test
+    void testInvalidateTag_FollowsReplacedValues() {
+        InMemoryCache<String, List<Long>> cache = taggedCache(10, 0);
+        cache.put("a", List.of(1L));
+        cache.put("a", List.of(2L));
+
+        cache.invalidateTag("id:1");
+        assertEquals(Optional.of(List.of(2L)), cache.get("a"));
+
+        cache.invalidateTag("id:2");
+        assertEquals(Optional.empty(), cache.get("a"));
+    }
+
+    @Test
+    void testInvalidateTag_ReachesOffHeapEntries() {
+        InMemoryCache<String, List<Long>> cache = taggedCache(1, 1 << 20);
+        cache.put("a", List.of(1L));
+        cache.put("b", List.of(2L));
+        cache.put("c", List.of(1L, 3L));
+        assertEquals(2, cache.offHeapSize());
+
+        cache.invalidateTag("id:1");
+
+        assertEquals(1, cache.offHeapSize());
+        assertEquals(Optional.empty(), cache.get("a"));
+        assertEquals(Optional.empty(), cache.get("c"));
+        assertEquals(Optional.of(List.of(2L)), cache.get("b"));
+
+        // Promoted entries keep their tags
+        cache.invalidateTag("id:2");
+        assertEquals(Optional.empty(), cache.get("b"));
+    }
+
+    @Test
+    void testInvalidateTag_WithoutTaggerClearsRegion() {
+        InMemoryCache<Long, String> cache = new InMemoryCache<>(10, Duration.ofMinutes(1));
+        cache.put(1L, "one");
+
+        cache.invalidateTag("anything");
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testExpiredEntriesAreNotReturned() throws InterruptedException {
+        InMemoryCache<Long, String> cache = new InMemoryCache<>(10, Duration.ofMillis(20));
+        cache.put(1L, "one");
+
+        Thread.sleep(50);
+
+        assertTrue(cache.get(1L).isEmpty());
+    }
+
+    @Test
+    void testExpiration_UsesTickerWithoutReads() {
+        AtomicLong nanos = new AtomicLong();
+        Ticker ticker = nanos::get;
+        InMemoryCache<Integer, String> cache =
+                new InMemoryCache<>(1000, Duration.ofMinutes(1), ticker);
+        for (int key = 0; key < 10; key++) {
+            cache.put(key, valueFor(key));
+        }
+
+        nanos.addAndGet(Duration.ofSeconds(59).toNanos());
+        cache.cleanUp();
+        assertEquals(10, cache.size());
+
+        nanos.addAndGet(Duration.ofSeconds(2).toNanos());
+        assertTrue(cache.get(0).isEmpty());
+        cache.cleanUp();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testExpiration_ReclaimsInBoundedBatches() {
+        AtomicLong nanos = new AtomicLong();
+        InMemoryCache<Integer, String> cache =
+                new InMemoryCache<>(10_000, Duration.ofMinutes(5), nanos::get);
+        for (int key = 0; key < 1000; key++) {
+            cache.put(key, valueFor(key));
+        }
+
+        nanos.addAndGet(Duration.ofHours(2).toNanos());
+        cache.cleanUp();
+        int afterFirstBatch = cache.size();
+        assertTrue(afterFirstBatch < 1000, "no entries were expired");
+        assertTrue(afterFirstBatch > 900, "expired " + (1000 - afterFirstBatch) + " at once");
+
+        for (int i = 0; i < 1000 && cache.size() > 0; i++) {
+            cache.cleanUp();
+        }
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testExpiration_LongTtlCascadesThroughWheelLevels() {
+        AtomicLong nanos = new AtomicLong();
+        InMemoryCache<Integer, String> cache =
+                new InMemoryCache<>(100, Duration.ofDays(3), nanos::get);
+        cache.put(1, valueFor(1));
+
+        for (int hour = 1; hour < 72; hour++) {
+            nanos.addAndGet(Duration.ofHours(1).toNanos());
+            cache.cleanUp();
+            assertEquals(1, cache.size(), "expired early after " + hour + "h");
+        }
+
+        nanos.addAndGet(Duration.ofHours(2).toNanos());
+        cache.cleanUp();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testConcurrentAccess_StaysConsistentAndBounded() throws Exception {
+        int maxSize = 64;
+        InMemoryCache<Integer, String> cache = new InMemoryCache<>(maxSize, Duration.ofMinutes(1));
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    int key = random.nextInt(KEY_SPACE);
+                    int operation = random.nextInt(100);
+                    if (operation < 60) {
+                        cache.get(key).ifPresent(value -> assertEquals(valueFor(key), value));
+                    } else if (operation < 85) {
+                        assertEquals(valueFor(key), cache.getOrCompute(key, () -> valueFor(key)));
+                    } else if (operation < 93) {
+                        cache.put(key, valueFor(key));
+                    } else if (operation < 97) {
+                        cache.update(key, valueFor(key));
+                    } else if (operation < 99) {
+                        cache.remove(key);
+                    } else {
+                        cache.clear();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        cache.cleanUp();
+        assertTrue(cache.size() <= maxSize, "size " + cache.size() + " exceeds " + maxSize);
+        for (int key = 0; key < KEY_SPACE; key++) {
+            int k = key;
+            cache.get(key).ifPresent(value -> assertEquals(valueFor(k), value));
+        }
+    }
+
+    @Test
+    void testConcurrentClear_LeavesNoUnmappedEntriesBehind() throws Exception {
+        InMemoryCache<Integer, String> cache = InMemoryCache.<Integer, String>builder()
+                .maximumSize(OPERATIONS_PER_THREAD)
+                .maximumWeight(OPERATIONS_PER_THREAD)
+                .weigher((key, value) -> 1)
+                .expireAfterWrite(Duration.ofMinutes(1))
+                .build();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    if (thread == 0 && i % 64 == 0) {
+                        cache.clear();
+                    } else {
+                        cache.put(i, valueFor(i));
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        cache.cleanUp();
+        // Every linked entry weighs 1, so the weight counts the linked entries
+        assertEquals(cache.size(), cache.weight());
+    }
+
+    @Test
+    void testConcurrentReads_KeepHotEntries() throws Exception {
+        InMemoryCache<Integer, String> cache = new InMemoryCache<>(8, Duration.ofMinutes(1));
+        for (int key = 0; key < 8; key++) {
+            cache.put(key, valueFor(key));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    int key = i & 7;
+                    assertEquals(Optional.of(valueFor(key)), cache.get(key));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(8, cache.size());
+    }
+
+    private static InMemoryCache<String, List<Long>> taggedCache(int maxSize, long offHeap) {
+        return InMemoryCache.<String, List<Long>>builder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMinutes(1))
+                .offHeapCapacity(offHeap)
+                .tagger((key, ids) -> ids.stream().map(id -> "id:" + id).toList())
+                .build();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String valueFor(int key) {
+        return "value-" + key;
+    }
+}
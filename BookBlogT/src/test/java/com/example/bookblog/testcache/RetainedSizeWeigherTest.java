@@ -0,0 +1,79 @@
+package com.example.bookblog.testcache;
+
+import com.example.bookblog.cache.RetainedSizeWeigher;
+import com.example.bookblog.dto.CategoryWithUsersDto;
+import com.example.bookblog.dto.UserDto;
+import com.example.bookblog.entity.Book;
+import com.example.bookblog.entity.Category;
+import org.junit.jupiter.api.Test;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetainedSizeWeigherTest {
+
+    private final RetainedSizeWeigher weigher = new RetainedSizeWeigher();
+
+    @Test
+    void testWeight_GrowsWithTheDtoGraph() {
+        long small = weigher.retainedSize(category(3));
+        long large = weigher.retainedSize(category(1000));
+
+        // Each UserDto retains its header, a boxed id, a username and a list slot
+        assertTrue(small > 3 * 64, "small category weighs " + small);
+        assertTrue(large > 1000 * 64, "large category weighs " + large);
+        assertTrue(large > 100 * small, small + " vs " + large);
+    }
+
+    @Test
+    void testWeight_CountsSharedObjectsOnce() {
+        UserDto user = user(1);
+        CategoryWithUsersDto category = new CategoryWithUsersDto();
+        category.setUsers(List.of(user, user, user));
+        CategoryWithUsersDto single = new CategoryWithUsersDto();
+        single.setUsers(List.of(user));
+
+        long difference = weigher.retainedSize(category) - weigher.retainedSize(single);
+        assertTrue(difference <= 8, "repeated references added " + difference);
+    }
+
+    @Test
+    void testWeight_DoesNotInitializeForeignCollections() {
+        Category category = new Category();
+        category.setName("Lazy");
+        category.setBooks(new AbstractSet<>() {
+            @Override
+            public Iterator<Book> iterator() {
+                throw new IllegalStateException("lazy collection initialized");
+            }
+
+            @Override
+            public int size() {
+                throw new IllegalStateException("lazy collection initialized");
+            }
+        });
+
+        assertTrue(weigher.weigh(1L, category) > 0);
+    }
+
+    private static CategoryWithUsersDto category(int users) {
+        CategoryWithUsersDto category = new CategoryWithUsersDto();
+        category.setId(1L);
+        category.setName("Category");
+        category.setUsers(LongStream.rangeClosed(1, users)
+                .mapToObj(RetainedSizeWeigherTest::user)
+                .toList());
+        return category;
+    }
+
+    private static UserDto user(long id) {
+        UserDto user = new UserDto();
+        user.setId(id);
+        user.setUsername("user-" + id);
+        return user;
+    }
+}
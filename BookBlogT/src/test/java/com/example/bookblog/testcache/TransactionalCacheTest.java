@@ -0,0 +1,158 @@
+package com.example.bookblog.testcache;
+
+import com.example.bookblog.cache.InMemoryCache;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionalCacheTest {
+
+    private final TransactionTemplate transaction =
+            new TransactionTemplate(new NoOpTransactionManager());
+
+    private final InMemoryCache<Long, String> cache = InMemoryCache.<Long, String>builder()
+            .maximumSize(10)
+            .expireAfterWrite(Duration.ofMinutes(1))
+            .negativeTtl(Duration.ofMinutes(1))
+            .transactional(true)
+            .build();
+
+    @Test
+    void testPut_VisibleOnlyAfterCommit() {
+        transaction.executeWithoutResult(status -> {
+            cache.put(1L, "one");
+            assertEquals(Optional.empty(), cache.get(1L));
+        });
+
+        assertEquals(Optional.of("one"), cache.get(1L));
+    }
+
+    @Test
+    void testRollback_DiscardsWrites() {
+        cache.put(1L, "one");
+
+        transaction.executeWithoutResult(status -> {
+            cache.put(1L, "uncommitted");
+            cache.remove(1L);
+            cache.put(2L, "two");
+            cache.markAbsent(3L);
+            status.setRollbackOnly();
+        });
+
+        assertEquals(Optional.of("one"), cache.get(1L));
+        assertEquals(Optional.empty(), cache.get(2L));
+        assertFalse(cache.isKnownAbsent(3L));
+    }
+
+    @Test
+    void testCommit_AppliesWritesInOrder() {
+        cache.put(1L, "one");
+        cache.put(2L, "two");
+
+        transaction.executeWithoutResult(status -> {
+            cache.remove(1L);
+            cache.put(1L, "new");
+            cache.clear();
+            cache.put(2L, "after clear");
+            assertEquals(Optional.of("one"), cache.get(1L));
+        });
+
+        assertEquals(Optional.empty(), cache.get(1L));
+        assertEquals(Optional.of("after clear"), cache.get(2L));
+    }
+
+    @Test
+    void testLoad_AfterUncommittedWriteIsNotCached() {
+        transaction.executeWithoutResult(status -> {
+            cache.remove(1L);
+            assertEquals("dirty", cache.getOrCompute(1L, () -> "dirty"));
+            status.setRollbackOnly();
+        });
+
+        assertEquals(Optional.empty(), cache.get(1L));
+        assertEquals("clean", cache.getOrCompute(1L, () -> "clean"));
+        assertEquals(Optional.of("clean"), cache.get(1L));
+    }
+
+    @Test
+    void testLoad_InReadOnlyTransactionIsCached() {
+        transaction.executeWithoutResult(status ->
+                assertEquals("one", cache.getOrCompute(1L, () -> "one")));
+
+        assertEquals(Optional.of("one"), cache.get(1L));
+    }
+
+    @Test
+    void testRequiresNew_CommitsIndependently() {
+        TransactionTemplate inner = new TransactionTemplate(transaction.getTransactionManager());
+        inner.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        transaction.executeWithoutResult(status -> {
+            cache.put(1L, "outer");
+            inner.executeWithoutResult(innerStatus -> cache.put(2L, "inner"));
+            assertEquals(Optional.of("inner"), cache.get(2L));
+            assertEquals(Optional.empty(), cache.get(1L));
+            status.setRollbackOnly();
+        });
+
+        assertEquals(Optional.empty(), cache.get(1L));
+        assertEquals(Optional.of("inner"), cache.get(2L));
+    }
+
+    @Test
+    void testNonTransactionalCache_WritesImmediately() {
+        InMemoryCache<Long, String> plain = new InMemoryCache<>(10, Duration.ofMinutes(1));
+
+        transaction.executeWithoutResult(status -> {
+            plain.put(1L, "one");
+            assertEquals(Optional.of("one"), plain.get(1L));
+            status.setRollbackOnly();
+        });
+
+        assertEquals(Optional.of("one"), plain.get(1L));
+    }
+
+    // Drives the synchronization lifecycle without a resource behind it
+    private static class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected boolean isExistingTransaction(Object transaction) {
+            return TransactionSynchronizationManager.isActualTransactionActive();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected Object doSuspend(Object transaction) {
+            return transaction;
+        }
+
+        @Override
+        protected void doResume(Object transaction, Object suspendedResources) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
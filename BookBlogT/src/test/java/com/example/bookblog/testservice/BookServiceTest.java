@@ -5,6 +5,7 @@ import com.example.bookblog.entity.Book;
 import com.example.bookblog.exception.BookAlreadyExistException;
 import com.example.bookblog.repository.BookRepository;
 import com.example.bookblog.service.BookService;
+import com.example.bookblog.service.CacheInvalidationService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -26,6 +27,9 @@ class BookServiceTest {
     @Mock
     private InMemoryCache<Long, Book> bookCache;
 
+    @Mock
+    private CacheInvalidationService cacheInvalidationService;
+
     @InjectMocks
     private BookService bookService;
 
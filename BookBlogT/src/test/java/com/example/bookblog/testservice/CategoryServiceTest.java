@@ -1,18 +1,20 @@
 package com.example.bookblog.testservice;
 
+import com.example.bookblog.cache.CachedEntityType;
 import com.example.bookblog.cache.InMemoryCache;
 import com.example.bookblog.dto.CategoryWithUsersDto;
 import com.example.bookblog.entity.Category;
+import com.example.bookblog.entity.User;
 import com.example.bookblog.exception.CategoryAlreadyExistException;
 import com.example.bookblog.exception.CategoryNotFoundException;
 import com.example.bookblog.exception.ValidationException;
 import com.example.bookblog.repository.CategoryRepository;
 import com.example.bookblog.repository.UserRepository;
+import com.example.bookblog.service.CacheInvalidationService;
 import com.example.bookblog.service.CategoryService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
@@ -38,7 +40,9 @@ class CategoryServiceTest {
     @Mock
     private InMemoryCache<String, List<CategoryWithUsersDto>> searchCache;
 
-    @InjectMocks
+    @Mock
+    private CacheInvalidationService cacheInvalidationService;
+
     private CategoryService categoryService;
 
     private Category category1;
@@ -46,6 +50,10 @@ class CategoryServiceTest {
 
     @BeforeEach
     void setUp() {
+        // Both caches share a raw type, so @InjectMocks could hand the same mock to either one
+        categoryService = new CategoryService(categoryRepository, userRepository,
+                categoryCache, searchCache, null, cacheInvalidationService);
+
         category1 = new Category();
         category1.setId(1L);
         category1.setName("Test Category");
@@ -93,8 +101,36 @@ class CategoryServiceTest {
         categoryService.updateGroup(1L, updatedCategory);
 
         assertEquals("Updated Name", category1.getName());
-        verify(searchCache).clear();
+        verify(searchCache).invalidateTag("category:1");
+        verify(searchCache, never()).clear();
+    }
+    @Test
+    void testMembersChanged_InvalidatesCategoryAndReachedThreshold() {
+        category1.getUsers().add(new User());
+        category1.getUsers().add(new User());
+
+        categoryService.membersChanged(category1);
+
+        verify(categoryCache).remove(1L);
+        verify(searchCache).invalidateTag("category:1");
+        verify(searchCache).invalidateTag("min-users:2");
+        verify(cacheInvalidationService).publish(CachedEntityType.CATEGORY, 1L);
+        verify(cacheInvalidationService)
+                .publishTag(CachedEntityType.CATEGORY_SEARCH, "min-users:2");
     }
+
+    @Test
+    void testSearchTags_ListCategoriesAndThreshold() {
+        CategoryWithUsersDto first = new CategoryWithUsersDto();
+        first.setId(1L);
+        CategoryWithUsersDto second = new CategoryWithUsersDto();
+        second.setId(2L);
+
+        assertEquals(List.of("min-users:3", "category:1", "category:2"),
+                CategoryService.searchTags("minUsersNative_3", List.of(first, second)));
+        assertEquals(List.of("min-users:0"), CategoryService.searchTags("minUsers_-1", List.of()));
+    }
+
     @Test
     void testUpdateGroup_NotFound() {
         when(categoryRepository.findById(1L)).thenReturn(Optional.empty());
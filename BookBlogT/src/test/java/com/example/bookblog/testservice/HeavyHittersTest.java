@@ -0,0 +1,84 @@
+package com.example.bookblog.testservice;
+
+import com.example.bookblog.service.HeavyHitters;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeavyHittersTest {
+
+    @Test
+    void testTop_IsExactWhileUnderCapacity() {
+        HeavyHitters hitters = new HeavyHitters(4, 8);
+        hitters.offer("/a", 5);
+        hitters.offer("/b");
+        hitters.offer("/b");
+        hitters.offer("/c");
+
+        List<HeavyHitters.Hitter> top = hitters.top(2);
+
+        assertEquals(List.of(new HeavyHitters.Hitter("/a", 5, 0),
+                new HeavyHitters.Hitter("/b", 2, 0)), top);
+    }
+
+    @Test
+    void testTop_FindsHeavyHittersOfSkewedStream() {
+        HeavyHitters hitters = new HeavyHitters(4, 16);
+        Map<String, Long> exact = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 200_000; i++) {
+            // Roughly Zipfian over 10 000 urls
+            String url = "/page/" + (int) Math.floor(Math.pow(10_000, random.nextDouble()));
+            hitters.offer(url);
+            exact.merge(url, 1L, Long::sum);
+        }
+        List<String> expected = exact.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(5)
+                .map(Map.Entry::getKey)
+                .toList();
+
+        List<HeavyHitters.Hitter> top = hitters.top(5);
+
+        assertEquals(expected, top.stream().map(HeavyHitters.Hitter::item).toList());
+        for (HeavyHitters.Hitter hitter : top) {
+            long count = exact.get(hitter.item());
+            assertTrue(hitter.count() >= count && hitter.count() - hitter.error() <= count);
+        }
+    }
+
+    @Test
+    void testOffer_CountsConcurrentVisits() throws Exception {
+        HeavyHitters hitters = new HeavyHitters(16, 64);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        hitters.offer("/url/" + (i % 50));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        List<HeavyHitters.Hitter> top = hitters.top(100);
+
+        assertEquals(50, top.size());
+        assertTrue(top.stream().allMatch(hitter -> hitter.count() == 800 && hitter.error() == 0));
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.bookblog.testservice;
+
+import com.example.bookblog.service.HyperLogLog;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogTest {
+
+    @Test
+    void testEstimate_SmallCountsAreNearlyExact() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 1000; i++) {
+            sketch.offer("visitor-" + i);
+            sketch.offer("visitor-" + i);
+        }
+
+        assertEquals(1000, sketch.estimate(), 20);
+    }
+
+    @Test
+    void testEstimate_LargeCountsStayWithinErrorBound() {
+        HyperLogLog sketch = new HyperLogLog();
+        int distinct = 500_000;
+        for (int i = 0; i < distinct; i++) {
+            sketch.offer("visitor-" + i);
+        }
+
+        assertEquals(distinct, sketch.estimate(), 3 * HyperLogLog.STANDARD_ERROR * distinct);
+    }
+
+    @Test
+    void testMerge_EstimatesUnion() {
+        HyperLogLog first = new HyperLogLog();
+        HyperLogLog second = new HyperLogLog();
+        HyperLogLog union = new HyperLogLog();
+        for (int i = 0; i < 60_000; i++) {
+            (i < 40_000 ? first : second).offer("visitor-" + i);
+            if (i >= 20_000 && i < 40_000) {
+                second.offer("visitor-" + i);
+            }
+            union.offer("visitor-" + i);
+        }
+
+        first.merge(second);
+
+        assertEquals(union.estimate(), first.estimate());
+    }
+
+    @Test
+    void testOffer_ReportsOnlyChanges() {
+        HyperLogLog sketch = new HyperLogLog();
+
+        assertTrue(sketch.offer("alice"));
+        assertFalse(sketch.offer("alice"));
+    }
+
+    @Test
+    void testToBytes_StaysSparseUntilDenseIsSmaller() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 100; i++) {
+            sketch.offer("visitor-" + i);
+        }
+        byte[] sparse = sketch.toBytes();
+        for (int i = 100; i < 10_000; i++) {
+            sketch.offer("visitor-" + i);
+        }
+        byte[] dense = sketch.toBytes();
+
+        assertTrue(sparse.length < 100 * 4);
+        assertEquals(100, HyperLogLog.fromBytes(sparse).estimate(), 2);
+        assertEquals(HyperLogLog.REGISTERS, dense.length);
+        assertEquals(sketch.estimate(), HyperLogLog.fromBytes(dense).estimate());
+    }
+
+    @Test
+    void testFromBytes_RoundTrips() {
+        HyperLogLog sketch = new HyperLogLog();
+        sketch.offer("a");
+        sketch.offer("b");
+
+        byte[] bytes = sketch.toBytes();
+
+        assertEquals(2, HyperLogLog.fromBytes(bytes).estimate());
+        assertArrayEquals(bytes, HyperLogLog.fromBytes(bytes).toBytes());
+        assertEquals(0, HyperLogLog.fromBytes(null).estimate());
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(new byte[16]));
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.bookblog.testservice;
+
+import com.example.bookblog.service.LogExportService;
+import com.example.bookblog.service.LogExportService.ExportJob;
+import com.example.bookblog.service.LogExportService.Status;
+import com.example.bookblog.service.LogSearchService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class LogExportServiceTest {
+
+    private static final LocalDateTime FROM = LocalDateTime.of(2025, 3, 1, 10, 0);
+    private static final LocalDateTime TO = LocalDateTime.of(2025, 3, 1, 11, 0);
+
+    @TempDir
+    Path directory;
+
+    private LogSearchService logSearchService;
+    private LogExportService logExportService;
+
+    @AfterEach
+    void tearDown() {
+        logExportService.shutdown();
+        if (logSearchService != null) {
+            logSearchService.shutdown();
+        }
+    }
+
+    @Test
+    void submit_CopiesTheLogOrTheLinesOfTheRange() throws IOException {
+        Path logFile = directory.resolve("application.log");
+        Files.writeString(logFile, "2025-03-01 09:59:59 - INFO - До\n"
+                + "2025-03-01 10:30:00 - WARN - В интервале\n"
+                + "2025-03-01 11:00:00 - INFO - После\n");
+        logSearchService = new LogSearchService(logFile.toString(), 1);
+        logExportService = service(logSearchService, 1, 4, DataSize.ofMegabytes(1),
+                Duration.ofHours(1));
+
+        ExportJob copy = await(logExportService.submit(null, null));
+        ExportJob range = await(logExportService.submit(FROM, TO));
+
+        assertEquals(Status.COMPLETED, copy.getStatus());
+        assertEquals(100, copy.getProgress());
+        assertEquals(Files.readString(logFile), Files.readString(copy.getFile().orElseThrow()));
+        assertEquals("2025-03-01 10:30:00 - WARN - В интервале\n",
+                Files.readString(range.getFile().orElseThrow()));
+        assertEquals(Files.size(logFile) + Files.size(range.getFile().get()),
+                logExportService.getStoredBytes());
+        assertSame(copy, logExportService.find(copy.getId()).orElseThrow());
+    }
+
+    @Test
+    void cancel_StopsRunningAndQueuedJobsAndRejectsWhenTheQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        logSearchService = mock(LogSearchService.class);
+        when(logSearchService.findByTime(any(), any())).thenAnswer(invocation -> {
+            started.countDown();
+            // Stands for a long scan; cancelling interrupts it
+            new CountDownLatch(1).await();
+            return Optional.empty();
+        });
+        logExportService = service(logSearchService, 1, 1, DataSize.ofMegabytes(1),
+                Duration.ofHours(1));
+
+        ExportJob running = logExportService.submit(FROM, TO);
+        started.await();
+        ExportJob queued = logExportService.submit(FROM, TO);
+        assertThrows(RejectedExecutionException.class, () -> logExportService.submit(FROM, TO));
+
+        assertTrue(logExportService.cancel(queued.getId()));
+        assertTrue(logExportService.cancel(running.getId()));
+        assertFalse(logExportService.cancel(running.getId()));
+        assertEquals(Status.CANCELLED, running.getStatus());
+        assertEquals(Status.CANCELLED, queued.getStatus());
+        assertTrue(running.getFile().isEmpty());
+        // The freed thread and queue slot take new jobs
+        ExportJob next = logExportService.submit(FROM, TO);
+        verify(logSearchService, timeout(5000).times(2)).findByTime(FROM, TO);
+        logExportService.cancel(next.getId());
+        assertFalse(logExportService.cancel("unknown"));
+    }
+
+    @Test
+    void submit_ReservesTheLogSizeSoQueuedJobsCannotOverfillTheStorage() throws Exception {
+        Path logFile = directory.resolve("application.log");
+        Files.writeString(logFile, "2025-03-01 10:00:00 - INFO - запись\n".repeat(10));
+        long size = Files.size(logFile);
+        CountDownLatch release = new CountDownLatch(1);
+        logSearchService = mock(LogSearchService.class);
+        when(logSearchService.findByTime(any(), any())).thenAnswer(invocation -> {
+            release.await();
+            return Optional.empty();
+        });
+        logExportService = service(logSearchService, 1, 4, DataSize.ofBytes(2 * size + 1),
+                Duration.ofHours(1));
+
+        ExportJob running = logExportService.submit(FROM, TO);
+        ExportJob queued = logExportService.submit(null, null);
+        assertThrows(RejectedExecutionException.class,
+                () -> logExportService.submit(null, null));
+        assertEquals(2 * size, logExportService.getStoredBytes());
+
+        release.countDown();
+        await(running);
+        await(queued);
+
+        assertEquals(Status.COMPLETED, queued.getStatus());
+        // The empty range gives its reservation back
+        assertEquals(size, logExportService.getStoredBytes());
+    }
+
+    @Test
+    void submit_FailsJobsThatOutgrowTheStorageLimit() throws IOException {
+        Path logFile = directory.resolve("application.log");
+        Files.writeString(logFile, "2025-03-01 10:00:00 - INFO - запись\n");
+        LogSearchService.Selection selection = mock(LogSearchService.Selection.class);
+        logSearchService = mock(LogSearchService.class);
+        when(logSearchService.findByTime(FROM, TO)).thenReturn(Optional.of(selection));
+        doAnswer(invocation -> {
+            invocation.getArgument(1, OutputStream.class).write(new byte[2000]);
+            return 0L;
+        }).when(logSearchService).write(eq(selection), any(), any());
+        logExportService = service(logSearchService, 1, 4, DataSize.ofBytes(1000),
+                Duration.ofHours(1));
+
+        ExportJob job = await(logExportService.submit(FROM, TO));
+
+        assertEquals(Status.FAILED, job.getStatus());
+        assertTrue(job.getError().contains("storage limit"));
+        assertEquals(0, logExportService.getStoredBytes());
+        try (var files = Files.list(directory.resolve("exports"))) {
+            assertEquals(0, files.count());
+        }
+        Files.writeString(logFile, "2025-03-01 10:00:00 - INFO - запись\n".repeat(100));
+        assertThrows(RejectedExecutionException.class,
+                () -> logExportService.submit(null, null));
+    }
+
+    @Test
+    void cleanup_ForgetsFinishedJobsAndDeletesTheirFilesAfterTheTtl() throws IOException {
+        Path logFile = directory.resolve("application.log");
+        Files.writeString(logFile, "2025-03-01 10:00:00 - INFO - запись\n");
+        Files.createDirectories(directory.resolve("exports"));
+        Path leftover = Files.writeString(directory.resolve("exports/log_old.log"), "old");
+        logExportService = service(null, 1, 4, DataSize.ofMegabytes(1), Duration.ZERO);
+        assertFalse(Files.exists(leftover));
+
+        ExportJob job = await(logExportService.submit(null, null));
+        Path file = job.getFile().orElseThrow();
+        logExportService.cleanup();
+
+        assertTrue(logExportService.find(job.getId()).isEmpty());
+        assertFalse(Files.exists(file));
+        assertEquals(0, logExportService.getStoredBytes());
+    }
+
+    @Test
+    void submit_FailsWithoutALog() {
+        logExportService = service(null, 1, 4, DataSize.ofMegabytes(1), Duration.ofHours(1));
+
+        ExportJob job = await(logExportService.submit(null, null));
+
+        assertEquals(Status.FAILED, job.getStatus());
+        assertEquals("Source log file not found", job.getError());
+    }
+
+    private LogExportService service(LogSearchService search, int threads, int queueCapacity,
+                                     DataSize maxSize, Duration ttl) {
+        return new LogExportService(search, directory.resolve("application.log").toString(),
+                directory.resolve("exports").toString(), threads, queueCapacity, 100, maxSize,
+                ttl);
+    }
+
+    private static ExportJob await(ExportJob job) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (job.getStatus() == Status.PENDING || job.getStatus() == Status.PROCESSING) {
+            assertTrue(System.nanoTime() < deadline, "export did not finish");
+            Thread.onSpinWait();
+        }
+        return job;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.bookblog.testservice;
+
+import com.example.bookblog.service.LogIndex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogIndexTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 3, 1, 0, 0);
+    private static final long INTERVAL = 4096;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void slice_CoversAboutOneDayOfAThirtyDayLog() throws IOException {
+        Path log = directory.resolve("application.log");
+        appendMinutes(log, 0, 30 * 24 * 60);
+        LogIndex index = new LogIndex(log, directory.resolve("application.log.idx"), INTERVAL);
+
+        LogIndex.Slice day = index.slice(bytes("2025-03-15"), bytes("2025-03-16"));
+
+        long size = Files.size(log);
+        assertTrue(day.end() - day.start() < size / 30 + 2 * INTERVAL,
+                "read " + (day.end() - day.start()) + " of " + size);
+        assertTrue(line(log, day.start()).compareTo("2025-03-15") < 0);
+        assertTrue(line(log, day.end()).startsWith("2025-03-16"));
+    }
+
+    @Test
+    void refresh_IndexesOnlyWhatTheLogGained() throws IOException {
+        Path log = directory.resolve("application.log");
+        Path sidecar = directory.resolve("application.log.idx");
+        appendMinutes(log, 0, 1000);
+        LogIndex index = new LogIndex(log, sidecar, INTERVAL);
+        index.refresh();
+        int entries = index.size();
+        // A line still being written is left for the next refresh
+        Files.writeString(log, "2025-03-01 16:40:00 - INFO - hal", StandardOpenOption.APPEND);
+        index.refresh();
+        Files.writeString(log, "f\n", StandardOpenOption.APPEND);
+        appendMinutes(log, 1001, 2000);
+
+        LogIndex reopened = new LogIndex(log, sidecar, INTERVAL);
+        reopened.refresh();
+        LogIndex rebuilt = new LogIndex(log, directory.resolve("fresh.idx"), INTERVAL);
+        rebuilt.refresh();
+
+        assertTrue(entries > 10 && reopened.size() > entries);
+        assertEquals(rebuilt.size(), reopened.size());
+        LogIndex.Slice late = reopened.slice(bytes("2025-03-02 06"), bytes("2025-03-02 07"));
+        assertEquals(late, rebuilt.slice(bytes("2025-03-02 06"), bytes("2025-03-02 07")));
+    }
+
+    @Test
+    void refresh_StartsOverWhenTheLogIsRolled() throws IOException {
+        Path log = directory.resolve("application.log");
+        appendMinutes(log, 0, 2000);
+        LogIndex index = new LogIndex(log, directory.resolve("application.log.idx"), INTERVAL);
+        index.refresh();
+
+        Files.delete(log);
+        appendMinutes(log, 5000, 5100);
+
+        LogIndex.Slice slice = index.slice(bytes("2025-03-01"), bytes("2025-03-02"));
+        assertEquals(0, slice.start());
+        assertTrue(index.size() <= 2);
+    }
+
+    private static void appendMinutes(Path log, int from, int to) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (int minute = from; minute < to; minute++) {
+            lines.append(START.plusMinutes(minute).toString().replace('T', ' '))
+                    .append(":00 - INFO - Событие ").append(minute).append('\n');
+            if (minute % 50 == 0) {
+                lines.append("\tat com.example.bookblog.Service.run(Service.java:1)\n");
+            }
+        }
+        Files.writeString(log, lines, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static String line(Path log, long offset) throws IOException {
+        byte[] bytes = Files.readAllBytes(log);
+        return new String(bytes, (int) offset, Math.min(40, bytes.length - (int) offset),
+                StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(String bound) {
+        return bound.getBytes(StandardCharsets.US_ASCII);
+    }
+}
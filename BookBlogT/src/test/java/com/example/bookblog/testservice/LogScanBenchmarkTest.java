@@ -0,0 +1,115 @@
+package com.example.bookblog.testservice;
+
+import com.example.bookblog.service.LogSearchService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Throughput of a search over a synthetic history of rolled log segments, by the number of
+// threads scanning it. Most lines are controller entry logs that the search leaves out, so the
+// time goes to scanning rather than to writing the result. Run with -Dbenchmark.log.mb=4096 for
+// a multi-GB log; the thread counts go up to the cores of the machine. Runs only with -Pbenchmark.
+@Tag("benchmark")
+class LogScanBenchmarkTest {
+    private static final Logger logger = LoggerFactory.getLogger(LogScanBenchmarkTest.class);
+
+    private static final int LOG_MB = Integer.getInteger("benchmark.log.mb", 256);
+    private static final int SEGMENTS = 4;
+    private static final LocalDateTime START = LocalDateTime.of(2025, 3, 1, 0, 0);
+    private static final DateTimeFormatter TIMESTAMP =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void parallelScan_ThroughputByThreads() throws IOException {
+        Path logFile = directory.resolve("application.log");
+        long lines = generate(logFile);
+        long bytes = 0;
+        try (var files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                bytes += Files.size(file);
+            }
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        List<Integer> levels = new ArrayList<>();
+        for (int threads = 1; threads <= Math.max(2, cores); threads *= 2) {
+            levels.add(threads);
+        }
+
+        logger.info("{} MiB in {} segments, {} lines kept, {} cores",
+                bytes >> 20, SEGMENTS + 1, lines, cores);
+        double sequential = 0;
+        for (int threads : levels) {
+            LogSearchService service = new LogSearchService(logFile.toString(), threads);
+            try {
+                // The first search builds the segment indexes and warms the page cache
+                assertEquals(lines, search(service));
+                long started = System.nanoTime();
+                assertEquals(lines, search(service));
+                double seconds = (System.nanoTime() - started) / 1e9;
+                sequential = threads == 1 ? seconds : sequential;
+                logger.info("{} threads: {} s, {} MiB/s, x{}", threads,
+                        String.format("%.2f", seconds),
+                        String.format("%.0f", bytes / seconds / (1 << 20)),
+                        String.format("%.2f", sequential / seconds));
+            } finally {
+                service.shutdown();
+            }
+        }
+    }
+
+    private static long search(LogSearchService service) throws IOException {
+        return service.write(service.findByPrefix("2025").orElseThrow(),
+                OutputStream.nullOutputStream());
+    }
+
+    // Rolled daily segments and the active log, about a fifth of the lines worth returning;
+    // returns how many
+    private static long generate(Path logFile) throws IOException {
+        Random random = new Random(42);
+        long perSegment = (long) LOG_MB * 1024 * 1024 / (SEGMENTS + 1);
+        long kept = 0;
+        for (int segment = 0; segment <= SEGMENTS; segment++) {
+            LocalDateTime day = START.plusDays(segment);
+            Path path = segment < SEGMENTS
+                    ? logFile.resolveSibling("application.log." + day.toLocalDate() + ".0")
+                    : logFile;
+            long written = 0;
+            try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+                for (long n = 0; written < perSegment; n++) {
+                    // Lines are about 110 bytes, spread over the day
+                    String line = TIMESTAMP.format(day.plusSeconds(
+                            Math.min(86_399, n * 86_400 * 110 / perSegment)))
+                            + (random.nextInt(5) == 0
+                            ? " - WARN - Медленный запрос к /api/books: " + random.nextInt(5000)
+                            + " ms"
+                            : " - INFO - Вход в метод контроллера: BookController.getBooks "
+                            + "с аргументами [" + random.nextInt(1000) + "]");
+                    writer.write(line);
+                    writer.write('\n');
+                    written += line.getBytes(StandardCharsets.UTF_8).length + 1;
+                    kept += line.contains("WARN") ? 1 : 0;
+                }
+            }
+        }
+        return kept;
+    }
+}
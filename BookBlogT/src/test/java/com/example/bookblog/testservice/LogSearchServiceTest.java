@@ -0,0 +1,208 @@
+package com.example.bookblog.testservice;
+
+import com.example.bookblog.service.LogSearchService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogSearchServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private Path logFile;
+    private LogSearchService logSearchService;
+
+    @BeforeEach
+    void setUp() {
+        logFile = directory.resolve("application.log");
+        logSearchService = new LogSearchService(logFile.toString(), 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        logSearchService.shutdown();
+    }
+
+    @Test
+    void writeMatches_StreamsLinesOfTheDateOnly() throws IOException {
+        Files.writeString(logFile, String.join("\n",
+                "2025-02-28 23:59:59 - INFO - Книга создана",
+                "2025-03-01 00:00:01 - INFO - Вход в метод контроллера: getBooks",
+                "2025-03-01 00:00:02 - WARN - Медленный запрос",
+                "\tat com.example.bookblog.Service.run(Service.java:1)",
+                "2025-03-01 10:15:00 - ERROR - Ошибка",
+                "2025-03-02 00:00:00 - INFO - Следующий день") + "\n");
+
+        assertEquals("2025-03-01 00:00:02 - WARN - Медленный запрос\n"
+                + "2025-03-01 10:15:00 - ERROR - Ошибка\n",
+                text(logSearchService.findByPrefix("2025-03-01")));
+        assertEquals("2025-03-01 10:15:00 - ERROR - Ошибка\n",
+                text(logSearchService.findByPrefix("2025-03-01 10")));
+    }
+
+    @Test
+    void findByTime_SelectsLinesWithinTheRange() throws IOException {
+        StringBuilder log = new StringBuilder();
+        LocalDateTime start = LocalDateTime.of(2025, 3, 1, 0, 0);
+        for (int minute = 0; minute < 5000; minute++) {
+            log.append(start.plusMinutes(minute).toString().replace('T', ' '))
+                    .append(":00 - INFO - Событие ").append(minute).append('\n');
+        }
+        Files.writeString(logFile, log);
+
+        Optional<LogSearchService.Selection> selection = logSearchService.findByTime(
+                start.plusHours(40), start.plusHours(40).plusMinutes(3));
+
+        assertEquals("2025-03-02 16:00:00 - INFO - Событие 2400\n"
+                + "2025-03-02 16:01:00 - INFO - Событие 2401\n"
+                + "2025-03-02 16:02:00 - INFO - Событие 2402\n", text(selection));
+        assertTrue(selection.get().getBytes() < 70 * 1024);
+        assertTrue(logSearchService.findByTime(start.minusDays(1), start).isEmpty());
+    }
+
+    @Test
+    void writeMatches_HandlesLinesLongerThanABlockAndAnUnterminatedLastLine()
+            throws IOException {
+        String longLine = "2025-03-01 12:00:00 - INFO - " + "x".repeat(200_000);
+        Files.writeString(logFile, longLine + "\n2025-03-01 12:00:01 - INFO - last");
+
+        assertEquals(longLine + "\n2025-03-01 12:00:01 - INFO - last\n",
+                text(logSearchService.findByPrefix("2025-03-01")));
+    }
+
+    @Test
+    void findByPrefix_IsEmptyWithoutMatchesOrLog() throws IOException {
+        assertTrue(logSearchService.findByPrefix("2025-03-01").isEmpty());
+        logSearchService.refreshIndex();
+        assertFalse(Files.exists(directory.resolve("application.log.idx")));
+
+        Files.writeString(logFile, "2025-02-28 23:59:59 - INFO - Книга создана\n");
+
+        assertTrue(logSearchService.findByPrefix("2025-03-01").isEmpty());
+    }
+
+    @Test
+    void findByTime_SearchesRolledAndCompressedSegments() throws IOException {
+        gzip(directory.resolve("application.log.2025-02-28.0.gz"),
+                "2025-02-28 22:00:00 - INFO - Февраль\n2025-02-28 23:30:00 - INFO - Поздно\n");
+        Files.writeString(directory.resolve("application.log.2025-03-01.0"),
+                "2025-03-01 08:00:00 - INFO - Март\n\tat Service.run(Service.java:1)\n");
+        Files.writeString(logFile, "2025-03-02 00:30:00 - INFO - Сегодня\n"
+                + "2025-03-02 09:00:00 - INFO - Позже\n");
+        Files.writeString(directory.resolve("filtered-2025-03-01.log"),
+                "2025-03-01 08:00:00 - INFO - Выгрузка\n");
+
+        Optional<LogSearchService.Selection> selection = logSearchService.findByTime(
+                LocalDateTime.of(2025, 2, 28, 23, 0), LocalDateTime.of(2025, 3, 2, 1, 0));
+
+        assertEquals("2025-02-28 23:30:00 - INFO - Поздно\n"
+                + "2025-03-01 08:00:00 - INFO - Март\n"
+                + "2025-03-02 00:30:00 - INFO - Сегодня\n", text(selection));
+        assertEquals(3, selection.get().getSegments());
+        // Index sidecars are left alone, and segments that end before the day are skipped
+        assertTrue(Files.exists(directory.resolve("application.log.2025-03-01.0.idx")));
+        assertEquals(1, logSearchService.findByPrefix("2025-03-02").get().getSegments());
+    }
+
+    @Test
+    void findByPrefix_DeletesIndexesOfDeletedAndCompressedSegments() throws IOException {
+        Path compressed = directory.resolve("application.log.2025-03-01.0");
+        Path deleted = directory.resolve("application.log.2025-03-01.1");
+        Files.writeString(compressed, "2025-03-01 08:00:00 - INFO - a\n");
+        Files.writeString(deleted, "2025-03-01 09:00:00 - INFO - b\n");
+        Files.writeString(logFile, "2025-03-01 10:00:00 - INFO - c\n");
+        assertEquals(3, logSearchService.findByPrefix("2025-03-01").get().getSegments());
+        assertTrue(Files.exists(directory.resolve("application.log.2025-03-01.0.idx")));
+
+        gzip(directory.resolve("application.log.2025-03-01.0.gz"), Files.readString(compressed));
+        Files.delete(compressed);
+        Files.delete(deleted);
+
+        assertEquals("2025-03-01 08:00:00 - INFO - a\n2025-03-01 10:00:00 - INFO - c\n",
+                text(logSearchService.findByPrefix("2025-03-01")));
+        assertFalse(Files.exists(directory.resolve("application.log.2025-03-01.0.idx")));
+        assertFalse(Files.exists(directory.resolve("application.log.2025-03-01.1.idx")));
+        assertTrue(Files.exists(directory.resolve("application.log.idx")));
+    }
+
+    @Test
+    void findByPrefix_IsEmptyWithoutLogFile() throws IOException {
+        LogSearchService consoleOnly = new LogSearchService("", 1);
+        try {
+            consoleOnly.refreshIndex();
+
+            assertTrue(consoleOnly.findByPrefix("2025-03-01").isEmpty());
+        } finally {
+            consoleOnly.shutdown();
+        }
+    }
+
+    @Test
+    void write_MergesOverlappingSegmentsInTimestampOrder() throws IOException {
+        Files.writeString(directory.resolve("application.log.2025-03-01.0"),
+                "2025-03-01 10:00:00 - INFO - a\n2025-03-01 10:00:02 - INFO - c\n");
+        gzip(directory.resolve("application.log.2025-03-01.1.gz"),
+                "2025-03-01 10:00:01 - INFO - b\n2025-03-01 10:00:02 - INFO - d\n");
+        Files.writeString(logFile, "2025-03-01 10:00:01 - INFO - e\n");
+
+        assertEquals("2025-03-01 10:00:00 - INFO - a\n"
+                + "2025-03-01 10:00:01 - INFO - b\n"
+                + "2025-03-01 10:00:01 - INFO - e\n"
+                + "2025-03-01 10:00:02 - INFO - c\n"
+                + "2025-03-01 10:00:02 - INFO - d\n",
+                text(logSearchService.findByPrefix("2025-03-01")));
+    }
+
+    @Test
+    void write_ScansChunksOfLargeSegmentsInParallel() throws IOException {
+        Random random = new Random(7);
+        StringBuilder log = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        LocalDateTime start = LocalDateTime.of(2025, 3, 1, 0, 0);
+        for (int second = 0; log.length() < 4 * 1024 * 1024; second++) {
+            String line = start.plusSeconds(second).toString().replace('T', ' ')
+                    + (second % 60 == 0 ? ":00" : "") + " - INFO - "
+                    + "x".repeat(random.nextInt(10) == 0 ? random.nextInt(150_000) : 80);
+            log.append(line).append('\n');
+            if (line.startsWith("2025-03-01 0")) {
+                expected.add(line + "\n");
+            }
+            if (second % 7 == 0) {
+                log.append("\tat com.example.bookblog.Service.run(Service.java:1)\n");
+            }
+        }
+        Files.writeString(directory.resolve("application.log.2025-03-01.0"), log);
+
+        assertEquals(String.join("", expected),
+                text(logSearchService.findByPrefix("2025-03-01 0")));
+    }
+
+    private static void gzip(Path path, String content) throws IOException {
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(path))) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private String text(Optional<LogSearchService.Selection> selection) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        logSearchService.write(selection.orElseThrow(), out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.bookblog.testservice;
 
+import com.example.bookblog.cache.InMemoryCache;
 import com.example.bookblog.entity.Book;
 import com.example.bookblog.entity.Response;
 import com.example.bookblog.entity.User;
@@ -8,6 +9,7 @@ import com.example.bookblog.exception.UserNotFoundException;
 import com.example.bookblog.repository.BookRepository;
 import com.example.bookblog.repository.ResponseRepository;
 import com.example.bookblog.repository.UserRepository;
+import com.example.bookblog.service.CacheInvalidationService;
 import com.example.bookblog.service.ResponseService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -35,6 +37,12 @@ class ResponseServiceTest {
     @Mock
     private BookRepository bookRepository;
 
+    @Mock
+    private InMemoryCache<Long, List<Response>> responseCache;
+
+    @Mock
+    private CacheInvalidationService cacheInvalidationService;
+
     @InjectMocks
     private ResponseService responseService;
 
@@ -0,0 +1,34 @@
+package com.example.bookblog.testservice;
+
+import com.example.bookblog.service.UrlCanonicalizer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UrlCanonicalizerTest {
+
+    @Test
+    void testCanonicalize_SortsParametersAndDropsTracking() {
+        assertEquals("/books?a=1&b=2&b=3",
+                UrlCanonicalizer.canonicalize("/books/?b=3&utm_source=mail&a=1&b=2&fbclid=x"));
+        assertEquals("/books", UrlCanonicalizer.canonicalize("/books?utm_campaign=spring"));
+    }
+
+    @Test
+    void testCanonicalize_NormalizesSchemeHostAndPath() {
+        assertEquals("https://example.com/Books",
+                UrlCanonicalizer.canonicalize(" HTTPS://Example.COM:443/Books//#reviews "));
+        assertEquals("http://example.com:8080/",
+                UrlCanonicalizer.canonicalize("http://example.com:8080"));
+        assertEquals("/", UrlCanonicalizer.canonicalize("/"));
+    }
+
+    @Test
+    void testCanonicalize_IsIdempotent() {
+        String canonical = UrlCanonicalizer.canonicalize("HTTP://a.io:80/x/?z=1&y&gclid=2#top");
+
+        assertEquals("http://a.io/x?y&z=1", canonical);
+        assertEquals(canonical, UrlCanonicalizer.canonicalize(canonical));
+        assertNull(UrlCanonicalizer.canonicalize(null));
+    }
+}
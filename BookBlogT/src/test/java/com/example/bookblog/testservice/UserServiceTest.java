@@ -1,5 +1,7 @@
 package com.example.bookblog.testservice;
 
+import com.example.bookblog.cache.InMemoryCache;
+import com.example.bookblog.dto.UserWithResponsesAndCategoryDto;
 import com.example.bookblog.entity.Category;
 import com.example.bookblog.entity.User;
 import com.example.bookblog.exception.CategoryNotFoundException;
@@ -8,6 +10,8 @@ import com.example.bookblog.exception.UserNotFoundException;
 import com.example.bookblog.exception.ValidationException;
 import com.example.bookblog.repository.CategoryRepository;
 import com.example.bookblog.repository.UserRepository;
+import com.example.bookblog.service.CacheInvalidationService;
+import com.example.bookblog.service.CategoryService;
 import com.example.bookblog.service.UserService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -31,6 +35,15 @@ class UserServiceTest {
     @Mock
     private CategoryRepository categoryRepository;
 
+    @Mock
+    private InMemoryCache<Long, UserWithResponsesAndCategoryDto> userCache;
+
+    @Mock
+    private CacheInvalidationService cacheInvalidationService;
+
+    @Mock
+    private CategoryService categoryService;
+
     @InjectMocks
     private UserService userService;
 
@@ -90,6 +103,7 @@ class UserServiceTest {
         userService.addUserToGroup(user.getId(), category.getId());
 
         verify(userRepository, times(1)).save(user);
+        verify(categoryService).membersChanged(category);
     }
 
 
@@ -146,6 +160,14 @@ class UserServiceTest {
     void testGetUserById_NotFound() {
         when(userRepository.findById(user.getId())).thenReturn(Optional.empty());
         assertThrows(UserNotFoundException.class, () -> userService.getUserById(user.getId()));
+        verify(userCache).markAbsent(user.getId());
+    }
+
+    @Test
+    void testGetUserById_KnownAbsentSkipsDatabase() {
+        when(userCache.isKnownAbsent(user.getId())).thenReturn(true);
+        assertThrows(UserNotFoundException.class, () -> userService.getUserById(user.getId()));
+        verify(userRepository, never()).findById(any());
     }
 
     @Test
@@ -207,6 +229,7 @@ class UserServiceTest {
         userService.removeUserFromGroup(user.getId(), category.getId());
 
         verify(userRepository, times(1)).save(user);
+        verify(categoryService).membersChanged(category);
         assertFalse(user.getCategories().contains(category));
     }
 
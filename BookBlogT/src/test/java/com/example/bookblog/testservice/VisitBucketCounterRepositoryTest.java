@@ -0,0 +1,55 @@
+package com.example.bookblog.testservice;
+
+import com.example.bookblog.entity.VisitBucket;
+import com.example.bookblog.entity.VisitResolution;
+import com.example.bookblog.repository.VisitBucketCounterRepositoryImpl;
+import com.example.bookblog.service.VisitUrlRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VisitBucketCounterRepositoryTest {
+
+    private static final LocalDateTime HOUR = LocalDateTime.of(2025, 3, 1, 12, 0);
+    private static final long ID = VisitUrlRegistry.idOf("/a", 0);
+
+    private JdbcTemplate jdbcTemplate;
+    private VisitBucketCounterRepositoryImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:visit-buckets;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("DROP TABLE IF EXISTS visit_buckets");
+        jdbcTemplate.execute("CREATE TABLE visit_buckets (url_id BIGINT NOT NULL, "
+                + "resolution VARCHAR(8) NOT NULL, bucket_start TIMESTAMP NOT NULL, "
+                + "count BIGINT NOT NULL, PRIMARY KEY (url_id, resolution, bucket_start))");
+        repository = new VisitBucketCounterRepositoryImpl(jdbcTemplate);
+    }
+
+    @Test
+    void addCounts_InsertsNewBucketsAndAddsToExistingOnes() {
+        repository.addCounts(List.of(
+                new VisitBucket(ID, VisitResolution.HOUR, HOUR, 3),
+                new VisitBucket(ID, VisitResolution.DAY, HOUR.withHour(0), 3)));
+        repository.addCounts(List.of(
+                new VisitBucket(ID, VisitResolution.HOUR, HOUR, 2),
+                new VisitBucket(ID, VisitResolution.HOUR, HOUR.plusHours(1), 1)));
+
+        assertEquals(5, count(VisitResolution.HOUR, HOUR));
+        assertEquals(1, count(VisitResolution.HOUR, HOUR.plusHours(1)));
+        assertEquals(3, count(VisitResolution.DAY, HOUR.withHour(0)));
+    }
+
+    private long count(VisitResolution resolution, LocalDateTime start) {
+        return jdbcTemplate.queryForObject("SELECT count FROM visit_buckets "
+                        + "WHERE url_id = ? AND resolution = ? AND bucket_start = ?",
+                Long.class, ID, resolution.name(), start);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.bookblog.testservice;
+
+import com.example.bookblog.repository.VisitCounterRepositoryImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VisitCounterRepositoryTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private VisitCounterRepositoryImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:visit-counters;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("DROP TABLE IF EXISTS visit_counts");
+        jdbcTemplate.execute("CREATE TABLE visit_counts (id BIGINT PRIMARY KEY, "
+                + "count INTEGER NOT NULL, last_updated TIMESTAMP, "
+                + "visitor_sketch VARBINARY(4096))");
+        repository = new VisitCounterRepositoryImpl(jdbcTemplate);
+    }
+
+    @Test
+    void addVisits_InsertsNewIdsAndAddsToExistingOnes() {
+        jdbcTemplate.update("INSERT INTO visit_counts (id, count) VALUES (-7, 5)");
+        LocalDateTime now = LocalDateTime.of(2025, 3, 1, 12, 0);
+
+        repository.addVisits(Map.of(-7L, 3L, 42L, 2L), now);
+        repository.addVisits(Map.of(42L, 1L), now);
+
+        assertEquals(8, count(-7));
+        assertEquals(3, count(42));
+        assertEquals(now, jdbcTemplate.queryForObject(
+                "SELECT last_updated FROM visit_counts WHERE id = -7", LocalDateTime.class));
+    }
+
+    @Test
+    void visitorSketches_AreReadAndWrittenById() {
+        repository.addVisits(Map.of(1L, 1L, 2L, 1L), LocalDateTime.now());
+
+        repository.saveVisitorSketches(Map.of(1L, new byte[] {1, 2, 3}));
+
+        Map<Long, byte[]> sketches = repository.lockVisitorSketches(List.of(1L, 2L, 3L));
+        assertEquals(2, sketches.size());
+        assertArrayEquals(new byte[] {1, 2, 3}, sketches.get(1L));
+        assertNull(sketches.get(2L));
+    }
+
+    private int count(long id) {
+        return jdbcTemplate.queryForObject("SELECT count FROM visit_counts WHERE id = ?",
+                Integer.class, id);
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.bookblog.testservice;
+
+import com.example.bookblog.dto.VisitSeriesDto;
+import com.example.bookblog.entity.VisitBucket;
+import com.example.bookblog.entity.VisitResolution;
+import com.example.bookblog.exception.ValidationException;
+import com.example.bookblog.repository.VisitBucketRepository;
+import com.example.bookblog.service.VisitHistory;
+import com.example.bookblog.service.VisitUrlRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class VisitHistoryTest {
+
+    private static final String URL = "/books/1";
+    private static final long ID = VisitUrlRegistry.idOf(URL, 0);
+    private static final LocalDateTime TEN = LocalDateTime.of(2025, 3, 1, 10, 0);
+
+    @Mock
+    private VisitBucketRepository bucketRepository;
+
+    @Mock
+    private VisitUrlRegistry urlRegistry;
+
+    private MutableClock clock;
+    private VisitHistory history;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock();
+        history = new VisitHistory(bucketRepository, urlRegistry, clock);
+    }
+
+    @Test
+    void testRange_ServesRecentMinutesFromRing() {
+        visitAt(TEN.plusMinutes(1), 2);
+        visitAt(TEN.plusMinutes(3), 1);
+        clock.set(TEN.plusMinutes(5));
+
+        List<VisitSeriesDto.Point> points =
+                history.range(URL, VisitResolution.MINUTE, TEN, TEN.plusMinutes(4));
+
+        assertEquals(List.of(0L, 2L, 0L, 1L), counts(points));
+        assertEquals(TEN.plusMinutes(1), points.get(1).getStart());
+        verifyNoInteractions(bucketRepository);
+    }
+
+    @Test
+    void testRange_ReadsStoredRowsOnlyBeforeRingStart() {
+        visitAt(TEN.plusMinutes(5), 3);
+        visitAt(TEN.plusMinutes(70), 1);
+        when(urlRegistry.find(URL)).thenReturn(Optional.of(ID));
+        when(bucketRepository.findRange(eq(ID), eq(VisitResolution.HOUR), any(), any()))
+                .thenReturn(List.of(new VisitBucket(ID, VisitResolution.HOUR, TEN, 4)));
+
+        List<VisitSeriesDto.Point> points =
+                history.range(URL, VisitResolution.HOUR, TEN, TEN.plusHours(2));
+
+        // Stored visits of an earlier run plus the ones not yet rolled up
+        assertEquals(List.of(7L, 1L), counts(points));
+        verify(bucketRepository).findRange(ID, VisitResolution.HOUR, TEN, TEN.plusHours(1));
+    }
+
+    @Test
+    void testRollup_StoresOnlyNewCounts() {
+        when(urlRegistry.resolveAll(anyCollection())).thenReturn(Map.of(URL, ID));
+        visitAt(TEN.plusMinutes(5), 2);
+
+        history.rollup();
+        history.rollup();
+        visitAt(TEN.plusMinutes(6), 1);
+        history.rollup();
+
+        List<Collection<VisitBucket>> batches = rollups(2);
+        assertEquals(2, batches.get(0).size());
+        assertTrue(batches.get(0).stream().allMatch(bucket -> bucket.getUrlId() == ID));
+        assertTrue(batches.get(0).stream().allMatch(bucket -> bucket.getCount() == 2));
+        assertTrue(batches.get(1).stream().allMatch(bucket -> bucket.getCount() == 1));
+        assertTrue(batches.get(1).stream().anyMatch(bucket ->
+                bucket.getResolution() == VisitResolution.DAY
+                        && bucket.getBucketStart().equals(TEN.toLocalDate().atStartOfDay())));
+    }
+
+    @Test
+    void testRollup_RetriesAfterFailure() {
+        doThrow(new QueryTimeoutException("timeout")).doNothing()
+                .when(bucketRepository).addCounts(anyCollection());
+        when(urlRegistry.resolveAll(anyCollection())).thenReturn(Map.of(URL, ID));
+        visitAt(TEN, 1);
+
+        history.rollup();
+        visitAt(TEN, 1);
+        history.rollup();
+
+        assertTrue(rollups(2).get(1).stream().allMatch(bucket -> bucket.getCount() == 2));
+    }
+
+    @Test
+    void testRollup_DropsIdleUrls() {
+        when(urlRegistry.resolveAll(anyCollection())).thenReturn(Map.of(URL, ID));
+        when(urlRegistry.find(URL)).thenReturn(Optional.of(ID));
+        visitAt(TEN, 1);
+        history.rollup();
+        clock.set(TEN.plusHours(3));
+        history.rollup();
+        when(bucketRepository.findRange(eq(ID), eq(VisitResolution.HOUR), any(), any()))
+                .thenReturn(List.of(new VisitBucket(ID, VisitResolution.HOUR, TEN, 1)));
+
+        List<VisitSeriesDto.Point> points =
+                history.range(URL, VisitResolution.HOUR, TEN, TEN.plusHours(2));
+
+        assertEquals(List.of(1L, 0L), counts(points));
+        verify(bucketRepository).findRange(ID, VisitResolution.HOUR, TEN, TEN.plusHours(2));
+    }
+
+    @Test
+    void testRange_RejectsInvalidRanges() {
+        clock.set(TEN);
+
+        assertThrows(ValidationException.class,
+                () -> history.range(URL, VisitResolution.HOUR, TEN, TEN));
+        assertThrows(ValidationException.class,
+                () -> history.range(URL, VisitResolution.MINUTE, TEN.minusDays(1), TEN));
+        assertThrows(ValidationException.class,
+                () -> history.range(URL, VisitResolution.HOUR, TEN.minusYears(1), TEN));
+    }
+
+    private void visitAt(LocalDateTime time, int visits) {
+        clock.set(time);
+        for (int i = 0; i < visits; i++) {
+            history.record(URL);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Collection<VisitBucket>> rollups(int expected) {
+        ArgumentCaptor<Collection<VisitBucket>> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(bucketRepository, times(expected)).addCounts(captor.capture());
+        return captor.getAllValues();
+    }
+
+    private static List<Long> counts(List<VisitSeriesDto.Point> points) {
+        return points.stream().map(VisitSeriesDto.Point::getCount).toList();
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now = TEN.toInstant(ZoneOffset.UTC);
+
+        void set(LocalDateTime time) {
+            now = time.toInstant(ZoneOffset.UTC);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
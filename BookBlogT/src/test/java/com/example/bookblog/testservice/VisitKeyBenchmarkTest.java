@@ -0,0 +1,162 @@
+package com.example.bookblog.testservice;
+
+import com.example.bookblog.cache.AdmissionPolicy;
+import com.example.bookblog.cache.InMemoryCache;
+import com.example.bookblog.service.VisitUrlRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Latency of single visit increments against a file-backed table of many urls, keyed by the url
+// itself as before and by its 64-bit id behind the url cache. Run with -Dbenchmark.urls=5000000
+// for a larger table. Runs only with -Pbenchmark.
+@Tag("benchmark")
+class VisitKeyBenchmarkTest {
+    private static final Logger logger = LoggerFactory.getLogger(VisitKeyBenchmarkTest.class);
+
+    private static final int URLS = Integer.getInteger("benchmark.urls", 1_000_000);
+    private static final int HOT_URLS = 10_000;
+    private static final int INCREMENTS = 20_000;
+    private static final int LOAD_BATCH = 10_000;
+
+    @TempDir
+    Path directory;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new SingleConnectionDataSource(
+                "jdbc:h2:file:" + directory.resolve("visits") + ";CACHE_SIZE=65536", "sa", "",
+                true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.destroy();
+    }
+
+    @Test
+    void urlAndIdKeys_IncrementLatency() {
+        jdbcTemplate.execute("CREATE TABLE visits (url VARCHAR(768) PRIMARY KEY, "
+                + "count INTEGER NOT NULL, last_updated TIMESTAMP)");
+        jdbcTemplate.execute("CREATE TABLE visit_urls (id BIGINT PRIMARY KEY, "
+                + "url VARCHAR(768) NOT NULL UNIQUE)");
+        jdbcTemplate.execute("CREATE TABLE visit_counts (id BIGINT PRIMARY KEY, "
+                + "count INTEGER NOT NULL, last_updated TIMESTAMP)");
+        load();
+        VisitUrlRegistry registry = new VisitUrlRegistry(jdbcTemplate,
+                InMemoryCache.<String, Long>builder()
+                        .maximumSize(2 * HOT_URLS)
+                        .expireAfterWrite(Duration.ofDays(1))
+                        .admissionPolicy(AdmissionPolicy.TINY_LFU)
+                        .build());
+        String[] trace = trace(new Random(42));
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        // Warm-up runs let the JIT and the page cache settle before measuring
+        measure(Arrays.copyOf(trace, 2000), url -> jdbcTemplate.update(
+                "UPDATE visits SET count = count + 1, last_updated = ? WHERE url = ?", now, url));
+        measure(Arrays.copyOf(trace, 2000), url -> jdbcTemplate.update(
+                "UPDATE visit_counts SET count = count + 1, last_updated = ? WHERE id = ?",
+                now, registry.resolveAll(List.of(url)).get(url)));
+        long[] byUrl = measure(trace, url -> jdbcTemplate.update(
+                "UPDATE visits SET count = count + 1, last_updated = ? WHERE url = ?", now, url));
+        long[] byId = measure(trace, url -> jdbcTemplate.update(
+                "UPDATE visit_counts SET count = count + 1, last_updated = ? WHERE id = ?",
+                now, registry.resolveAll(List.of(url)).get(url)));
+
+        logger.info("{} urls, {} increments", URLS, INCREMENTS);
+        logger.info("url key: p50 {} us, p99 {} us, {}", percentile(byUrl, 50),
+                percentile(byUrl, 99), size("VISITS"));
+        logger.info("id key: p50 {} us, p99 {} us, {} + {}", percentile(byId, 50),
+                percentile(byId, 99), size("VISIT_COUNTS"), size("VISIT_URLS"));
+        assertEquals(INCREMENTS + 2000, jdbcTemplate.queryForObject(
+                "SELECT SUM(count) - COUNT(*) FROM visit_counts", Integer.class));
+    }
+
+    // Rows go in key order, so loading appends to the indexes instead of splitting pages
+    private void load() {
+        String[] urls = new String[URLS];
+        Arrays.setAll(urls, VisitKeyBenchmarkTest::url);
+        Arrays.sort(urls);
+        insert("INSERT INTO visits (url, count) VALUES (?, 1)", Arrays.asList(urls),
+                (statement, url) -> statement.setString(1, url));
+        List<Map.Entry<Long, String>> byId = Arrays.stream(urls)
+                .map(url -> Map.entry(VisitUrlRegistry.idOf(url, 0), url))
+                .sorted(Map.Entry.comparingByKey())
+                .toList();
+        insert("INSERT INTO visit_urls (id, url) VALUES (?, ?)", byId, (statement, row) -> {
+            statement.setLong(1, row.getKey());
+            statement.setString(2, row.getValue());
+        });
+        jdbcTemplate.execute("INSERT INTO visit_counts (id, count) SELECT id, 1 FROM visit_urls");
+    }
+
+    private <T> void insert(String sql, List<T> rows,
+                            ParameterizedPreparedStatementSetter<T> setter) {
+        for (int from = 0; from < rows.size(); from += LOAD_BATCH) {
+            jdbcTemplate.batchUpdate(sql, rows.subList(from, Math.min(from + LOAD_BATCH,
+                    rows.size())), LOAD_BATCH, setter);
+        }
+    }
+
+    // Nine in ten increments go to a hot set spread over the table, the rest anywhere
+    private static String[] trace(Random random) {
+        String[] trace = new String[INCREMENTS];
+        for (int i = 0; i < trace.length; i++) {
+            int n = random.nextInt(10) < 9
+                    ? (int) ((long) random.nextInt(HOT_URLS) * URLS / HOT_URLS)
+                    : random.nextInt(URLS);
+            trace[i] = url(n);
+        }
+        return trace;
+    }
+
+    private static String url(int n) {
+        return "https://bookblog.example.com/books/" + (n * 2654435761L % 1_000_003)
+                + "/reviews?page=" + n % 7 + "&sort=recent&n=" + n;
+    }
+
+    private static long[] measure(String[] trace, Consumer<String> increment) {
+        long[] nanos = new long[trace.length];
+        for (int i = 0; i < trace.length; i++) {
+            long started = System.nanoTime();
+            increment.accept(trace[i]);
+            nanos[i] = System.nanoTime() - started;
+        }
+        Arrays.sort(nanos);
+        return nanos;
+    }
+
+    private static double percentile(long[] sorted, int percent) {
+        return sorted[Math.min(sorted.length - 1, sorted.length * percent / 100)] / 1000.0;
+    }
+
+    private String size(String table) {
+        Long bytes = jdbcTemplate.queryForObject("SELECT DISK_SPACE_USED(?)", Long.class, table);
+        return String.format("%s %,d KiB", table.toLowerCase(Locale.ROOT), bytes / 1024);
+    }
+}
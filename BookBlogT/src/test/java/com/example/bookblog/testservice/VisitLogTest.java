@@ -0,0 +1,151 @@
+package com.example.bookblog.testservice;
+
+import com.example.bookblog.service.VisitLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VisitLogTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<VisitLog> logs = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        logs.forEach(VisitLog::close);
+    }
+
+    @Test
+    void testAppend_CompletesOnceOnDisk() throws IOException {
+        VisitLog log = open();
+
+        log.append("/a").join();
+
+        assertTrue(Files.size(segment(1)) > 0);
+    }
+
+    @Test
+    void testAppend_GroupsConcurrentVisitsIntoOneSync() {
+        VisitLog log = new VisitLog(directory.toString(), Duration.ofMillis(50));
+        logs.add(log);
+        List<CompletableFuture<Void>> visits = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            visits.add(log.append("/a"));
+        }
+
+        CompletableFuture.allOf(visits.toArray(CompletableFuture[]::new)).join();
+
+        // The sync thread may pick up the first visit alone, the rest wait for the interval
+        assertTrue(visits.stream().distinct().count() <= 2);
+    }
+
+    @Test
+    void testAppend_RejectsVisitsBeyondThePendingLimit() {
+        VisitLog log = new VisitLog(directory.toString(), Duration.ofHours(1),
+                DataSize.ofBytes(64), Duration.ofSeconds(1));
+        logs.add(log);
+        // Each record takes 9 bytes, and the sync thread waits an hour before writing them
+        List<CompletableFuture<Void>> visits = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            visits.add(log.append("/page-" + i));
+        }
+
+        assertThrows(IllegalStateException.class, () -> log.append("/page-7"));
+        assertEquals(1, log.rotate());
+        visits.forEach(CompletableFuture::join);
+        log.append("/page-7");
+    }
+
+    @Test
+    void testRotate_ReplaysClosedSegments() {
+        VisitLog log = open();
+        log.append("/a").join();
+        log.append("/b").join();
+        assertEquals(1, log.rotate());
+        log.append("/a").join();
+        assertEquals(2, log.rotate());
+
+        assertEquals(Map.of("/a", 2L, "/b", 1L), log.replay(0, 2));
+        assertEquals(Map.of("/a", 1L), log.replay(1, 2));
+    }
+
+    @Test
+    void testRotate_KeepsEmptySegment() {
+        VisitLog log = open();
+
+        assertEquals(0, log.rotate());
+        log.append("/a").join();
+        assertEquals(1, log.rotate());
+        assertEquals(1, log.rotate());
+    }
+
+    @Test
+    void testRestart_ContinuesAfterExistingSegments() {
+        VisitLog first = open();
+        first.append("/a").join();
+        first.close();
+
+        VisitLog second = open();
+
+        assertEquals(first.getLogId(), second.getLogId());
+        assertEquals(1, second.getRecoveredThrough());
+        assertEquals(Map.of("/a", 1L), second.replay(0, second.getRecoveredThrough()));
+        second.append("/b").join();
+        assertEquals(2, second.rotate());
+    }
+
+    @Test
+    void testReplay_StopsAtTornFrame() throws IOException {
+        VisitLog first = open();
+        first.append("/a").join();
+        first.append("/b").join();
+        first.close();
+        // A crash halfway through the next frame leaves a header without its payload
+        Files.write(segment(1), new byte[] {0, 0, 0, 20, 1, 2}, StandardOpenOption.APPEND);
+
+        VisitLog second = open();
+
+        assertEquals(Map.of("/a", 1L, "/b", 1L), second.replay(0, 1));
+    }
+
+    @Test
+    void testDeleteThrough_KeepsCurrentSegment() throws IOException {
+        VisitLog log = open();
+        log.append("/a").join();
+        log.rotate();
+        log.append("/b").join();
+
+        log.deleteThrough(5);
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(List.of("log-id", "visits-00000000000000000002.log"),
+                    files.map(path -> path.getFileName().toString()).sorted().toList());
+        }
+    }
+
+    private VisitLog open() {
+        VisitLog log = new VisitLog(directory.toString(), Duration.ofMillis(1));
+        logs.add(log);
+        return log;
+    }
+
+    private Path segment(long id) {
+        return directory.resolve(String.format("visits-%020d.log", id));
+    }
+}
@@ -1,16 +1,44 @@
 package com.example.bookblog.testservice;
 
+import com.example.bookblog.dto.TopUrlDto;
+import com.example.bookblog.dto.VisitEventDto;
 import com.example.bookblog.dto.VisitStatsDto;
 import com.example.bookblog.entity.Visit;
+import com.example.bookblog.entity.VisitLogCheckpoint;
+import com.example.bookblog.entity.VisitResolution;
+import com.example.bookblog.exception.ValidationException;
+import com.example.bookblog.repository.VisitLogCheckpointRepository;
 import com.example.bookblog.repository.VisitRepository;
+import com.example.bookblog.repository.VisitService;
+import com.example.bookblog.service.HyperLogLog;
+import com.example.bookblog.service.VisitHistory;
+import com.example.bookblog.service.VisitLog;
 import com.example.bookblog.service.VisitServiceImpl;
+import com.example.bookblog.service.VisitUrlRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
@@ -20,41 +48,371 @@ class VisitServiceImplTest {
     @Mock
     private VisitRepository visitRepository;
 
-    @InjectMocks
+    @Mock
+    private VisitLogCheckpointRepository checkpointRepository;
+
+    @Mock
+    private VisitHistory visitHistory;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock(strictness = Mock.Strictness.LENIENT)
+    private VisitUrlRegistry urlRegistry;
+
+    @TempDir
+    Path logDirectory;
+
+    private final List<VisitLog> logs = new ArrayList<>();
+    private VisitLog visitLog;
     private VisitServiceImpl visitService;
 
     private final String TEST_URL = "/test-url";
     private final LocalDateTime TEST_DATE = LocalDateTime.now();
 
+    @BeforeEach
+    void setUp() {
+        when(urlRegistry.find(anyString())).thenAnswer(invocation ->
+                Optional.of(id(invocation.getArgument(0))));
+        when(urlRegistry.resolveAll(anyCollection())).thenAnswer(invocation -> {
+            Map<String, Long> ids = new HashMap<>();
+            for (Object url : invocation.getArgument(0, Collection.class)) {
+                ids.put((String) url, id((String) url));
+            }
+            return ids;
+        });
+        restart();
+    }
+
+    @AfterEach
+    void tearDown() {
+        logs.forEach(VisitLog::close);
+    }
+
+    @Test
+    void recordVisit_shouldNotTouchDatabaseUntilFlush() {
+        // Startup reads the most visited urls once
+        clearInvocations(visitRepository);
+        visitService.recordVisit(TEST_URL);
+        visitService.recordVisit(TEST_URL);
+
+        verifyNoInteractions(visitRepository);
+    }
+
+    @Test
+    void flush_shouldWriteAccumulatedCountsInOneBatch() {
+        visitService.recordVisit(TEST_URL);
+        visitService.recordVisit(TEST_URL);
+        visitService.recordVisit("/other-url");
+
+        visitService.flush();
+        visitService.flush();
+
+        verify(visitRepository, times(1)).addVisits(
+                eq(Map.of(id(TEST_URL), 2L, id("/other-url"), 1L)), any(LocalDateTime.class));
+        verify(checkpointRepository, times(1)).save(argThat(checkpoint ->
+                checkpoint.getLogId().equals(visitLog.getLogId()) && checkpoint.getSegment() == 1));
+    }
+
+    @Test
+    void recordVisit_shouldCountSpellingsOfOnePageTogether() {
+        visitService.recordVisit(TEST_URL);
+        visitService.recordVisit(TEST_URL + "/?utm_source=mail");
+        visitService.recordVisit(TEST_URL + "#comments");
+
+        visitService.flush();
+
+        verify(visitRepository).addVisits(eq(Map.of(id(TEST_URL), 3L)), any(LocalDateTime.class));
+    }
+
+    @Test
+    void flush_shouldOnlyWriteVisitsSinceLastFlush() {
+        visitService.recordVisit(TEST_URL);
+        visitService.flush();
+        visitService.recordVisit(TEST_URL);
+        visitService.flush();
+
+        verify(visitRepository, times(2)).addVisits(
+                eq(Map.of(id(TEST_URL), 1L)), any(LocalDateTime.class));
+    }
+
+    @Test
+    void flush_shouldDropOnlyTheRowsTheTableRejects() {
+        TransactionStatus status = mock(TransactionStatus.class);
+        when(transactionManager.getTransaction(any())).thenReturn(status);
+        doAnswer(invocation -> {
+            if (invocation.<Map<Long, Long>>getArgument(0).containsKey(id("/rejected-url"))) {
+                throw new DataIntegrityViolationException("rejected");
+            }
+            return null;
+        }).when(visitRepository).addVisits(anyMap(), any(LocalDateTime.class));
+        visitService.recordVisit(TEST_URL);
+        visitService.recordVisit("/rejected-url");
+
+        visitService.flush();
+        visitService.flush();
+
+        verify(visitRepository).addVisits(eq(Map.of(id(TEST_URL), 1L)), any(LocalDateTime.class));
+        verify(visitRepository).addVisits(eq(Map.of(id("/rejected-url"), 1L)),
+                any(LocalDateTime.class));
+        verify(status).rollbackToSavepoint(any());
+        verify(checkpointRepository, times(1)).save(any(VisitLogCheckpoint.class));
+    }
+
+    @Test
+    void flush_shouldRetryCountsAfterFailure() {
+        doThrow(new QueryTimeoutException("timeout")).doNothing()
+                .when(visitRepository).addVisits(anyMap(), any(LocalDateTime.class));
+        visitService.recordVisit(TEST_URL);
+        visitService.flush();
+        visitService.recordVisit(TEST_URL);
+
+        visitService.flush();
+
+        verify(visitRepository).addVisits(eq(Map.of(id(TEST_URL), 2L)), any(LocalDateTime.class));
+    }
+
+    @Test
+    void recover_shouldReplayVisitsLoggedBeforeCrash() {
+        visitService.recordVisit(TEST_URL);
+        visitService.recordVisit(TEST_URL);
+        when(checkpointRepository.findById(visitLog.getLogId())).thenReturn(Optional.empty());
+
+        restart();
+
+        verify(visitRepository).addVisits(eq(Map.of(id(TEST_URL), 2L)), any(LocalDateTime.class));
+        verify(checkpointRepository).save(argThat(checkpoint -> checkpoint.getSegment() == 1));
+    }
+
+    @Test
+    void recover_shouldSkipSegmentsCoveredByCheckpoint() {
+        visitService.recordVisit(TEST_URL);
+        visitService.flush();
+        visitService.recordVisit("/other-url");
+        when(checkpointRepository.findById(visitLog.getLogId()))
+                .thenReturn(Optional.of(new VisitLogCheckpoint(visitLog.getLogId(), 1)));
+
+        restart();
+
+        verify(visitRepository).addVisits(eq(Map.of(id(TEST_URL), 1L)), any(LocalDateTime.class));
+        verify(visitRepository).addVisits(eq(Map.of(id("/other-url"), 1L)),
+                any(LocalDateTime.class));
+        verify(checkpointRepository).save(argThat(checkpoint -> checkpoint.getSegment() == 2));
+    }
+
+    @Test
+    void recover_shouldReplayAfterFailedFlush() {
+        doThrow(new QueryTimeoutException("timeout"))
+                .when(visitRepository).addVisits(anyMap(), any(LocalDateTime.class));
+        visitService.recordVisit(TEST_URL);
+        visitService.flush();
+        visitService.recordVisit(TEST_URL);
+        when(checkpointRepository.findById(visitLog.getLogId())).thenReturn(Optional.empty());
+        doNothing().when(visitRepository).addVisits(anyMap(), any(LocalDateTime.class));
+
+        restart();
+
+        verify(visitRepository).addVisits(eq(Map.of(id(TEST_URL), 2L)), any(LocalDateTime.class));
+    }
+
+    @Test
+    void flushVisitors_shouldMergeVisitorsIntoStoredSketch() {
+        HyperLogLog stored = new HyperLogLog();
+        stored.offer("alice");
+        when(visitRepository.lockVisitorSketches(Set.of(id(TEST_URL))))
+                .thenReturn(Map.of(id(TEST_URL), stored.toBytes()));
+        visitService.recordVisit(TEST_URL, "alice");
+        visitService.recordVisit(TEST_URL, "bob");
+        visitService.recordVisit(TEST_URL, "bob");
+        visitService.recordVisit("/other-url");
+
+        visitService.flush();
+        verify(visitRepository, never()).saveVisitorSketches(anyMap());
+        visitService.flushVisitors();
+
+        verify(visitRepository).saveVisitorSketches(argThat(sketches -> sketches.size() == 1
+                && HyperLogLog.fromBytes(sketches.get(id(TEST_URL))).estimate() == 2));
+    }
+
+    @Test
+    void flushVisitors_shouldWriteOnlySketchesNewVisitorsChanged() {
+        Set<Long> rows = new HashSet<>();
+        doAnswer(invocation -> rows.addAll(invocation.<Map<Long, Long>>getArgument(0).keySet()))
+                .when(visitRepository).addVisits(anyMap(), any(LocalDateTime.class));
+        when(visitRepository.lockVisitorSketches(anyCollection())).thenAnswer(invocation -> {
+            Map<Long, byte[]> found = new HashMap<>();
+            for (Object id : invocation.getArgument(0, Collection.class)) {
+                if (rows.contains(id)) {
+                    found.put((Long) id, null);
+                }
+            }
+            return found;
+        });
+        visitService.recordVisit(TEST_URL, "alice");
+        visitService.flushVisitors();
+        visitService.flush();
+        visitService.flushVisitors();
+
+        visitService.recordVisit(TEST_URL, "alice");
+        visitService.flush();
+        visitService.flushVisitors();
+
+        // The first run finds no row yet, the last sees no new visitor
+        verify(visitRepository, times(2)).lockVisitorSketches(anyCollection());
+        verify(visitRepository).saveVisitorSketches(anyMap());
+    }
+
+    @Test
+    void getVisitStats_shouldEstimateUniqueVisitors() {
+        Visit visit = new Visit(id(TEST_URL));
+        HyperLogLog stored = new HyperLogLog();
+        stored.offer("alice");
+        visit.setVisitorSketch(stored.toBytes());
+        when(visitRepository.findById(id(TEST_URL))).thenReturn(Optional.of(visit));
+        visitService.recordVisit(TEST_URL, "alice");
+        visitService.recordVisit(TEST_URL, "bob");
+
+        VisitStatsDto result = visitService.getVisitStats(TEST_URL);
+
+        assertEquals(2, result.getUniqueVisitors());
+        assertEquals(0, result.getUniqueVisitorsError());
+    }
+
+    @Test
+    void getTopUrls_shouldCombineStoredCountsWithNewVisits() {
+        when(visitRepository.findTopCounts(any()))
+                .thenReturn(List.of(urlCount("/popular", 10), urlCount(TEST_URL, 9)));
+        restart();
+        visitService.recordVisit(TEST_URL);
+        visitService.recordVisit(TEST_URL);
+
+        List<TopUrlDto> top = visitService.getTopUrls(1);
+
+        assertEquals(1, top.size());
+        assertEquals(TEST_URL, top.get(0).getUrl());
+        assertEquals(11, top.get(0).getCount());
+        assertThrows(ValidationException.class, () -> visitService.getTopUrls(0));
+    }
+
+    @Test
+    void recordVisits_shouldAggregateBatchIntoCounters() {
+        LocalDateTime viewedAt = TEST_DATE.minusMinutes(3);
+        visitService.recordVisits(List.of(
+                new VisitEventDto(TEST_URL, viewedAt, "alice"),
+                VisitEventDto.of(TEST_URL),
+                VisitEventDto.of("/other-url")), "10.0.0.1");
+
+        visitService.flush();
+
+        verify(visitRepository).addVisits(
+                eq(Map.of(id(TEST_URL), 2L, id("/other-url"), 1L)), any(LocalDateTime.class));
+        verify(visitHistory).record(TEST_URL, viewedAt);
+        when(visitRepository.lockVisitorSketches(anyCollection()))
+                .thenReturn(Map.of(id(TEST_URL), new byte[0], id("/other-url"), new byte[0]));
+        visitService.flushVisitors();
+        verify(visitRepository).saveVisitorSketches(argThat(sketches ->
+                HyperLogLog.fromBytes(sketches.get(id(TEST_URL))).estimate() == 2));
+    }
+
+    @Test
+    void recordVisits_shouldRejectInvalidBatches() {
+        List<VisitEventDto> tooMany = new ArrayList<>();
+        for (int i = 0; i <= VisitServiceImpl.MAX_BATCH_SIZE; i++) {
+            tooMany.add(VisitEventDto.of(TEST_URL));
+        }
+
+        assertThrows(ValidationException.class, () -> visitService.recordVisits(tooMany, null));
+        assertThrows(ValidationException.class,
+                () -> visitService.recordVisits(List.of(VisitEventDto.of(" ")), null));
+        visitService.flush();
+        verify(visitRepository, never()).addVisits(anyMap(), any(LocalDateTime.class));
+    }
+
     @Test
-    void recordVisit_shouldIncrementCountWhenUrlExists() {
-        when(visitRepository.existsByUrl(TEST_URL)).thenReturn(true);
+    void recordVisit_shouldNotCountVisitsThatCouldNotBeLogged() {
+        VisitLog failingLog = mock(VisitLog.class);
+        when(failingLog.append(TEST_URL)).thenReturn(
+                CompletableFuture.failedFuture(new IOException("No space left on device")));
+        VisitServiceImpl service = new VisitServiceImpl(visitRepository, checkpointRepository,
+                failingLog, visitHistory, urlRegistry, transactionManager);
+
+        assertThrows(IllegalStateException.class,
+                () -> service.recordVisit(TEST_URL, "alice"));
+        service.flush();
+
+        verify(visitRepository, never()).addVisits(anyMap(), any(LocalDateTime.class));
+        verifyNoInteractions(visitHistory);
+        assertEquals(0, service.getVisitStats(TEST_URL).getUniqueVisitors());
+    }
+
+    @Test
+    void recordVisit_shouldRejectUrlsLongerThanTheColumn() {
+        String tooLong = "/" + "я".repeat(VisitService.MAX_URL_BYTES / 2);
+
+        assertThrows(ValidationException.class, () -> visitService.recordVisit(tooLong));
+        assertThrows(ValidationException.class, () -> visitService.recordVisits(
+                List.of(VisitEventDto.of(TEST_URL), VisitEventDto.of(tooLong)), null));
+        visitService.flush();
 
+        verify(visitRepository, never()).addVisits(anyMap(), any(LocalDateTime.class));
+        verifyNoInteractions(visitHistory);
+    }
+
+    @Test
+    void flush_shouldDropUrlsTheRegistryCannotResolve() {
+        when(urlRegistry.resolveAll(anyCollection()))
+                .thenReturn(Map.of(TEST_URL, id(TEST_URL)));
         visitService.recordVisit(TEST_URL);
+        visitService.recordVisit("/rejected-url");
+
+        visitService.flush();
+        visitService.flush();
 
-       // verify(visitRepository).incrementCount(TEST_URL, any(LocalDateTime.class));
-        verify(visitRepository, never()).save(any(Visit.class));
+        verify(visitRepository).addVisits(eq(Map.of(id(TEST_URL), 1L)),
+                any(LocalDateTime.class));
     }
 
     @Test
-    void recordVisit_shouldCreateNewVisitWhenUrlDoesNotExist() {
-        when(visitRepository.existsByUrl(TEST_URL)).thenReturn(false);
+    void recordVisit_shouldRecordHistory() {
+        visitService.recordVisit(TEST_URL);
+
+        verify(visitHistory).record(TEST_URL, null);
+    }
 
+    @Test
+    void getVisitSeries_shouldParseStep() {
+        LocalDateTime to = TEST_DATE.plusHours(1);
+        when(visitHistory.range(TEST_URL, VisitResolution.MINUTE, TEST_DATE, to))
+                .thenReturn(List.of());
+
+        assertEquals("minute", visitService.getVisitSeries(TEST_URL, TEST_DATE, to, "Minute")
+                .getStep());
+        assertThrows(ValidationException.class,
+                () -> visitService.getVisitSeries(TEST_URL, TEST_DATE, to, "week"));
+    }
+
+    @Test
+    void getVisitStats_shouldAddPendingVisits() {
+        Visit visit = new Visit(id(TEST_URL));
+        visit.setCount(5);
+        visit.setLastUpdated(TEST_DATE);
+        when(visitRepository.findById(id(TEST_URL))).thenReturn(Optional.of(visit));
         visitService.recordVisit(TEST_URL);
+        visitService.recordVisit(TEST_URL);
+
+        VisitStatsDto result = visitService.getVisitStats(TEST_URL);
 
-       // verify(visitRepository).incrementCount(TEST_URL, any(LocalDateTime.class));
-        verify(visitRepository).save(argThat(visit ->
-                visit.getUrl().equals(TEST_URL) && visit.getCount() == 1
-        ));
+        assertEquals(7, result.getCount());
+        assertFalse(result.getLastUpdated().isBefore(TEST_DATE));
     }
 
     @Test
     void getVisitStats_shouldReturnStatsWhenVisitExists() {
-        Visit visit = new Visit(TEST_URL);
+        Visit visit = new Visit(id(TEST_URL));
         visit.setCount(5);
         visit.setLastUpdated(TEST_DATE);
 
-        when(visitRepository.findByUrl(TEST_URL)).thenReturn(Optional.of(visit));
+        when(visitRepository.findById(id(TEST_URL))).thenReturn(Optional.of(visit));
 
         VisitStatsDto result = visitService.getVisitStats(TEST_URL);
 
@@ -66,7 +424,7 @@ class VisitServiceImplTest {
 
     @Test
     void getVisitStats_shouldReturnZeroStatsWhenVisitDoesNotExist() {
-        when(visitRepository.findByUrl(TEST_URL)).thenReturn(Optional.empty());
+        when(visitRepository.findById(id(TEST_URL))).thenReturn(Optional.empty());
 
         VisitStatsDto result = visitService.getVisitStats(TEST_URL);
 
@@ -85,4 +443,31 @@ class VisitServiceImplTest {
         assertEquals(0, result.getCount());
         assertNull(result.getLastUpdated());
     }
-}
\ No newline at end of file
+
+    private static long id(String url) {
+        return VisitUrlRegistry.idOf(url, 0);
+    }
+
+    private static VisitRepository.UrlCount urlCount(String url, int count) {
+        return new VisitRepository.UrlCount() {
+            @Override
+            public String getUrl() {
+                return url;
+            }
+
+            @Override
+            public Integer getCount() {
+                return count;
+            }
+        };
+    }
+
+    // Reopens the log directory the way a new process would, without flushing first
+    private void restart() {
+        visitLog = new VisitLog(logDirectory.toString(), Duration.ofMillis(1));
+        logs.add(visitLog);
+        visitService = new VisitServiceImpl(visitRepository, checkpointRepository, visitLog,
+                visitHistory, urlRegistry, transactionManager);
+        visitService.recover();
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.bookblog.testservice;
+
+import com.example.bookblog.controller.VisitController;
+import com.example.bookblog.repository.VisitBucketRepository;
+import com.example.bookblog.repository.VisitLogCheckpointRepository;
+import com.example.bookblog.repository.VisitRepository;
+import com.example.bookblog.service.VisitHistory;
+import com.example.bookblog.service.VisitLog;
+import com.example.bookblog.service.VisitServiceImpl;
+import com.example.bookblog.service.VisitUrlRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Drives the single and batch track endpoints through the MVC stack with the production visit log.
+// Database statements are the repository calls made by flushes; with rewriteBatchedStatements
+// each of them is one statement. The throughput run is a benchmark, with a scaled-down flush
+// interval, and only runs with -Pbenchmark.
+class VisitTrackingBenchmarkTest {
+    private static final Logger logger = LoggerFactory.getLogger(VisitTrackingBenchmarkTest.class);
+
+    private static final int CLIENTS = 4;
+    private static final int BATCH = 100;
+    private static final Duration RUN = Duration.ofMillis(1500);
+    private static final long FLUSH_INTERVAL_MILLIS = 100;
+
+    @TempDir
+    Path logDirectory;
+
+    private VisitRepository visitRepository;
+    private VisitLogCheckpointRepository checkpointRepository;
+    private VisitLog visitLog;
+    private VisitServiceImpl visitService;
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() {
+        visitRepository = mock(VisitRepository.class);
+        checkpointRepository = mock(VisitLogCheckpointRepository.class);
+        VisitUrlRegistry urlRegistry = mock(VisitUrlRegistry.class);
+        when(urlRegistry.resolveAll(anyCollection())).thenAnswer(invocation -> {
+            Map<String, Long> ids = new HashMap<>();
+            for (Object url : invocation.getArgument(0, Collection.class)) {
+                ids.put((String) url, VisitUrlRegistry.idOf((String) url, 0));
+            }
+            return ids;
+        });
+        visitLog = new VisitLog(logDirectory.toString(), Duration.ofMillis(5));
+        visitService = new VisitServiceImpl(visitRepository, checkpointRepository, visitLog,
+                new VisitHistory(mock(VisitBucketRepository.class), urlRegistry), urlRegistry,
+                mock(PlatformTransactionManager.class));
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        mvc = MockMvcBuilders.standaloneSetup(new VisitController(visitService, objectMapper))
+                .setMessageConverters(new MappingJackson2HttpMessageConverter(objectMapper))
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        visitLog.close();
+    }
+
+    @Test
+    void batchEndpoint_AcceptsJsonArraysAndNdjson() throws Exception {
+        mvc.perform(post("/api/visits/track/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"/a\", {\"url\": \"/b\", \"timestamp\": \"2025-03-01T10:00:00\","
+                                + " \"visitorId\": \"alice\"}]"))
+                .andExpect(status().isOk());
+        mvc.perform(post("/api/visits/track/batch")
+                        .contentType("application/x-ndjson")
+                        .content("\"/a\"\n{\"url\": \"/b\"}\n"))
+                .andExpect(status().isOk());
+
+        visitService.flush();
+
+        verify(visitRepository).addVisits(eq(Map.of(VisitUrlRegistry.idOf("/a", 0), 2L,
+                VisitUrlRegistry.idOf("/b", 0), 2L)), any(LocalDateTime.class));
+    }
+
+    @Test
+    void flush_CostsTheSameStatementsHoweverManyViewsItHolds() throws Exception {
+        mvc.perform(post("/api/visits/track").param("url", "/page/0")).andExpect(status().isOk());
+        long oneView = statementsOfFlush();
+        mvc.perform(batchRequest(0)).andExpect(status().isOk());
+        long batch = statementsOfFlush();
+        for (int i = 0; i < BATCH; i++) {
+            mvc.perform(post("/api/visits/track").param("url", "/page/" + i % 20))
+                    .andExpect(status().isOk());
+        }
+        long singles = statementsOfFlush();
+
+        assertTrue(oneView > 0);
+        assertEquals(oneView, batch);
+        assertEquals(oneView, singles);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void batchPath_ServesMoreViewsWithFewerStatementsPerView() throws Exception {
+        Result single = run("single", 1, client ->
+                post("/api/visits/track").param("url", "/page/" + client));
+        Result batch = run("batch", BATCH, this::batchRequest);
+
+        logger.info("batch/single: {} x views/s, {} x statements/view",
+                String.format("%.1f", batch.viewsPerSecond() / single.viewsPerSecond()),
+                String.format("%.4f", batch.statementsPerView() / single.statementsPerView()));
+    }
+
+    private RequestBuilder batchRequest(int client) {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < BATCH; i++) {
+            body.append(i == 0 ? "" : ",").append("\"/page/").append(i % 20).append('"');
+        }
+        return post("/api/visits/track/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body.append(']').toString());
+    }
+
+    private long statementsOfFlush() {
+        clearInvocations(visitRepository);
+        clearInvocations(checkpointRepository);
+        visitService.flush();
+        return statements();
+    }
+
+    private long statements() {
+        return mockingDetails(visitRepository).getInvocations().size()
+                + mockingDetails(checkpointRepository).getInvocations().size();
+    }
+
+    private Result run(String name, int viewsPerRequest, IntFunction<RequestBuilder> request)
+            throws Exception {
+        clearInvocations(visitRepository);
+        clearInvocations(checkpointRepository);
+        ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor();
+        flusher.scheduleWithFixedDelay(visitService::flush, FLUSH_INTERVAL_MILLIS,
+                FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        long started = System.nanoTime();
+        long deadline = started + RUN.toNanos();
+        List<Future<Integer>> sent = new ArrayList<>();
+        try {
+            for (int c = 0; c < CLIENTS; c++) {
+                int client = c;
+                sent.add(clients.submit(() -> {
+                    int requests = 0;
+                    while (System.nanoTime() < deadline) {
+                        mvc.perform(request.apply(client)).andExpect(status().isOk());
+                        requests++;
+                    }
+                    return requests;
+                }));
+            }
+            long requests = 0;
+            for (Future<Integer> future : sent) {
+                requests += future.get();
+            }
+            double seconds = (System.nanoTime() - started) / 1e9;
+            flusher.shutdown();
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+            visitService.flush();
+
+            long statements = statements();
+            long views = requests * viewsPerRequest;
+            Result result = new Result(requests / seconds, views / seconds,
+                    (double) statements / views);
+            logger.info("{}: {} requests/s, {} views/s, {} statements/view", name,
+                    String.format("%,.0f", result.requestsPerSecond()),
+                    String.format("%,.0f", result.viewsPerSecond()),
+                    String.format("%.6f", result.statementsPerView()));
+            return result;
+        } finally {
+            clients.shutdownNow();
+            flusher.shutdownNow();
+        }
+    }
+
+    private record Result(double requestsPerSecond, double viewsPerSecond,
+                          double statementsPerView) {}
+}
@@ -0,0 +1,153 @@
+package com.example.bookblog.testservice;
+
+import com.example.bookblog.cache.InMemoryCache;
+import com.example.bookblog.repository.VisitCounterRepositoryImpl;
+import com.example.bookblog.repository.VisitRepository;
+import com.example.bookblog.service.HyperLogLog;
+import com.example.bookblog.service.LegacyVisitImport;
+import com.example.bookblog.service.VisitUrlRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.Mockito.mock;
+
+class VisitUrlRegistryTest {
+
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private VisitUrlRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:visit-urls;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS visit_urls");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS visit_counts");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS visits");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS visit_import_cursors");
+        jdbcTemplate.execute("CREATE TABLE visit_urls (id BIGINT PRIMARY KEY, "
+                + "url VARCHAR(768) NOT NULL UNIQUE)");
+        jdbcTemplate.execute("CREATE TABLE visit_counts (id BIGINT PRIMARY KEY, "
+                + "count INTEGER NOT NULL, last_updated TIMESTAMP, "
+                + "visitor_sketch VARBINARY(4096))");
+        jdbcTemplate.execute("CREATE TABLE visit_import_cursors (name VARCHAR(64) PRIMARY KEY, "
+                + "last_url VARCHAR(768), completed BOOLEAN NOT NULL)");
+        registry = new VisitUrlRegistry(jdbcTemplate,
+                new InMemoryCache<>(1000, Duration.ofHours(1)));
+    }
+
+    @Test
+    void resolveAll_RegistersNewUrlsOnceAndServesThemFromCache() {
+        Map<String, Long> ids = registry.resolveAll(List.of("/a", "/b"));
+
+        assertEquals(VisitUrlRegistry.idOf("/a", 0), ids.get("/a"));
+        assertEquals(ids, registry.resolveAll(List.of("/a", "/b")));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM visit_urls",
+                Integer.class));
+
+        jdbcTemplate.update("DELETE FROM visit_urls");
+        assertEquals(Optional.of(ids.get("/b")), registry.find("/b"));
+        assertEquals(Optional.empty(), registry.find("/unknown"));
+    }
+
+    @Test
+    void resolveAll_ProbesPastIdsTakenByOtherUrls() {
+        jdbcTemplate.update("INSERT INTO visit_urls (id, url) VALUES (?, '/squatter')",
+                VisitUrlRegistry.idOf("/b", 0));
+
+        Map<String, Long> ids = registry.resolveAll(List.of("/a", "/b"));
+
+        assertEquals(VisitUrlRegistry.idOf("/a", 0), ids.get("/a"));
+        assertEquals(VisitUrlRegistry.idOf("/b", 1), ids.get("/b"));
+        assertEquals("/b", jdbcTemplate.queryForObject(
+                "SELECT url FROM visit_urls WHERE id = ?", String.class, ids.get("/b")));
+    }
+
+    @Test
+    void resolveAll_LeavesOutUrlsTheTableRejects() {
+        String tooLong = "/" + "a".repeat(800);
+
+        Map<String, Long> ids = registry.resolveAll(List.of("/a", tooLong, "/b"));
+
+        assertEquals(Map.of("/a", VisitUrlRegistry.idOf("/a", 0),
+                "/b", VisitUrlRegistry.idOf("/b", 0)), ids);
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM visit_urls",
+                Integer.class));
+    }
+
+    @Test
+    void legacyImport_MergesSpellingsOnceAndKeepsTheOldTable() {
+        createLegacyTable();
+        jdbcTemplate.update("INSERT INTO visits (url, count) VALUES "
+                + "('/a', 3), ('/a/?utm_source=mail', 2), ('/b', 1)");
+
+        legacyImport().run();
+        legacyImport().run();
+
+        long a = VisitUrlRegistry.idOf("/a", 0);
+        assertEquals(5, jdbcTemplate.queryForObject(
+                "SELECT count FROM visit_counts WHERE id = ?", Integer.class, a));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM visit_counts",
+                Integer.class));
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM visits",
+                Integer.class));
+        assertEquals("/b", jdbcTemplate.queryForObject(
+                "SELECT last_url FROM visit_import_cursors WHERE completed", String.class));
+    }
+
+    @Test
+    void legacyImport_MergesVisitorSketchesWhereTheTableHasThem() {
+        createLegacyTable();
+        jdbcTemplate.execute("ALTER TABLE visits ADD COLUMN visitor_sketch VARBINARY(4096)");
+        HyperLogLog alice = new HyperLogLog();
+        alice.offer("alice");
+        HyperLogLog bob = new HyperLogLog();
+        bob.offer("bob");
+        jdbcTemplate.update("INSERT INTO visits (url, count, visitor_sketch) VALUES "
+                + "('/a', 3, ?), ('/a/?utm_source=mail', 2, ?), ('/b', 1, NULL)",
+                alice.toBytes(), bob.toBytes());
+
+        legacyImport().run();
+
+        assertEquals(2, HyperLogLog.fromBytes(jdbcTemplate.queryForObject(
+                "SELECT visitor_sketch FROM visit_counts WHERE id = ?", byte[].class,
+                VisitUrlRegistry.idOf("/a", 0))).estimate());
+    }
+
+    @Test
+    void legacyImport_ResumesAfterTheLastCommittedPage() {
+        createLegacyTable();
+        jdbcTemplate.update("INSERT INTO visits (url, count) VALUES ('/a', 3), ('/b', 1)");
+        jdbcTemplate.update("INSERT INTO visit_import_cursors (name, last_url, completed) "
+                + "VALUES ('legacy-visits', '/a', FALSE)");
+
+        legacyImport().run();
+
+        assertEquals(List.of(VisitUrlRegistry.idOf("/b", 0)), jdbcTemplate.queryForList(
+                "SELECT id FROM visit_counts", Long.class));
+    }
+
+    // The visits table as the original Visit entity created it
+    private void createLegacyTable() {
+        jdbcTemplate.execute("CREATE TABLE visits (url VARCHAR(768) PRIMARY KEY, "
+                + "count INTEGER NOT NULL, last_updated TIMESTAMP)");
+    }
+
+    private LegacyVisitImport legacyImport() {
+        VisitRepository visitRepository = mock(VisitRepository.class,
+                delegatesTo(new VisitCounterRepositoryImpl(jdbcTemplate)));
+        return new LegacyVisitImport(jdbcTemplate, visitRepository, registry,
+                new DataSourceTransactionManager(dataSource));
+    }
+}